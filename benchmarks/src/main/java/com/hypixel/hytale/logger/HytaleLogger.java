@@ -0,0 +1,29 @@
+package com.hypixel.hytale.logger;
+
+/**
+ * Stub del logger de Hytale para los benchmarks: descarta todos los mensajes.
+ */
+public class HytaleLogger {
+    private static final Api API = new Api();
+
+    public static HytaleLogger get(String name) {
+        return new HytaleLogger();
+    }
+
+    public Api atInfo() {
+        return API;
+    }
+
+    public Api atWarning() {
+        return API;
+    }
+
+    public Api atSevere() {
+        return API;
+    }
+
+    public static class Api {
+        public void log(String message) {
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.hypixel.hytale.server.core;
+
+/**
+ * Stub de Message para los benchmarks.
+ */
+public class Message {
+    private final String text;
+
+    private Message(String text) {
+        this.text = text;
+    }
+
+    public static Message raw(String text) {
+        return new Message(text);
+    }
+
+    public String getRawText() {
+        return text;
+    }
+}
@@ -0,0 +1,30 @@
+package com.hypixel.hytale.server.core.entity.entities.player.hud;
+
+import com.hypixel.hytale.server.core.ui.builder.UICommandBuilder;
+import com.hypixel.hytale.server.core.universe.PlayerRef;
+
+/**
+ * Stub de CustomUIHud para los benchmarks: cuenta las actualizaciones en lugar de enviarlas.
+ */
+public abstract class CustomUIHud {
+    private final PlayerRef playerRef;
+    private long updatesSent;
+
+    public CustomUIHud(PlayerRef playerRef) {
+        this.playerRef = playerRef;
+    }
+
+    protected abstract void build(UICommandBuilder builder);
+
+    public void update(boolean clear, UICommandBuilder builder) {
+        updatesSent++;
+    }
+
+    public PlayerRef getPlayerRef() {
+        return playerRef;
+    }
+
+    public long getUpdatesSent() {
+        return updatesSent;
+    }
+}
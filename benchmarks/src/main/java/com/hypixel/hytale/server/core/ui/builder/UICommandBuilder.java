@@ -0,0 +1,26 @@
+package com.hypixel.hytale.server.core.ui.builder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stub de UICommandBuilder para los benchmarks: solo acumula los comandos.
+ */
+public class UICommandBuilder {
+    private final List<Object> commands = new ArrayList<>();
+
+    public UICommandBuilder append(String document) {
+        commands.add(document);
+        return this;
+    }
+
+    public UICommandBuilder set(String selector, Object value) {
+        commands.add(selector);
+        commands.add(value);
+        return this;
+    }
+
+    public int size() {
+        return commands.size();
+    }
+}
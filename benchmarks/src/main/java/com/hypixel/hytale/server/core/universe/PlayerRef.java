@@ -0,0 +1,18 @@
+package com.hypixel.hytale.server.core.universe;
+
+import java.util.UUID;
+
+/**
+ * Stub de PlayerRef para los benchmarks.
+ */
+public class PlayerRef {
+    private final UUID uuid;
+
+    public PlayerRef(UUID uuid) {
+        this.uuid = uuid;
+    }
+
+    public UUID getUuid() {
+        return uuid;
+    }
+}
@@ -0,0 +1,14 @@
+package com.hypixel.hytale.server.core.universe.world;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Stub de World para los benchmarks: ejecuta las tareas en el hilo que las envía.
+ */
+public class World implements Executor {
+
+    @Override
+    public void execute(Runnable task) {
+        task.run();
+    }
+}
@@ -0,0 +1,65 @@
+package com.zeni.playtime.benchmarks;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Generación de datos sintéticos para los benchmarks
+ */
+final class BenchmarkData {
+    static final int WORLDS_PER_PLAYER = 3;
+
+    private BenchmarkData() {
+    }
+
+    static UUID[] randomIds(int count, long seed) {
+        Random random = new Random(seed);
+        UUID[] ids = new UUID[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = new UUID(random.nextLong(), random.nextLong());
+        }
+        return ids;
+    }
+
+    /**
+     * Escribe un playtime-data.json con el formato antiguo; PlaytimeManager lo migra a shards al arrancar
+     */
+    static void writeLegacyDataset(Path dataFolder, UUID[] players, UUID[] worlds) throws IOException {
+        Files.createDirectories(dataFolder);
+        Random random = new Random(42L);
+        try (Writer out = Files.newBufferedWriter(dataFolder.resolve("playtime-data.json"), StandardCharsets.UTF_8);
+             JsonWriter json = new JsonWriter(out)) {
+            json.beginObject();
+            for (UUID player : players) {
+                json.name(player.toString()).beginObject();
+                int firstWorld = random.nextInt(worlds.length);
+                for (int i = 0; i < WORLDS_PER_PLAYER; i++) {
+                    json.name(worlds[(firstWorld + i) % worlds.length].toString())
+                            .value(1_000L + random.nextInt(100_000_000));
+                }
+                json.endObject();
+            }
+            json.endObject();
+        }
+    }
+
+    static void deleteRecursively(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(path)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.zeni.playtime.benchmarks;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+import com.hypixel.hytale.server.core.universe.PlayerRef;
+import com.zeni.playtime.data.ManualSessionClock;
+import com.zeni.playtime.data.PlaytimeManager;
+import com.zeni.playtime.hud.PlaytimeFormatter;
+import com.zeni.playtime.hud.PlaytimeHud;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coste del tick del HUD y del formateo del tiempo jugado
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class HudBenchmark {
+
+    @Param({"500"})
+    public int huds;
+
+    private Path dataFolder;
+    private ManualSessionClock clock;
+    private PlaytimeManager manager;
+    private PlaytimeHud[] playtimeHuds;
+    private final StringBuilder buffer = new StringBuilder(16);
+    private long sample;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dataFolder = Files.createTempDirectory("playtime-bench-hud");
+        clock = new ManualSessionClock(System.currentTimeMillis());
+        manager = new PlaytimeManager(dataFolder.toFile(), HytaleLogger.get("benchmarks"), clock);
+
+        UUID world = UUID.randomUUID();
+        UUID[] players = BenchmarkData.randomIds(huds, 3L);
+        playtimeHuds = new PlaytimeHud[huds];
+        for (int i = 0; i < huds; i++) {
+            // Mezcla de jugadores nuevos y veteranos (más de un día jugado)
+            manager.getPlayerData(players[i]).addPlaytime(world, (i % 2) * 3L * 24 * 3_600_000L);
+            manager.startSession(players[i], world);
+            playtimeHuds[i] = new PlaytimeHud(new PlayerRef(players[i]), manager);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        manager.close();
+        BenchmarkData.deleteRecursively(dataFolder);
+    }
+
+    /**
+     * Un tick de un segundo sobre todos los HUDs abiertos
+     */
+    @Benchmark
+    public int updatePlaytimeAllHuds() {
+        clock.advanceMillis(1_000L);
+        long now = clock.monotonicMillis();
+        int sent = 0;
+        for (PlaytimeHud hud : playtimeHuds) {
+            if (hud.tick(now)) {
+                sent++;
+            }
+        }
+        return sent;
+    }
+
+    @Benchmark
+    public void updatePlaytime() {
+        clock.advanceMillis(250L);
+        playtimeHuds[0].updatePlaytime();
+    }
+
+    @Benchmark
+    public void formatPlaytime(Blackhole blackhole) {
+        sample += 1_337L;
+        buffer.setLength(0);
+        PlaytimeFormatter.appendHud(buffer, sample);
+        blackhole.consume(buffer);
+    }
+
+    @Benchmark
+    public String formatTime() {
+        sample += 1_337L;
+        return manager.formatTime(sample);
+    }
+}
@@ -0,0 +1,104 @@
+package com.zeni.playtime.benchmarks;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+import com.zeni.playtime.data.ManualSessionClock;
+import com.zeni.playtime.data.PlaytimeConfig;
+import com.zeni.playtime.data.PlaytimeManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coste de guardar y cargar datos según el número de jugadores guardados.
+ * saveData mide el vuelco de un lote de sesiones terminadas (journal + shards sucios);
+ * loadData mide el arranque más la hidratación de un lote de jugadores.
+ * Se compara el backend de shards JSON con la tabla mapeada en memoria.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class PersistenceBenchmark {
+    private static final int BATCH = 1_000;
+
+    @Param({"10000", "100000", "1000000"})
+    public int players;
+
+    @Param({PlaytimeConfig.STORAGE_SHARDED, PlaytimeConfig.STORAGE_MAPPED})
+    public String storage;
+
+    private final HytaleLogger logger = HytaleLogger.get("benchmarks");
+    private Path dataFolder;
+    private UUID[] playerIds;
+    private UUID[] worlds;
+    private ManualSessionClock clock;
+    private PlaytimeConfig config;
+    private PlaytimeManager manager;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dataFolder = Files.createTempDirectory("playtime-bench");
+        playerIds = BenchmarkData.randomIds(players, 1L);
+        worlds = BenchmarkData.randomIds(8, 2L);
+        BenchmarkData.writeLegacyDataset(dataFolder, playerIds, worlds);
+
+        clock = new ManualSessionClock(System.currentTimeMillis());
+        config = new PlaytimeConfig(storage, "");
+        // El primer arranque migra el fichero antiguo al backend elegido
+        manager = new PlaytimeManager(dataFolder.toFile(), logger, clock, config);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        manager.close();
+        BenchmarkData.deleteRecursively(dataFolder);
+    }
+
+    @Benchmark
+    public void saveData() {
+        for (int i = 0; i < BATCH; i++) {
+            UUID player = nextPlayer();
+            manager.startSession(player, worlds[i % worlds.length]);
+        }
+        clock.advanceMillis(60_000L);
+        for (int i = 0; i < BATCH; i++) {
+            manager.endAllSessions(playerIds[Math.floorMod(cursor - BATCH + i, players)]);
+        }
+        manager.flush();
+    }
+
+    @Benchmark
+    public void loadData(Blackhole blackhole) {
+        PlaytimeManager loaded = new PlaytimeManager(dataFolder.toFile(), logger, clock, config);
+        for (int i = 0; i < BATCH; i++) {
+            blackhole.consume(loaded.getPlayerData(nextPlayer()).getTotalPlaytime());
+        }
+        loaded.close();
+    }
+
+    private UUID nextPlayer() {
+        UUID player = playerIds[cursor];
+        cursor = (cursor + 1) % players;
+        return player;
+    }
+}
@@ -0,0 +1,76 @@
+package com.zeni.playtime.benchmarks;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+import com.zeni.playtime.data.ManualSessionClock;
+import com.zeni.playtime.data.PlaytimeConfig;
+import com.zeni.playtime.data.PlaytimeManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coste de las consultas sobre todos los jugadores guardados: un agregado con filtro
+ * (jugadores con más de 100 h y totales por mundo) y la exportación completa a CSV.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+public class QueryBenchmark {
+    private static final long HUNDRED_HOURS = 100 * 3_600_000L;
+
+    @Param({"100000", "1000000"})
+    public int players;
+
+    @Param({PlaytimeConfig.STORAGE_SHARDED, PlaytimeConfig.STORAGE_MAPPED})
+    public String storage;
+
+    private final HytaleLogger logger = HytaleLogger.get("benchmarks");
+    private Path dataFolder;
+    private PlaytimeManager manager;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dataFolder = Files.createTempDirectory("playtime-bench");
+        BenchmarkData.writeLegacyDataset(dataFolder, BenchmarkData.randomIds(players, 1L), BenchmarkData.randomIds(8, 2L));
+        manager = new PlaytimeManager(dataFolder.toFile(), logger, new ManualSessionClock(System.currentTimeMillis()),
+                new PlaytimeConfig(storage, ""));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        manager.close();
+        BenchmarkData.deleteRecursively(dataFolder);
+    }
+
+    @Benchmark
+    public long report() throws IOException {
+        return manager.query().report(player -> player.getTotalPlaytime() >= HUNDRED_HOURS, HUNDRED_HOURS).getPlayers();
+    }
+
+    @Benchmark
+    public long exportCsv() throws IOException {
+        File target = manager.exportReport(player -> true);
+        long length = target.length();
+        Files.delete(target.toPath());
+        return length;
+    }
+}
@@ -0,0 +1,66 @@
+package com.zeni.playtime.benchmarks;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+import com.zeni.playtime.data.PlaytimeManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Inicio y fin de sesiones concurrentes desde varios hilos, como en una avalancha de conexiones
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Threads(4)
+public class SessionChurnBenchmark {
+    private static final int PLAYERS = 10_000;
+
+    private Path dataFolder;
+    private PlaytimeManager manager;
+    private UUID[] players;
+    private UUID[] worlds;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dataFolder = Files.createTempDirectory("playtime-bench-churn");
+        manager = new PlaytimeManager(dataFolder.toFile(), HytaleLogger.get("benchmarks"));
+        players = BenchmarkData.randomIds(PLAYERS, 4L);
+        worlds = BenchmarkData.randomIds(4, 5L);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        manager.close();
+        BenchmarkData.deleteRecursively(dataFolder);
+    }
+
+    @Benchmark
+    public void startAndEndSession() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        UUID player = players[random.nextInt(PLAYERS)];
+        UUID world = worlds[random.nextInt(worlds.length)];
+        manager.startSession(player, world);
+        manager.endSession(player, world);
+    }
+}
@@ -1,13 +1,21 @@
 package com.zeni.playtime;
 
+import com.hypixel.hytale.server.core.event.events.player.PlayerDisconnectEvent;
 import com.hypixel.hytale.server.core.event.events.player.PlayerReadyEvent;
 import com.hypixel.hytale.server.core.plugin.JavaPlugin;
 import com.hypixel.hytale.server.core.plugin.JavaPluginInit;
 import com.zeni.playtime.commands.PlaytimeCommand;
 import com.zeni.playtime.data.HudPreferences;
+import com.zeni.playtime.data.MappedPlaytimeStore;
+import com.zeni.playtime.data.PlaytimeConfig;
 import com.zeni.playtime.data.PlaytimeManager;
+import com.zeni.playtime.data.SessionClock;
+import com.zeni.playtime.listeners.ActivityTracker;
 import com.zeni.playtime.listeners.PlayerConnectionListener;
 import com.zeni.playtime.listeners.PlaytimeListener;
+import com.zeni.playtime.metrics.MetricsReporter;
+import com.zeni.playtime.metrics.PlaytimeMetrics;
+import com.zeni.playtime.scheduler.PlaytimeScheduler;
 
 import javax.annotation.Nonnull;
 import java.io.File;
@@ -17,6 +25,8 @@ public class PlaytimeTrackerPlugin extends JavaPlugin {
     private PlaytimeListener playtimeListener;
     private PlayerConnectionListener connectionListener;
     private HudPreferences hudPreferences;
+    private MetricsReporter metricsReporter;
+    private PlaytimeScheduler scheduler;
 
     public PlaytimeTrackerPlugin(@Nonnull JavaPluginInit init) {
         super(init);
@@ -25,22 +35,53 @@ public class PlaytimeTrackerPlugin extends JavaPlugin {
     @Override
     protected void setup() {
         File dataFolder = new File("plugins/" + this.getManifest().getName());
-        this.playtimeManager = new PlaytimeManager(dataFolder, this.getLogger());
-        this.hudPreferences = new HudPreferences(dataFolder);
+        PlaytimeConfig config = PlaytimeConfig.load(dataFolder, this.getLogger());
+        this.scheduler = new PlaytimeScheduler(this.getLogger());
+        this.playtimeManager = new PlaytimeManager(dataFolder, this.getLogger(), SessionClock.SYSTEM, config, scheduler);
+        this.hudPreferences = new HudPreferences(dataFolder,
+                playtimeManager.getStore() instanceof MappedPlaytimeStore table ? table : null, scheduler, this.getLogger());
 
         this.playtimeListener = new PlaytimeListener(playtimeManager);
 
-        this.connectionListener = new PlayerConnectionListener(playtimeManager, playtimeListener, hudPreferences);
+        ActivityTracker activityTracker = config.isActivityTracking()
+                ? new ActivityTracker(playtimeManager, config.getAfkTimeoutMillis(), scheduler)
+                : null;
+        this.connectionListener = new PlayerConnectionListener(playtimeManager, playtimeListener, hudPreferences, scheduler, activityTracker);
 
-        this.getCommandRegistry().registerCommand(new PlaytimeCommand(playtimeManager, connectionListener));
+        this.getCommandRegistry().registerCommand(new PlaytimeCommand(playtimeManager, connectionListener,
+                scheduler, config.getReportThresholdMillis()));
 
         this.getEventRegistry().registerGlobal(PlayerReadyEvent.class, PlayerConnectionListener::onPlayerReadyEvent);
+        this.getEventRegistry().registerGlobal(PlayerDisconnectEvent.class, PlayerConnectionListener::onPlayerDisconnectEvent);
+
+        registerMetrics();
+        if (config.getMetricsIntervalSeconds() > 0) {
+            this.metricsReporter = new MetricsReporter(dataFolder, config.getMetricsIntervalSeconds(), scheduler, this.getLogger());
+        }
 
         this.getLogger().atInfo().log("PlaytimeTrackerPlugin started successfully");
     }
 
+    private void registerMetrics() {
+        PlaytimeMetrics.registerGauge("playtime_tracked_players", connectionListener::getTrackedPlayerCount);
+        PlaytimeMetrics.registerGauge("playtime_resident_players", playtimeManager::getResidentPlayerCount);
+        PlaytimeMetrics.registerGauge("playtime_active_sessions", playtimeManager::getActiveSessionCount);
+        PlaytimeMetrics.registerGauge("playtime_active_huds", connectionListener::getActiveHudCount);
+        PlaytimeMetrics.registerGauge("playtime_activity_tracked_players", connectionListener::getActivityTrackedCount);
+        PlaytimeMetrics.registerGauge("playtime_milestones_scheduled_players", playtimeManager.getMilestones()::getScheduledCount);
+        PlaytimeMetrics.registerCounter("playtime_hud_updates_sent_total", connectionListener.getHudDispatcher()::getTotalSent);
+        PlaytimeMetrics.registerCounter("playtime_hud_updates_skipped_total", connectionListener.getHudDispatcher()::getTotalSkipped);
+        PlaytimeMetrics.registerCounter("playtime_ticks_dropped_total", scheduler::getDroppedTicks);
+        PlaytimeMetrics.registerCounter("playtime_events_published_total", playtimeManager.getEvents()::getPublishedCount);
+        PlaytimeMetrics.registerCounter("playtime_events_dropped_total", playtimeManager.getEvents()::getDroppedCount);
+    }
+
     @Override
     protected void shutdown() {
+        if (metricsReporter != null) {
+            metricsReporter.shutdown();
+        }
+
         if (connectionListener != null) {
             connectionListener.shutdown();
         }
@@ -49,9 +90,18 @@ public class PlaytimeTrackerPlugin extends JavaPlugin {
             playtimeListener.shutdown();
         }
 
+        if (hudPreferences != null) {
+            hudPreferences.close();
+        }
+
         if (playtimeManager != null) {
-            playtimeManager.saveData();
+            playtimeManager.close();
             this.getLogger().atInfo().log("Playtime data saved successfully on shutdown.");
         }
+
+        // Último: espera a la E/S que siga en marcha
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
     }
 }
\ No newline at end of file
@@ -7,13 +7,14 @@ import com.hypixel.hytale.server.core.command.system.CommandContext;
 import com.hypixel.hytale.server.core.entity.entities.Player;
 import com.hypixel.hytale.server.core.universe.PlayerRef;
 import com.hypixel.hytale.server.core.universe.world.World;
-import com.hypixel.hytale.server.core.universe.world.WorldConfig;
 import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
 import com.hypixel.hytale.component.Ref;
 import com.hypixel.hytale.component.Store;
 import com.zeni.playtime.data.PlaytimeData;
 import com.zeni.playtime.data.PlaytimeManager;
+import com.zeni.playtime.data.WorldRegistry;
 import com.zeni.playtime.listeners.PlayerConnectionListener;
+import com.zeni.playtime.scheduler.PlaytimeScheduler;
 import org.checkerframework.checker.nullness.compatqual.NonNullDecl;
 
 import javax.annotation.Nonnull;
@@ -22,13 +23,21 @@ import java.util.*;
 public class PlaytimeCommand extends AbstractPlayerCommand {
     private final PlaytimeManager playtimeManager;
     private final PlayerConnectionListener connectionListener;
+    private final WorldResolver worldResolver = new WorldResolver();
+    private final PlaytimeResultCache resultCache = new PlaytimeResultCache();
 
-    public PlaytimeCommand(PlaytimeManager playtimeManager, PlayerConnectionListener connectionListener) {
+    public PlaytimeCommand(PlaytimeManager playtimeManager, PlayerConnectionListener connectionListener,
+                           PlaytimeScheduler scheduler, long reportThresholdMillis) {
         super("playtime", "Displays time played", false);
         this.playtimeManager = playtimeManager;
         this.connectionListener = connectionListener;
 
         this.addSubCommand(new ToggleHUDCommand(connectionListener));
+        this.addSubCommand(new TopCommand(playtimeManager));
+        this.addSubCommand(new StatsCommand());
+        this.addSubCommand(new ReportCommand(playtimeManager, scheduler, reportThresholdMillis));
+
+        playtimeManager.addUpdateCallback(resultCache::invalidate);
     }
 
     @Override
@@ -45,50 +54,50 @@ public class PlaytimeCommand extends AbstractPlayerCommand {
         Player player = commandContext.senderAs(Player.class);
         UUID playerId = player.getUuid();
 
-        PlaytimeWorld currentWorld = determinePlayerWorld(commandContext);
-        if (currentWorld != null) {
-            connectionListener.registerPlayer(playerId, currentWorld.uuid);
+        PlaytimeWorld currentWorld = worldResolver.resolve(world, commandContext.sender());
+        if (currentWorld == null) {
+            return;
         }
+        connectionListener.registerPlayer(playerId, currentWorld.uuid);
 
-        PlaytimeData data = playtimeManager.getPlayerData(playerId);
-
-        if (currentWorld != null) {
-            long worldTotal = data.getWorldPlaytime().getOrDefault(currentWorld.uuid, 0L);
-            long activeSession = data.hasActiveSession(currentWorld.uuid) ? data.getCurrentSessionTime(currentWorld.uuid) : 0L;
-
-            long totalWithCurrentSession = worldTotal + activeSession;
-
-            String formattedWorldTotal = playtimeManager.formatTime(totalWithCurrentSession);
-            String formattedSession = playtimeManager.formatTime(activeSession);
+        for (String line : resultLines(playerId, currentWorld)) {
+            commandContext.sendMessage(Message.raw(line));
+        }
+    }
 
-            commandContext.sendMessage(Message.raw(currentWorld.displayName() + ": " + formattedWorldTotal));
-            if (activeSession > 0) {
-                commandContext.sendMessage(Message.raw("Session: " + formattedSession));
-            }
+    /**
+     * Líneas de respuesta, desde la caché si el texto no ha cambiado desde la última vez
+     */
+    private String[] resultLines(UUID playerId, PlaytimeWorld currentWorld) {
+        long now = playtimeManager.getClock().monotonicMillis();
+        String[] cached = resultCache.get(playerId, currentWorld.uuid, now);
+        if (cached != null) {
+            return cached;
+        }
 
-            commandContext.sendMessage(Message.raw(""));
+        long version = resultCache.version();
+        PlaytimeData.Snapshot snapshot = playtimeManager.getPlayerData(playerId).snapshot();
+        int worldId = WorldRegistry.find(currentWorld.uuid);
+        long activeSession = snapshot.hasActiveSession(worldId) ? Math.max(0L, now - snapshot.getSessionStart(worldId)) : 0L;
+        long totalWithCurrentSession = snapshot.getPlaytime(worldId) + activeSession;
+        long activePlaytime = snapshot.getActivePlaytime(worldId);
+
+        List<String> text = new ArrayList<>(4);
+        text.add(currentWorld.displayName() + ": " + playtimeManager.formatTime(totalWithCurrentSession));
+        if (activeSession > 0) {
+            text.add("Session: " + playtimeManager.formatTime(activeSession));
+        }
+        if (activePlaytime > 0) {
+            // Se acredita por intervalos: con sesión abierta, se relee al caducar la entrada de la caché
+            text.add("Active (not AFK): " + playtimeManager.formatTime(activePlaytime));
         }
+        text.add("");
+        String[] lines = text.toArray(new String[0]);
+        resultCache.put(playerId, currentWorld.uuid, lines, now, totalWithCurrentSession,
+                snapshot.hasActiveSession(worldId) ? activeSession : -1L, version);
+        return lines;
     }
 
     public record PlaytimeWorld(String displayName, UUID uuid) {
     }
-
-    private PlaytimeWorld determinePlayerWorld(CommandContext context) {
-        try {
-            Object sender = context.sender();
-            try {
-                Object world = sender.getClass().getMethod("getWorld").invoke(sender);
-                if (world != null) {
-                    WorldConfig worldConfig = (WorldConfig) world.getClass().getMethod("getWorldConfig").invoke(world);
-                    String displayName = worldConfig.getDisplayName();
-                    UUID uuid = worldConfig.getUuid();
-                    return new PlaytimeWorld(displayName, uuid);
-                }
-            } catch (Exception _) {
-            }
-
-        } catch (Exception _) {
-        }
-        return null;
-    }
 }
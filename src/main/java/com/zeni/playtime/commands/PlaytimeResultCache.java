@@ -0,0 +1,67 @@
+package com.zeni.playtime.commands;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Últimas líneas de /playtime de cada jugador. Una entrada vale mientras el texto no cambie:
+ * con una sesión abierta, hasta el siguiente segundo o minuto visible; sin ella, hasta que el gestor
+ * notifique un cambio del jugador (inicio o fin de sesión, tiempo añadido).
+ */
+final class PlaytimeResultCache {
+    private static final long SECOND = 1000L;
+    private static final long MINUTE = 60 * SECOND;
+    private static final long HOUR = 60 * MINUTE;
+
+    private record Entry(UUID worldUuid, String[] lines, long validUntil) {
+    }
+
+    private final Map<UUID, Entry> entries = new ConcurrentHashMap<>();
+    // Cambia con cada invalidación; un resultado calculado antes de una invalidación no se guarda
+    private final AtomicLong version = new AtomicLong();
+
+    String[] get(UUID playerId, UUID worldUuid, long now) {
+        Entry entry = entries.get(playerId);
+        if (entry == null || !entry.worldUuid().equals(worldUuid) || now >= entry.validUntil()) {
+            return null;
+        }
+        return entry.lines();
+    }
+
+    long version() {
+        return version.get();
+    }
+
+    /**
+     * Guarda el resultado si no ha habido invalidaciones desde {@code versionAtBuild}
+     *
+     * @param worldTotal    tiempo mostrado del mundo, incluida la sesión
+     * @param sessionMillis duración de la sesión abierta, o un valor negativo si no hay
+     */
+    void put(UUID playerId, UUID worldUuid, String[] lines, long now, long worldTotal, long sessionMillis, long versionAtBuild) {
+        long validUntil = Long.MAX_VALUE;
+        if (sessionMillis >= 0) {
+            validUntil = now + Math.min(untilNextChange(worldTotal), untilNextChange(sessionMillis));
+        }
+        entries.put(playerId, new Entry(worldUuid, lines, validUntil));
+        if (version.get() != versionAtBuild) {
+            entries.remove(playerId);
+        }
+    }
+
+    void invalidate(UUID playerId) {
+        version.incrementAndGet();
+        entries.remove(playerId);
+    }
+
+    /**
+     * Milisegundos hasta que cambia el texto de {@code PlaytimeManager.formatTime}:
+     * por minutos a partir de una hora, por segundos antes
+     */
+    private static long untilNextChange(long milliseconds) {
+        long unit = milliseconds >= HOUR ? MINUTE : SECOND;
+        return (milliseconds / unit + 1) * unit - milliseconds;
+    }
+}
@@ -0,0 +1,128 @@
+package com.zeni.playtime.commands;
+
+import com.hypixel.hytale.component.Ref;
+import com.hypixel.hytale.component.Store;
+import com.hypixel.hytale.server.core.Message;
+import com.hypixel.hytale.server.core.command.system.CommandContext;
+import com.hypixel.hytale.server.core.command.system.basecommands.AbstractPlayerCommand;
+import com.hypixel.hytale.server.core.universe.PlayerRef;
+import com.hypixel.hytale.server.core.universe.world.World;
+import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
+import com.zeni.playtime.data.PlaytimeManager;
+import com.zeni.playtime.data.PlaytimeReport;
+import com.zeni.playtime.metrics.PlaytimeMetrics;
+import com.zeni.playtime.scheduler.PlaytimeScheduler;
+import org.checkerframework.checker.nullness.compatqual.NonNullDecl;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * /playtime report: agregados sobre todos los jugadores guardados; /playtime report export los vuelca a CSV.
+ * La consulta corre en un hilo de E/S y la respuesta vuelve al hilo del mundo. Solo una a la vez.
+ */
+public class ReportCommand extends AbstractPlayerCommand {
+    private static final int MAX_WORLDS = 5;
+
+    private final PlaytimeManager playtimeManager;
+    private final PlaytimeScheduler scheduler;
+    private final long thresholdMillis;
+    private final AtomicBoolean running;
+
+    public ReportCommand(PlaytimeManager playtimeManager, PlaytimeScheduler scheduler, long thresholdMillis) {
+        super("report", "Shows playtime totals over all players", false);
+        this.requirePermission("playtime.admin");
+        this.playtimeManager = playtimeManager;
+        this.scheduler = scheduler;
+        this.thresholdMillis = thresholdMillis;
+        this.running = new AtomicBoolean();
+
+        this.addSubCommand(new ExportCommand(this));
+    }
+
+    @Override
+    protected void execute(@NonNullDecl CommandContext commandContext, @NonNullDecl Store<EntityStore> store, @NonNullDecl Ref<EntityStore> ref, @NonNullDecl PlayerRef playerRef, @NonNullDecl World world) {
+        UUID currentWorld = world.getWorldConfig().getUuid();
+        String currentWorldName = world.getWorldConfig().getDisplayName();
+        runReport(commandContext, world, "Generating playtime report...", () -> {
+            long start = System.nanoTime();
+            PlaytimeReport report = playtimeManager.query().report(player -> true, thresholdMillis);
+            return summaryLines(report, currentWorld, currentWorldName, System.nanoTime() - start);
+        });
+    }
+
+    private List<String> summaryLines(PlaytimeReport report, UUID currentWorld, String currentWorldName, long elapsedNanos) {
+        List<String> lines = new ArrayList<>();
+        lines.add("Playtime report:");
+        lines.add("Players: " + report.getPlayers() + " (" + report.getPlayersOverThreshold() + " with "
+                + playtimeManager.formatTime(report.getThresholdMillis()) + " or more)");
+        lines.add("Total: " + playtimeManager.formatTime(report.getTotalMillis())
+                + " | Average: " + playtimeManager.formatTime(report.getAverageMillis())
+                + " | Max: " + playtimeManager.formatTime(report.getMaxMillis()));
+        if (report.getActiveMillis() > 0) {
+            lines.add("Active (not AFK): " + playtimeManager.formatTime(report.getActiveMillis()));
+        }
+        int[] shownWorlds = new int[1];
+        report.forEachWorld((worldUuid, players, milliseconds) -> {
+            if (shownWorlds[0]++ < MAX_WORLDS) {
+                String name = worldUuid.equals(currentWorld) ? currentWorldName : worldUuid.toString().substring(0, 8);
+                lines.add(name + ": " + playtimeManager.formatTime(milliseconds) + " (" + players + " players)");
+            }
+        });
+        lines.add(String.format("(%.2fs)", elapsedNanos / 1e9));
+        return lines;
+    }
+
+    private interface ReportTask {
+        List<String> run() throws IOException;
+    }
+
+    private void runReport(CommandContext commandContext, World world, String startMessage, ReportTask task) {
+        if (!running.compareAndSet(false, true)) {
+            commandContext.sendMessage(Message.raw("A playtime report is already running."));
+            return;
+        }
+        commandContext.sendMessage(Message.raw(startMessage));
+        scheduler.runIo("command.report", () -> {
+            List<String> lines;
+            try {
+                lines = task.run();
+            } catch (IOException | RuntimeException e) {
+                PlaytimeMetrics.recordError("command.report");
+                lines = List.of("Playtime report failed: " + e.getMessage());
+            } finally {
+                running.set(false);
+            }
+            List<String> reply = lines;
+            world.execute(() -> {
+                for (String line : reply) {
+                    commandContext.sendMessage(Message.raw(line));
+                }
+            });
+        });
+    }
+
+    public static class ExportCommand extends AbstractPlayerCommand {
+        private final ReportCommand report;
+
+        public ExportCommand(ReportCommand report) {
+            super("export", "Exports playtime of all players to a CSV file", false);
+            this.requirePermission("playtime.admin");
+            this.report = report;
+        }
+
+        @Override
+        protected void execute(@NonNullDecl CommandContext commandContext, @NonNullDecl Store<EntityStore> store, @NonNullDecl Ref<EntityStore> ref, @NonNullDecl PlayerRef playerRef, @NonNullDecl World world) {
+            report.runReport(commandContext, world, "Exporting playtime report...", () -> {
+                long start = System.nanoTime();
+                File target = report.playtimeManager.exportReport(player -> true);
+                return List.of("Report written to reports/" + target.getName(),
+                        String.format("(%.2fs)", (System.nanoTime() - start) / 1e9));
+            });
+        }
+    }
+}
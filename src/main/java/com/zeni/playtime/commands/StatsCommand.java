@@ -0,0 +1,31 @@
+package com.zeni.playtime.commands;
+
+import com.hypixel.hytale.component.Ref;
+import com.hypixel.hytale.component.Store;
+import com.hypixel.hytale.server.core.Message;
+import com.hypixel.hytale.server.core.command.system.CommandContext;
+import com.hypixel.hytale.server.core.command.system.basecommands.AbstractPlayerCommand;
+import com.hypixel.hytale.server.core.universe.PlayerRef;
+import com.hypixel.hytale.server.core.universe.world.World;
+import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
+import com.zeni.playtime.metrics.PlaytimeMetrics;
+import org.checkerframework.checker.nullness.compatqual.NonNullDecl;
+
+/**
+ * /playtime stats: métricas internas del plugin, solo para administradores
+ */
+public class StatsCommand extends AbstractPlayerCommand {
+
+    public StatsCommand() {
+        super("stats", "Shows playtime plugin metrics", false);
+        this.requirePermission("playtime.admin");
+    }
+
+    @Override
+    protected void execute(@NonNullDecl CommandContext commandContext, @NonNullDecl Store<EntityStore> store, @NonNullDecl Ref<EntityStore> ref, @NonNullDecl PlayerRef playerRef, @NonNullDecl World world) {
+        commandContext.sendMessage(Message.raw("Playtime stats:"));
+        for (String line : PlaytimeMetrics.summaryLines()) {
+            commandContext.sendMessage(Message.raw(line));
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.zeni.playtime.commands;
+
+import com.hypixel.hytale.component.Ref;
+import com.hypixel.hytale.component.Store;
+import com.hypixel.hytale.server.core.Message;
+import com.hypixel.hytale.server.core.command.system.CommandContext;
+import com.hypixel.hytale.server.core.command.system.basecommands.AbstractPlayerCommand;
+import com.hypixel.hytale.server.core.universe.PlayerRef;
+import com.hypixel.hytale.server.core.universe.world.World;
+import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
+import com.zeni.playtime.data.LeaderboardEntry;
+import com.zeni.playtime.data.PlaytimeLeaderboard;
+import com.zeni.playtime.data.PlaytimeManager;
+import org.checkerframework.checker.nullness.compatqual.NonNullDecl;
+
+import java.util.List;
+import java.util.UUID;
+
+public class TopCommand extends AbstractPlayerCommand {
+    private static final int TOP_SIZE = 10;
+
+    private final PlaytimeManager playtimeManager;
+
+    public TopCommand(PlaytimeManager playtimeManager) {
+        super("top", "Shows the players with the most playtime", false);
+        this.playtimeManager = playtimeManager;
+
+        this.addSubCommand(new TopWorldCommand(playtimeManager));
+    }
+
+    @Override
+    protected void execute(@NonNullDecl CommandContext commandContext, @NonNullDecl Store<EntityStore> store, @NonNullDecl Ref<EntityStore> ref, @NonNullDecl PlayerRef playerRef, @NonNullDecl World world) {
+        PlaytimeLeaderboard leaderboard = playtimeManager.getLeaderboard();
+        sendTop(commandContext, playtimeManager, "Top playtime", leaderboard.top(TOP_SIZE), leaderboard.rank(playerRef.getUuid()));
+    }
+
+    static void sendTop(CommandContext commandContext, PlaytimeManager playtimeManager, String title, List<LeaderboardEntry> entries, int ownRank) {
+        PlaytimeLeaderboard leaderboard = playtimeManager.getLeaderboard();
+
+        commandContext.sendMessage(Message.raw(title + ":"));
+        int position = 1;
+        for (LeaderboardEntry entry : entries) {
+            commandContext.sendMessage(Message.raw(position + ". " + leaderboard.getName(entry.playerId()) + " - " + playtimeManager.formatTime(entry.playtime())));
+            position++;
+        }
+        commandContext.sendMessage(Message.raw("Your rank: #" + ownRank));
+
+        if (!leaderboard.isLoaded()) {
+            commandContext.sendMessage(Message.raw("(Still indexing saved players, results may be incomplete)"));
+        }
+    }
+
+    public static class TopWorldCommand extends AbstractPlayerCommand {
+        private final PlaytimeManager playtimeManager;
+
+        public TopWorldCommand(PlaytimeManager playtimeManager) {
+            super("world", "Shows the players with the most playtime in this world", false);
+            this.playtimeManager = playtimeManager;
+        }
+
+        @Override
+        protected void execute(@NonNullDecl CommandContext commandContext, @NonNullDecl Store<EntityStore> store, @NonNullDecl Ref<EntityStore> ref, @NonNullDecl PlayerRef playerRef, @NonNullDecl World world) {
+            UUID worldUuid = world.getWorldConfig().getUuid();
+            PlaytimeLeaderboard leaderboard = playtimeManager.getLeaderboard();
+            sendTop(commandContext, playtimeManager, "Top playtime in " + world.getWorldConfig().getDisplayName(),
+                    leaderboard.top(worldUuid, TOP_SIZE), leaderboard.rank(playerRef.getUuid(), worldUuid));
+        }
+    }
+}
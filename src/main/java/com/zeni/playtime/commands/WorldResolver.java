@@ -0,0 +1,75 @@
+package com.zeni.playtime.commands;
+
+import com.hypixel.hytale.server.core.universe.world.World;
+import com.hypixel.hytale.server.core.universe.world.WorldConfig;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Resuelve el mundo de quien ejecuta un comando sin reflexión en cada llamada.
+ * El UUID y el nombre visible de cada mundo se leen una sola vez y se guardan
+ * (con referencias débiles, para no retener mundos ya descargados).
+ */
+final class WorldResolver {
+    /**
+     * {@code getWorld()} del tipo de emisor, buscado una vez por clase; null si no lo tiene
+     */
+    private static final ClassValue<MethodHandle> GET_WORLD = new ClassValue<>() {
+        @Override
+        protected MethodHandle computeValue(Class<?> type) {
+            try {
+                return MethodHandles.publicLookup()
+                        .unreflect(type.getMethod("getWorld"))
+                        .asType(MethodType.methodType(Object.class, Object.class));
+            } catch (ReflectiveOperationException | SecurityException e) {
+                return null;
+            }
+        }
+    };
+
+    private final Map<World, PlaytimeCommand.PlaytimeWorld> worlds = Collections.synchronizedMap(new WeakHashMap<>());
+
+    /**
+     * Usa el mundo que ya entrega el comando; si no lo hay, lo pide al emisor
+     */
+    PlaytimeCommand.PlaytimeWorld resolve(World world, Object sender) {
+        if (world == null) {
+            world = worldOf(sender);
+            if (world == null) {
+                return null;
+            }
+        }
+
+        PlaytimeCommand.PlaytimeWorld cached = worlds.get(world);
+        if (cached != null) {
+            return cached;
+        }
+        WorldConfig config = world.getWorldConfig();
+        if (config == null) {
+            return null;
+        }
+        PlaytimeCommand.PlaytimeWorld resolved = new PlaytimeCommand.PlaytimeWorld(config.getDisplayName(), config.getUuid());
+        worlds.put(world, resolved);
+        return resolved;
+    }
+
+    private static World worldOf(Object sender) {
+        if (sender == null) {
+            return null;
+        }
+        MethodHandle getWorld = GET_WORLD.get(sender.getClass());
+        if (getWorld == null) {
+            return null;
+        }
+        try {
+            return (World) (Object) getWorld.invokeExact(sender);
+        } catch (Throwable e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.zeni.playtime.data;
+
+import com.zeni.playtime.metrics.PlaytimeMetrics;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Escritura de ficheros a través de un temporal y un rename atómico,
+ * para que un cierre inesperado nunca deje un fichero a medio escribir.
+ */
+public final class AtomicFiles {
+
+    public interface WriterAction {
+        void write(Writer writer) throws IOException;
+    }
+
+    public interface StreamAction {
+        void write(OutputStream out) throws IOException;
+    }
+
+    private AtomicFiles() {
+    }
+
+    public static void write(File target, WriterAction action) throws IOException {
+        writeStream(target, out -> {
+            Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            action.write(writer);
+            writer.flush();
+        });
+    }
+
+    /**
+     * Variante binaria: la acción debe vaciar sus propios buffers antes de volver
+     */
+    public static void writeStream(File target, StreamAction action) throws IOException {
+        File temp = new File(target.getParentFile(), target.getName() + ".tmp");
+
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            action.write(out);
+            out.getFD().sync();
+        }
+        PlaytimeMetrics.BYTES_WRITTEN.add(temp.length());
+
+        try {
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
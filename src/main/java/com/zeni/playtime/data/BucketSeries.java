@@ -0,0 +1,97 @@
+package com.zeni.playtime.data;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Serie contigua de contadores en segundos indexada por periodo (día, semana o mes).
+ * Se guarda como un origen y un int[] sin huecos, que es también su formato en disco.
+ * No es thread-safe: la protege el {@link PlaytimeHistory} que la contiene.
+ */
+final class BucketSeries {
+    private static final int[] EMPTY = new int[0];
+
+    private int origin;
+    private int[] values = EMPTY;
+    private int length;
+
+    void add(int index, int seconds) {
+        if (length == 0) {
+            origin = index;
+        } else if (index < origin) {
+            // Periodo anterior al primero guardado (reloj de pared retrasado): desplazar la serie
+            int shift = origin - index;
+            int[] grown = new int[length + shift];
+            System.arraycopy(values, 0, grown, shift, length);
+            values = grown;
+            length += shift;
+            origin = index;
+        }
+
+        int offset = index - origin;
+        if (offset >= values.length) {
+            values = Arrays.copyOf(values, Math.max(offset + 1, values.length * 2));
+        }
+        values[offset] += seconds;
+        length = Math.max(length, offset + 1);
+    }
+
+    int get(int index) {
+        int offset = index - origin;
+        return offset >= 0 && offset < length ? values[offset] : 0;
+    }
+
+    /**
+     * Suma los periodos en [from, to)
+     */
+    long sum(int from, int to) {
+        int start = Math.max(from - origin, 0);
+        int end = Math.min(to - origin, length);
+        long total = 0L;
+        for (int offset = start; offset < end; offset++) {
+            total += values[offset];
+        }
+        return total;
+    }
+
+    /**
+     * Descarta los periodos anteriores al índice dado
+     */
+    void trimBefore(int index) {
+        int drop = Math.min(index - origin, length);
+        if (drop <= 0) {
+            return;
+        }
+        values = Arrays.copyOfRange(values, drop, length);
+        length -= drop;
+        origin = length == 0 ? 0 : index;
+    }
+
+    boolean isEmpty() {
+        return length == 0;
+    }
+
+    void write(DataOutputStream out) throws IOException {
+        out.writeInt(origin);
+        out.writeInt(length);
+        for (int offset = 0; offset < length; offset++) {
+            out.writeInt(values[offset]);
+        }
+    }
+
+    static BucketSeries read(DataInputStream in) throws IOException {
+        BucketSeries series = new BucketSeries();
+        series.origin = in.readInt();
+        series.length = in.readInt();
+        if (series.length < 0) {
+            throw new IOException("Longitud de serie inválida: " + series.length);
+        }
+        series.values = new int[series.length];
+        for (int offset = 0; offset < series.length; offset++) {
+            series.values[offset] = in.readInt();
+        }
+        return series;
+    }
+}
@@ -1,74 +1,318 @@
 package com.zeni.playtime.data;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.hypixel.hytale.logger.HytaleLogger;
+import com.zeni.playtime.metrics.PlaytimeMetrics;
+import com.zeni.playtime.scheduler.PlaytimeScheduler;
 
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.FileInputStream;
 import java.io.IOException;
-import java.lang.reflect.Type;
-import java.util.HashMap;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Preferencias del HUD por jugador, guardadas como una palabra de flags por jugador.
+ * Cambiar una preferencia solo actualiza la memoria y marca al jugador como sucio si el valor cambia;
+ * un hilo escritor vuelca los sucios por lotes.
+ * <p>
+ * Con el backend de shards, los flags se añaden a un log binario de registros (jugador, flags)
+ * que se compacta cuando crece demasiado. Con la tabla mapeada, van al registro del jugador.
+ * El hud-preferences.json antiguo se migra una sola vez.
+ */
 public class HudPreferences {
-    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
-    private final Map<UUID, Boolean> hudEnabled;
-    private final File preferencesFile;
+    public static final int FLAG_HUD_ENABLED = 1;
+    private static final long FLUSH_INTERVAL_MILLIS = 5_000L;
+    private static final int LOG_RECORD_SIZE = 20;
+    private static final int LOG_COMPACT_MIN_RECORDS = 1_024;
 
-    public HudPreferences(File dataFolder) {
-        this.hudEnabled = new ConcurrentHashMap<>();
+    private final Map<UUID, Integer> flags; // preferencias conocidas; con la tabla, solo las ya consultadas
+    private final Set<UUID> dirtyPlayers;
+    private final File legacyFile;
+    private final File logFile;
+    private final MappedPlaytimeStore table; // null con el backend de shards
+    private final HytaleLogger logger;
+    private final PersistenceWriter writer;
+    private final PlaytimeScheduler ownedScheduler; // solo si no se recibe el planificador del plugin
+
+    // Solo accedidos desde el hilo escritor
+    private FileChannel log;
+    private long logRecords;
+
+    public HudPreferences(File dataFolder, HytaleLogger logger) {
+        this(dataFolder, null, null, logger);
+    }
+
+    /**
+     * @param table     tabla mapeada donde guardar los flags, o null para usar el log propio
+     * @param scheduler planificador del plugin, o null para usar uno propio que se cierra con {@link #close()}
+     */
+    public HudPreferences(File dataFolder, MappedPlaytimeStore table, PlaytimeScheduler scheduler, HytaleLogger logger) {
+        this.ownedScheduler = scheduler == null ? new PlaytimeScheduler(logger) : null;
+        this.flags = new ConcurrentHashMap<>();
+        this.dirtyPlayers = ConcurrentHashMap.newKeySet();
+        this.table = table;
+        this.logger = logger;
         if (!dataFolder.exists()) {
             dataFolder.mkdirs();
         }
-        this.preferencesFile = new File(dataFolder, "hud-preferences.json");
-        loadPreferences();
+        this.legacyFile = new File(dataFolder, "hud-preferences.json");
+        this.logFile = new File(dataFolder, "hud-preferences.dat");
+
+        loadLog();
+        boolean migrated = loadLegacy();
+        if (table != null) {
+            migrateToTable();
+        } else if (migrated) {
+            try {
+                rewriteLog();
+                markMigrated(legacyFile);
+            } catch (IOException e) {
+                logger.atWarning().log("Error al migrar las preferencias del HUD: " + e.getMessage());
+            }
+        }
+
+        this.writer = new PersistenceWriter("playtime-hud-preferences", FLUSH_INTERVAL_MILLIS, this::persist,
+                scheduler != null ? scheduler : ownedScheduler, logger);
     }
 
     public boolean isHudEnabled(UUID playerId) {
-        return hudEnabled.getOrDefault(playerId, false);
+        return (getFlags(playerId) & FLAG_HUD_ENABLED) != 0;
     }
 
-
+    /**
+     * Cambia la preferencia; si ya tenía ese valor no se escribe nada
+     */
     public void setHudEnabled(UUID playerId, boolean enabled) {
-        hudEnabled.put(playerId, enabled);
-        savePreferences();
+        int current = getFlags(playerId);
+        int updated = enabled ? current | FLAG_HUD_ENABLED : current & ~FLAG_HUD_ENABLED;
+        if (updated == current) {
+            return;
+        }
+        flags.put(playerId, updated);
+        dirtyPlayers.add(playerId);
+        writer.markDirty();
     }
 
+    /**
+     * Vuelca las preferencias pendientes y detiene el hilo escritor
+     */
+    public void close() {
+        writer.close();
+        if (log != null) {
+            try {
+                log.close();
+            } catch (IOException e) {
+                PlaytimeMetrics.recordError("hud-preferences.close");
+            }
+        }
+        if (ownedScheduler != null) {
+            ownedScheduler.shutdown();
+        }
+    }
 
-    private void loadPreferences() {
-        if (!preferencesFile.exists()) {
+    private int getFlags(UUID playerId) {
+        if (table != null) {
+            return flags.computeIfAbsent(playerId, table::getFlags);
+        }
+        Integer value = flags.get(playerId);
+        return value != null ? value : 0;
+    }
+
+    /**
+     * Ejecutado únicamente en el hilo escritor
+     */
+    private void persist(boolean flush) throws IOException {
+        if (dirtyPlayers.isEmpty()) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            writeDirty();
+        } finally {
+            PlaytimeMetrics.HUD_PREFERENCES_FLUSH.recordSince(start);
+        }
+    }
+
+    private void writeDirty() throws IOException {
+        if (table != null) {
+            // Escritura en el sitio; la tabla se fuerza a disco en cada compactación y al cerrar
+            for (UUID playerId : dirtyPlayers) {
+                dirtyPlayers.remove(playerId);
+                table.setFlags(playerId, getFlags(playerId));
+            }
             return;
         }
 
-        try (FileReader reader = new FileReader(preferencesFile)) {
-            Type type = new TypeToken<HashMap<String, Boolean>>(){}.getType();
-            Map<String, Boolean> data = GSON.fromJson(reader, type);
+        ByteBuffer batch = ByteBuffer.allocate(dirtyPlayers.size() * LOG_RECORD_SIZE + LOG_RECORD_SIZE * 16);
+        int written = 0;
+        for (UUID playerId : dirtyPlayers) {
+            if (batch.remaining() < LOG_RECORD_SIZE) {
+                break;
+            }
+            // Quitar antes de leer: un cambio posterior volverá a marcarlo
+            dirtyPlayers.remove(playerId);
+            putRecord(batch, playerId, getFlags(playerId));
+            written++;
+        }
+        batch.flip();
+
+        try {
+            FileChannel channel = openLog();
+            while (batch.hasRemaining()) {
+                channel.write(batch);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            // Volver a marcar todo el lote: reescribir un registro repetido es inocuo
+            batch.rewind();
+            while (batch.remaining() >= LOG_RECORD_SIZE) {
+                dirtyPlayers.add(new UUID(batch.getLong(), batch.getLong()));
+                batch.getInt();
+            }
+            throw e;
+        }
+
+        logRecords += written;
+        if (logRecords > Math.max(LOG_COMPACT_MIN_RECORDS, flags.size() * 2L)) {
+            rewriteLog();
+        }
+        if (!dirtyPlayers.isEmpty()) {
+            writer.markDirty();
+        }
+    }
+
+    /**
+     * Reescribe el log con un único registro por jugador
+     */
+    private void rewriteLog() throws IOException {
+        if (log != null) {
+            log.close();
+            log = null;
+        }
 
-            if (data != null) {
-                for (Map.Entry<String, Boolean> entry : data.entrySet()) {
-                    try {
-                        UUID playerId = UUID.fromString(entry.getKey());
-                        hudEnabled.put(playerId, entry.getValue());
-                    } catch (IllegalArgumentException e) {
-                    }
+        ByteBuffer buffer = ByteBuffer.allocate(LOG_RECORD_SIZE * 512);
+        long[] count = new long[1];
+        AtomicFiles.writeStream(logFile, out -> {
+            for (Map.Entry<UUID, Integer> entry : flags.entrySet()) {
+                if (entry.getValue() == 0) {
+                    continue;
+                }
+                if (buffer.remaining() < LOG_RECORD_SIZE) {
+                    out.write(buffer.array(), 0, buffer.position());
+                    buffer.clear();
+                }
+                putRecord(buffer, entry.getKey(), entry.getValue());
+                count[0]++;
+            }
+            out.write(buffer.array(), 0, buffer.position());
+        });
+        logRecords = count[0];
+    }
+
+    private FileChannel openLog() throws IOException {
+        if (log == null) {
+            log = FileChannel.open(logFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        return log;
+    }
+
+    /**
+     * Reproduce el log; el último registro de cada jugador manda. Un registro incompleto al final se ignora.
+     */
+    private void loadLog() {
+        if (!logFile.exists()) {
+            return;
+        }
+
+        try (FileChannel in = FileChannel.open(logFile.toPath(), StandardOpenOption.READ)) {
+            long size = in.size() / LOG_RECORD_SIZE * LOG_RECORD_SIZE;
+            ByteBuffer buffer = ByteBuffer.allocate(LOG_RECORD_SIZE * 512);
+            long position = 0;
+            while (position < size) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), size - position));
+                while (buffer.hasRemaining() && in.read(buffer, position + buffer.position()) >= 0) {
+                }
+                buffer.flip();
+                position += buffer.remaining();
+                while (buffer.remaining() >= LOG_RECORD_SIZE) {
+                    UUID playerId = new UUID(buffer.getLong(), buffer.getLong());
+                    flags.put(playerId, buffer.getInt());
+                    logRecords++;
                 }
             }
         } catch (IOException e) {
+            PlaytimeMetrics.recordError("hud-preferences.load");
+            logger.atWarning().log("Error al leer las preferencias del HUD: " + e.getMessage());
         }
     }
 
-    private void savePreferences() {
-        try (FileWriter writer = new FileWriter(preferencesFile)) {
-            Map<String, Boolean> data = new HashMap<>();
-            for (Map.Entry<UUID, Boolean> entry : hudEnabled.entrySet()) {
-                data.put(entry.getKey().toString(), entry.getValue());
+    /**
+     * Lee el hud-preferences.json antiguo, si existe. Devuelve true si había algo que migrar.
+     */
+    private boolean loadLegacy() {
+        if (!legacyFile.exists()) {
+            return false;
+        }
+
+        try (JsonReader json = new JsonReader(PlaytimeJsonCodec.openReader(new FileInputStream(legacyFile)))) {
+            if (json.peek() == JsonToken.END_DOCUMENT) {
+                return true;
+            }
+            json.beginObject();
+            while (json.hasNext()) {
+                UUID playerId = PlaytimeJsonCodec.parseUuid(json.nextName());
+                if (playerId != null && json.peek() == JsonToken.BOOLEAN) {
+                    flags.put(playerId, json.nextBoolean() ? FLAG_HUD_ENABLED : 0);
+                } else {
+                    json.skipValue();
+                }
+            }
+            json.endObject();
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            logger.atWarning().log("Error al leer hud-preferences.json: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Lleva a la tabla las preferencias del JSON antiguo o del log, y los aparta
+     */
+    private void migrateToTable() {
+        if (flags.isEmpty()) {
+            return;
+        }
+        try {
+            for (Map.Entry<UUID, Integer> entry : flags.entrySet()) {
+                table.setFlags(entry.getKey(), entry.getValue());
             }
-            GSON.toJson(data, writer);
+            table.force();
         } catch (IOException e) {
+            logger.atWarning().log("Error al migrar las preferencias del HUD a la tabla: " + e.getMessage());
+            return;
+        }
+        markMigrated(legacyFile);
+        markMigrated(logFile);
+    }
+
+    private void markMigrated(File file) {
+        if (file.exists() && !file.renameTo(new File(file.getParentFile(), file.getName() + ".migrated"))) {
+            logger.atWarning().log("No se pudo renombrar " + file.getName() + " tras migrarlo");
         }
     }
+
+    private static void putRecord(ByteBuffer buffer, UUID playerId, int value) {
+        buffer.putLong(playerId.getMostSignificantBits());
+        buffer.putLong(playerId.getLeastSignificantBits());
+        buffer.putInt(value);
+    }
 }
@@ -0,0 +1,734 @@
+package com.zeni.playtime.data;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+import com.zeni.playtime.metrics.PlaytimeMetrics;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Almacenamiento compartido entre varios servidores en una base de datos JDBC
+ * (por defecto un fichero H2 en modo AUTO_SERVER, que varios procesos pueden abrir a la vez).
+ * <p>
+ * Cada nodo recuerda, por jugador y mundo, el total de la base de datos que conoce. Al guardar solo
+ * suma la diferencia ({@code millis = millis + delta}), por lo que dos nodos nunca se pisan;
+ * al releer, el tiempo que han añadido otros nodos se suma a la copia en memoria.
+ * Las relecturas de cada jugador caducan tras un TTL corto y las pide {@link PlaytimeManager}.
+ * <p>
+ * El tiempo con actividad vive en una segunda tabla con la misma forma ({@code playtime_active})
+ * y se sincroniza con las mismas reglas.
+ * <p>
+ * El tiempo de juego no se guarda comparando con la memoria sino sumando los deltas del journal de este nodo:
+ * cada compactación escribe los de los segmentos sellados y, en la misma transacción, el último segmento
+ * aplicado ({@code playtime_nodes}). Tras un cierre inesperado se suman solo los posteriores, así que
+ * reaplicar el journal nunca duplica ni pierde tiempo aunque otros nodos hayan escrito mientras tanto.
+ */
+public class JdbcPlaytimeStore implements PlaytimeStore {
+    private static final String TOTALS_TABLE = "playtime_totals";
+    private static final String ACTIVE_TABLE = "playtime_active";
+    private static final String CREATE_TABLE = "CREATE TABLE IF NOT EXISTS %s ("
+            + "player_id VARCHAR(36) NOT NULL, world_id VARCHAR(36) NOT NULL, millis BIGINT NOT NULL, "
+            + "PRIMARY KEY (player_id, world_id))";
+    private static final String SELECT_PLAYER = "SELECT world_id, millis, 0 FROM playtime_totals WHERE player_id = ? "
+            + "UNION ALL SELECT world_id, millis, 1 FROM playtime_active WHERE player_id = ?";
+    private static final String SELECT_ALL = "SELECT player_id, world_id, millis, 0 FROM playtime_totals "
+            + "UNION ALL SELECT player_id, world_id, millis, 1 FROM playtime_active ORDER BY 1";
+    private static final String SELECT_PREFIX = "SELECT player_id, world_id, millis, 0 FROM playtime_totals WHERE player_id LIKE ? "
+            + "UNION ALL SELECT player_id, world_id, millis, 1 FROM playtime_active WHERE player_id LIKE ? ORDER BY 1";
+    private static final String HEX_DIGITS = "0123456789abcdef";
+    private static final String ADD_DELTA = "UPDATE %s SET millis = millis + ? WHERE player_id = ? AND world_id = ?";
+    private static final String RAISE_TO = "UPDATE %s SET millis = ? WHERE player_id = ? AND world_id = ? AND millis < ?";
+    private static final String INSERT = "INSERT INTO %s (player_id, world_id, millis) VALUES (?, ?, ?)";
+    private static final String CREATE_NODES = "CREATE TABLE IF NOT EXISTS playtime_nodes ("
+            + "node_id VARCHAR(36) NOT NULL PRIMARY KEY, journal_segment INT NOT NULL)";
+    private static final String SELECT_NODE = "SELECT journal_segment FROM playtime_nodes WHERE node_id = ?";
+    private static final String UPDATE_NODE = "UPDATE playtime_nodes SET journal_segment = ? WHERE node_id = ?";
+    private static final String INSERT_NODE = "INSERT INTO playtime_nodes (node_id, journal_segment) VALUES (?, ?)";
+    private static final String CREATE_NAMES = "CREATE TABLE IF NOT EXISTS playtime_names ("
+            + "player_id VARCHAR(36) NOT NULL PRIMARY KEY, name VARCHAR(255) NOT NULL)";
+    private static final String SELECT_NAMES = "SELECT player_id, name FROM playtime_names";
+    private static final String UPDATE_NAME = "UPDATE playtime_names SET name = ? WHERE player_id = ?";
+    private static final String INSERT_NAME = "INSERT INTO playtime_names (player_id, name) VALUES (?, ?)";
+    private static final int BATCH_SIZE = 500;
+    private static final int IMPORT_BATCH = 1_000;
+    private static final long[] EMPTY = new long[0];
+
+    private final String url;
+    private final Driver driver;
+    private final Properties credentials;
+    private final long cacheTtlMillis;
+    private final UUID nodeId;
+    private final SessionClock clock;
+    private final HytaleLogger logger;
+    private final Map<UUID, long[]> synced; // worldId -> total en la base de datos según este nodo; bajo el lock del store
+    private final Map<UUID, long[]> syncedActive; // igual, para el tiempo con actividad
+    private final Map<UUID, Long> refreshedAt; // última lectura de cada jugador, en ms monótonos
+    private int appliedSegment; // último segmento del journal de este nodo ya sumado; bajo el lock del store
+    private Connection connection;
+
+    /**
+     * Suma de un jugador y mundo pendiente de escribir, en la tabla de totales o en la de actividad
+     */
+    private record Delta(UUID playerId, int worldId, long millis, boolean active) {
+    }
+
+    /**
+     * Totales de un jugador leídos de las dos tablas
+     */
+    private record Totals(Map<UUID, Long> playtime, Map<UUID, Long> active) {
+    }
+
+    /**
+     * @param nodeId identifica el journal de este servidor en {@code playtime_nodes}; ver {@link #nodeId(File)}
+     */
+    public JdbcPlaytimeStore(String url, String user, String password, long cacheTtlMillis, UUID nodeId,
+                             SessionClock clock, HytaleLogger logger) {
+        this.url = url;
+        this.driver = findDriver(url);
+        this.credentials = new Properties();
+        credentials.setProperty("user", user);
+        credentials.setProperty("password", password);
+        this.cacheTtlMillis = cacheTtlMillis;
+        this.nodeId = nodeId;
+        this.clock = clock;
+        this.logger = logger;
+        this.synced = new HashMap<>();
+        this.syncedActive = new HashMap<>();
+        this.refreshedAt = new ConcurrentHashMap<>();
+
+        if (driver == null) {
+            throw new UncheckedIOException(new IOException("No hay driver JDBC para " + url));
+        }
+        try (Statement statement = connection().createStatement()) {
+            statement.execute(CREATE_TABLE.formatted(TOTALS_TABLE));
+            statement.execute(CREATE_TABLE.formatted(ACTIVE_TABLE));
+            statement.execute(CREATE_NODES);
+            statement.execute(CREATE_NAMES);
+            this.appliedSegment = readAppliedSegment();
+        } catch (SQLException e) {
+            throw new UncheckedIOException(new IOException("No se pudo abrir la base de datos de tiempo de juego: " + e.getMessage(), e));
+        }
+    }
+
+    /**
+     * Indica si hay algún driver JDBC que acepte la URL. H2 solo se incluye al compilar con {@code -Pcluster}.
+     */
+    public static boolean isDriverAvailable(String url) {
+        return findDriver(url) != null;
+    }
+
+    /**
+     * Busca el driver en el classloader del plugin: DriverManager solo mira el suyo y el del hilo,
+     * así que no ve un driver empaquetado en el jar del plugin. Después se prueba con los del servidor.
+     */
+    private static Driver findDriver(String url) {
+        try {
+            for (Driver candidate : ServiceLoader.load(Driver.class, JdbcPlaytimeStore.class.getClassLoader())) {
+                if (candidate.acceptsURL(url)) {
+                    return candidate;
+                }
+            }
+        } catch (SQLException | ServiceConfigurationError e) {
+            // Un proveedor roto no impide probar con DriverManager
+        }
+        try {
+            return DriverManager.getDriver(url);
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Identificador de este nodo, guardado junto a su journal; se genera la primera vez
+     */
+    public static UUID nodeId(File file) throws IOException {
+        if (file.exists()) {
+            UUID stored = PlaytimeJsonCodec.parseUuid(Files.readString(file.toPath()).trim());
+            if (stored != null) {
+                return stored;
+            }
+        }
+        UUID created = UUID.randomUUID();
+        AtomicFiles.write(file, writer -> writer.write(created.toString()));
+        return created;
+    }
+
+    /**
+     * URL por defecto: un fichero H2 compartido dentro de la carpeta de datos
+     */
+    public static String defaultUrl(File dataFolder) {
+        return "jdbc:h2:file:" + new File(dataFolder, "cluster/playtime").getAbsolutePath() + ";AUTO_SERVER=TRUE";
+    }
+
+    /**
+     * Lee los totales combinados de todos los nodos y los toma como referencia para los próximos deltas
+     */
+    @Override
+    public synchronized PlaytimeData load(UUID playerId) {
+        try {
+            Totals totals = readTotals(playerId);
+            refreshedAt.put(playerId, clock.monotonicMillis());
+            if (totals.playtime().isEmpty() && totals.active().isEmpty()) {
+                synced.put(playerId, EMPTY);
+                syncedActive.put(playerId, EMPTY);
+                return null;
+            }
+            PlaytimeData data = new PlaytimeData(playerId, clock);
+            long[] known = EMPTY;
+            for (Map.Entry<UUID, Long> entry : totals.playtime().entrySet()) {
+                int worldId = WorldRegistry.idOf(entry.getKey());
+                known = grow(known, worldId);
+                known[worldId] = entry.getValue();
+                data.addPlaytime(entry.getKey(), entry.getValue());
+            }
+            long[] knownActive = EMPTY;
+            for (Map.Entry<UUID, Long> entry : totals.active().entrySet()) {
+                int worldId = WorldRegistry.idOf(entry.getKey());
+                knownActive = grow(knownActive, worldId);
+                knownActive[worldId] = entry.getValue();
+                data.addActivePlaytime(entry.getKey(), entry.getValue());
+            }
+            synced.put(playerId, known);
+            syncedActive.put(playerId, knownActive);
+            return data;
+        } catch (SQLException e) {
+            // Sin referencia, el próximo guardado sumará solo lo jugado en este nodo y la relectura traerá el resto
+            synced.remove(playerId);
+            syncedActive.remove(playerId);
+            PlaytimeMetrics.recordError("store.load");
+            logger.atWarning().log("Error al leer al jugador " + playerId + " de la base de datos: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Escribe en un único lote lo que cada jugador ha sumado desde la última lectura o escritura
+     */
+    @Override
+    public synchronized void save(Collection<PlaytimeData> players) throws IOException {
+        List<Delta> deltas = new ArrayList<>();
+        addMemoryDeltas(players, true, deltas);
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        writeDeltas(deltas, -1);
+        markSynced(deltas);
+    }
+
+    @Override
+    public boolean isShared() {
+        return true;
+    }
+
+    @Override
+    public synchronized int appliedJournalSegment() {
+        return appliedSegment;
+    }
+
+    /**
+     * El tiempo de juego sale de los deltas del journal, no de la memoria: la memoria ya puede llevar
+     * sesiones del segmento activo, que se sumarán en la próxima compactación
+     */
+    @Override
+    public synchronized void saveJournal(Map<UUID, long[]> journalDeltas, int lastSegment, Collection<PlaytimeData> players) throws IOException {
+        List<Delta> deltas = new ArrayList<>();
+        for (Map.Entry<UUID, long[]> entry : journalDeltas.entrySet()) {
+            long[] millis = entry.getValue();
+            for (int worldId = 0; worldId < millis.length; worldId++) {
+                if (millis[worldId] > 0) {
+                    deltas.add(new Delta(entry.getKey(), worldId, millis[worldId], false));
+                }
+            }
+        }
+        addMemoryDeltas(players, false, deltas);
+        if (deltas.isEmpty() && lastSegment <= appliedSegment) {
+            return;
+        }
+
+        writeDeltas(deltas, lastSegment);
+        markSynced(deltas);
+        appliedSegment = Math.max(appliedSegment, lastSegment);
+    }
+
+    /**
+     * Diferencia entre la memoria y lo que este nodo sabe de la base de datos
+     */
+    private void addMemoryDeltas(Collection<PlaytimeData> players, boolean playtime, List<Delta> deltas) {
+        for (PlaytimeData data : players) {
+            long[] known = synced.getOrDefault(data.getPlayerId(), EMPTY);
+            long[] knownActive = syncedActive.getOrDefault(data.getPlayerId(), EMPTY);
+            PlaytimeData.Snapshot snapshot = data.snapshot();
+            int worldCount = WorldRegistry.size();
+            for (int worldId = 0; worldId < worldCount; worldId++) {
+                long delta = snapshot.getPlaytime(worldId) - (worldId < known.length ? known[worldId] : 0L);
+                if (playtime && delta > 0) {
+                    deltas.add(new Delta(data.getPlayerId(), worldId, delta, false));
+                }
+                long activeDelta = snapshot.getActivePlaytime(worldId) - (worldId < knownActive.length ? knownActive[worldId] : 0L);
+                if (activeDelta > 0) {
+                    deltas.add(new Delta(data.getPlayerId(), worldId, activeDelta, true));
+                }
+            }
+        }
+    }
+
+    private void markSynced(List<Delta> deltas) {
+        for (Delta delta : deltas) {
+            Map<UUID, long[]> target = delta.active() ? syncedActive : synced;
+            long[] known = grow(target.getOrDefault(delta.playerId(), EMPTY), delta.worldId());
+            known[delta.worldId()] += delta.millis();
+            target.put(delta.playerId(), known);
+        }
+    }
+
+    @Override
+    public boolean claimRefresh(UUID playerId) {
+        long now = clock.monotonicMillis();
+        Long last = refreshedAt.get(playerId);
+        if (last == null) {
+            return refreshedAt.putIfAbsent(playerId, now) == null;
+        }
+        return now - last >= cacheTtlMillis && refreshedAt.replace(playerId, last, now);
+    }
+
+    /**
+     * Suma a la copia en memoria el tiempo que otros nodos han escrito desde la última lectura
+     */
+    @Override
+    public synchronized boolean refresh(PlaytimeData data) throws IOException {
+        Totals totals;
+        try {
+            totals = readTotals(data.getPlayerId());
+        } catch (SQLException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+
+        long[] known = synced.getOrDefault(data.getPlayerId(), EMPTY);
+        boolean changed = false;
+        for (Map.Entry<UUID, Long> entry : totals.playtime().entrySet()) {
+            int worldId = WorldRegistry.idOf(entry.getKey());
+            known = grow(known, worldId);
+            long remote = entry.getValue() - known[worldId];
+            if (remote > 0) {
+                data.addPlaytime(entry.getKey(), remote);
+                known[worldId] = entry.getValue();
+                changed = true;
+            }
+        }
+        long[] knownActive = syncedActive.getOrDefault(data.getPlayerId(), EMPTY);
+        for (Map.Entry<UUID, Long> entry : totals.active().entrySet()) {
+            int worldId = WorldRegistry.idOf(entry.getKey());
+            knownActive = grow(knownActive, worldId);
+            long remote = entry.getValue() - knownActive[worldId];
+            if (remote > 0) {
+                data.addActivePlaytime(entry.getKey(), remote);
+                knownActive[worldId] = entry.getValue();
+                changed = true;
+            }
+        }
+        synced.put(data.getPlayerId(), known);
+        syncedActive.put(data.getPlayerId(), knownActive);
+        return changed;
+    }
+
+    @Override
+    public synchronized void release(UUID playerId) {
+        synced.remove(playerId);
+        syncedActive.remove(playerId);
+        refreshedAt.remove(playerId);
+    }
+
+    /**
+     * UPDATE por lotes y INSERT para los jugadores sin nombre guardado, en una transacción
+     */
+    @Override
+    public synchronized void saveNames(Map<UUID, String> names) throws IOException {
+        if (names.isEmpty()) {
+            return;
+        }
+        try {
+            Connection conn = connection();
+            conn.setAutoCommit(false);
+            try (PreparedStatement update = conn.prepareStatement(UPDATE_NAME);
+                 PreparedStatement insert = conn.prepareStatement(INSERT_NAME)) {
+                List<Map.Entry<UUID, String>> entries = new ArrayList<>(names.entrySet());
+                for (Map.Entry<UUID, String> entry : entries) {
+                    update.setString(1, entry.getValue());
+                    update.setString(2, entry.getKey().toString());
+                    update.addBatch();
+                }
+                int[] updated = update.executeBatch();
+                for (int i = 0; i < entries.size(); i++) {
+                    if (updated[i] == 0) {
+                        insert.setString(1, entries.get(i).getKey().toString());
+                        insert.setString(2, entries.get(i).getValue());
+                        insert.addBatch();
+                    }
+                }
+                insert.executeBatch();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw new IOException("Error al guardar los nombres en la base de datos: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void forEachName(NameVisitor visitor) throws IOException {
+        try (Connection own = open();
+             Statement statement = own.createStatement()) {
+            statement.setFetchSize(BATCH_SIZE);
+            try (ResultSet rows = statement.executeQuery(SELECT_NAMES)) {
+                while (rows.next()) {
+                    UUID playerId = PlaytimeJsonCodec.parseUuid(rows.getString(1));
+                    if (playerId != null) {
+                        visitor.accept(playerId, rows.getString(2));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Recorre la tabla con una conexión propia, para no bloquear las cargas y guardados mientras tanto
+     */
+    @Override
+    public void forEachPlayer(PlayerVisitor visitor) throws IOException {
+        try (Connection own = open();
+             Statement statement = own.createStatement()) {
+            statement.setFetchSize(BATCH_SIZE);
+            try (ResultSet rows = statement.executeQuery(SELECT_ALL)) {
+                visitRows(rows, visitor);
+            }
+        } catch (SQLException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Una partición por primer dígito hexadecimal del UUID del jugador
+     */
+    @Override
+    public int partitionCount() {
+        return HEX_DIGITS.length();
+    }
+
+    @Override
+    public void forEachPlayer(int partition, PlayerVisitor visitor) throws IOException {
+        String prefix = HEX_DIGITS.charAt(partition) + "%";
+        try (Connection own = open();
+             PreparedStatement select = own.prepareStatement(SELECT_PREFIX)) {
+            select.setFetchSize(BATCH_SIZE);
+            select.setString(1, prefix);
+            select.setString(2, prefix);
+            try (ResultSet rows = select.executeQuery()) {
+                visitRows(rows, visitor);
+            }
+        } catch (SQLException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    private void visitRows(ResultSet rows, PlayerVisitor visitor) throws SQLException, IOException {
+        PlaytimeData current = null;
+        while (rows.next()) {
+            UUID playerId = PlaytimeJsonCodec.parseUuid(rows.getString(1));
+            UUID worldUuid = PlaytimeJsonCodec.parseUuid(rows.getString(2));
+            if (playerId == null || worldUuid == null) {
+                continue;
+            }
+            if (current != null && !current.getPlayerId().equals(playerId)) {
+                visitor.accept(current);
+                current = null;
+            }
+            if (current == null) {
+                current = new PlaytimeData(playerId, clock);
+            }
+            if (rows.getInt(4) == 0) {
+                current.addPlaytime(worldUuid, rows.getLong(3));
+            } else {
+                current.addActivePlaytime(worldUuid, rows.getLong(3));
+            }
+        }
+        if (current != null) {
+            visitor.accept(current);
+        }
+    }
+
+    /**
+     * Importa el formato antiguo conservando, por mundo, el mayor entre lo guardado y lo importado
+     */
+    @Override
+    public synchronized void importLegacy(File legacyFile) throws IOException {
+        List<PlaytimeData> batch = new ArrayList<>();
+        try (FileInputStream in = new FileInputStream(legacyFile)) {
+            PlaytimeJsonCodec.read(in, clock, data -> {
+                batch.add(data);
+                if (batch.size() >= IMPORT_BATCH) {
+                    raiseTo(batch);
+                    batch.clear();
+                }
+            });
+        }
+        raiseTo(batch);
+    }
+
+    /**
+     * Suma los totales completos de los jugadores indicados (datos locales de un nodo que pasa a compartir la tabla)
+     */
+    public synchronized void addTotals(Collection<PlaytimeData> players) throws IOException {
+        List<Delta> deltas = new ArrayList<>();
+        for (PlaytimeData data : players) {
+            PlaytimeData.Snapshot snapshot = data.snapshot();
+            int worldCount = WorldRegistry.size();
+            for (int worldId = 0; worldId < worldCount; worldId++) {
+                if (snapshot.getPlaytime(worldId) > 0) {
+                    deltas.add(new Delta(data.getPlayerId(), worldId, snapshot.getPlaytime(worldId), false));
+                }
+                if (snapshot.getActivePlaytime(worldId) > 0) {
+                    deltas.add(new Delta(data.getPlayerId(), worldId, snapshot.getActivePlaytime(worldId), true));
+                }
+            }
+        }
+        writeDeltas(deltas, -1);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                PlaytimeMetrics.recordError("store.close");
+            }
+            connection = null;
+        }
+    }
+
+    /**
+     * Suma los deltas en una transacción: UPDATE por lotes y INSERT para las filas que aún no existen.
+     * Si otro nodo inserta la misma fila a la vez, la transacción se repite una vez.
+     *
+     * @param journalSegment último segmento del journal incluido, que se registra en la misma transacción; -1 si no viene del journal
+     */
+    private void writeDeltas(List<Delta> deltas, int journalSegment) throws IOException {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                addInTransaction(deltas, journalSegment);
+                return;
+            } catch (SQLException e) {
+                boolean duplicateKey = e.getSQLState() != null && e.getSQLState().startsWith("23");
+                if (!duplicateKey || attempt > 0) {
+                    throw new IOException("Error al guardar en la base de datos: " + e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+    private void addInTransaction(List<Delta> deltas, int journalSegment) throws SQLException {
+        Connection conn = connection();
+        conn.setAutoCommit(false);
+        try {
+            List<Delta> playtime = new ArrayList<>();
+            List<Delta> active = new ArrayList<>();
+            for (Delta delta : deltas) {
+                (delta.active() ? active : playtime).add(delta);
+            }
+            addToTable(conn, TOTALS_TABLE, playtime);
+            addToTable(conn, ACTIVE_TABLE, active);
+            if (journalSegment >= 0) {
+                markApplied(conn, journalSegment);
+            }
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    private static void addToTable(Connection conn, String table, List<Delta> deltas) throws SQLException {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        List<Delta> missing = new ArrayList<>();
+        try (PreparedStatement update = conn.prepareStatement(ADD_DELTA.formatted(table))) {
+            for (int from = 0; from < deltas.size(); from += BATCH_SIZE) {
+                List<Delta> chunk = deltas.subList(from, Math.min(deltas.size(), from + BATCH_SIZE));
+                for (Delta delta : chunk) {
+                    update.setLong(1, delta.millis());
+                    update.setString(2, delta.playerId().toString());
+                    update.setString(3, WorldRegistry.uuidOf(delta.worldId()).toString());
+                    update.addBatch();
+                }
+                int[] counts = update.executeBatch();
+                for (int i = 0; i < counts.length; i++) {
+                    if (counts[i] == 0) {
+                        missing.add(chunk.get(i));
+                    }
+                }
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            try (PreparedStatement insert = conn.prepareStatement(INSERT.formatted(table))) {
+                for (Delta delta : missing) {
+                    insert.setString(1, delta.playerId().toString());
+                    insert.setString(2, WorldRegistry.uuidOf(delta.worldId()).toString());
+                    insert.setLong(3, delta.millis());
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+        }
+    }
+
+    private void markApplied(Connection conn, int journalSegment) throws SQLException {
+        try (PreparedStatement update = conn.prepareStatement(UPDATE_NODE)) {
+            update.setInt(1, journalSegment);
+            update.setString(2, nodeId.toString());
+            if (update.executeUpdate() > 0) {
+                return;
+            }
+        }
+        try (PreparedStatement insert = conn.prepareStatement(INSERT_NODE)) {
+            insert.setString(1, nodeId.toString());
+            insert.setInt(2, journalSegment);
+            insert.executeUpdate();
+        }
+    }
+
+    private int readAppliedSegment() throws SQLException {
+        try (PreparedStatement select = connection().prepareStatement(SELECT_NODE)) {
+            select.setString(1, nodeId.toString());
+            try (ResultSet rows = select.executeQuery()) {
+                return rows.next() ? rows.getInt(1) : -1;
+            }
+        }
+    }
+
+    private void raiseTo(List<PlaytimeData> players) throws IOException {
+        if (players.isEmpty()) {
+            return;
+        }
+        try {
+            Connection conn = connection();
+            conn.setAutoCommit(false);
+            try (PreparedStatement raise = conn.prepareStatement(RAISE_TO.formatted(TOTALS_TABLE));
+                 PreparedStatement insert = conn.prepareStatement(INSERT.formatted(TOTALS_TABLE));
+                 PreparedStatement raiseActive = conn.prepareStatement(RAISE_TO.formatted(ACTIVE_TABLE));
+                 PreparedStatement insertActive = conn.prepareStatement(INSERT.formatted(ACTIVE_TABLE))) {
+                for (PlaytimeData data : players) {
+                    Totals stored = readTotals(data.getPlayerId());
+                    PlaytimeData.Snapshot snapshot = data.snapshot();
+                    int worldCount = WorldRegistry.size();
+                    for (int worldId = 0; worldId < worldCount; worldId++) {
+                        UUID worldUuid = WorldRegistry.uuidOf(worldId);
+                        raiseRow(raise, insert, stored.playtime(), data.getPlayerId(), worldUuid, snapshot.getPlaytime(worldId));
+                        raiseRow(raiseActive, insertActive, stored.active(), data.getPlayerId(), worldUuid, snapshot.getActivePlaytime(worldId));
+                    }
+                }
+                raise.executeBatch();
+                insert.executeBatch();
+                raiseActive.executeBatch();
+                insertActive.executeBatch();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw new IOException("Error al importar en la base de datos: " + e.getMessage(), e);
+        }
+    }
+
+    private static void raiseRow(PreparedStatement raise, PreparedStatement insert, Map<UUID, Long> stored,
+                                 UUID playerId, UUID worldUuid, long milliseconds) throws SQLException {
+        if (milliseconds <= 0) {
+            return;
+        }
+        if (stored.containsKey(worldUuid)) {
+            raise.setLong(1, milliseconds);
+            raise.setString(2, playerId.toString());
+            raise.setString(3, worldUuid.toString());
+            raise.setLong(4, milliseconds);
+            raise.addBatch();
+        } else {
+            insert.setString(1, playerId.toString());
+            insert.setString(2, worldUuid.toString());
+            insert.setLong(3, milliseconds);
+            insert.addBatch();
+        }
+    }
+
+    private Totals readTotals(UUID playerId) throws SQLException {
+        Totals totals = new Totals(new HashMap<>(), new HashMap<>());
+        try (PreparedStatement select = connection().prepareStatement(SELECT_PLAYER)) {
+            select.setString(1, playerId.toString());
+            select.setString(2, playerId.toString());
+            try (ResultSet rows = select.executeQuery()) {
+                while (rows.next()) {
+                    UUID worldUuid = PlaytimeJsonCodec.parseUuid(rows.getString(1));
+                    if (worldUuid != null) {
+                        (rows.getInt(3) == 0 ? totals.playtime() : totals.active()).put(worldUuid, rows.getLong(2));
+                    }
+                }
+            }
+        }
+        return totals;
+    }
+
+    /**
+     * Conexión compartida; se reabre si la base de datos la ha cerrado
+     */
+    private Connection connection() throws SQLException {
+        if (connection == null || connection.isClosed()) {
+            connection = open();
+        }
+        return connection;
+    }
+
+    private Connection open() throws SQLException {
+        Connection opened = driver.connect(url, credentials);
+        if (opened == null) {
+            throw new SQLException("El driver no acepta la URL " + url);
+        }
+        return opened;
+    }
+
+    private static long[] grow(long[] values, int index) {
+        return index < values.length ? values : Arrays.copyOf(values, index + 1);
+    }
+}
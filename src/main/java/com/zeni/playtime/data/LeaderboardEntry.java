@@ -0,0 +1,9 @@
+package com.zeni.playtime.data;
+
+import java.util.UUID;
+
+/**
+ * Posición de un jugador en la clasificación de tiempo jugado
+ */
+public record LeaderboardEntry(UUID playerId, long playtime) {
+}
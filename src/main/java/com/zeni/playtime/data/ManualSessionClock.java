@@ -0,0 +1,30 @@
+package com.zeni.playtime.data;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reloj virtual que solo avanza cuando se le indica, para pruebas y benchmarks
+ */
+public class ManualSessionClock implements SessionClock {
+    private final AtomicLong nanos;
+    private final long wallOriginMillis;
+
+    public ManualSessionClock(long wallOriginMillis) {
+        this.nanos = new AtomicLong();
+        this.wallOriginMillis = wallOriginMillis;
+    }
+
+    public void advanceMillis(long milliseconds) {
+        nanos.addAndGet(milliseconds * 1_000_000L);
+    }
+
+    @Override
+    public long nanoTime() {
+        return nanos.get();
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return wallOriginMillis + nanos.get() / 1_000_000L;
+    }
+}
@@ -0,0 +1,440 @@
+package com.zeni.playtime.data;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+import com.zeni.playtime.metrics.PlaytimeMetrics;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Almacenamiento en una tabla de registros de tamaño fijo mapeada en memoria.
+ * Cada registro ocupa {@value #RECORD_SIZE} bytes: UUID del jugador, id persistente del mundo,
+ * flags y milisegundos acumulados. El tiempo con actividad va en registros aparte cuyo id de mundo
+ * lleva el bit {@link #ACTIVE_RECORD}. Un índice de direccionamiento abierto (sondeo lineal por jugador)
+ * en un segundo fichero mapeado localiza los registros de un jugador sin leer el resto.
+ * <p>
+ * Arrancar solo mapea los ficheros: no hay nada que parsear. Las actualizaciones escriben en el sitio
+ * a través del {@link MappedByteBuffer}; {@link #force()} las lleva a disco y se llama en cada compactación.
+ * Si el índice no cuadra con la tabla (cierre a medias), se reconstruye recorriendo los registros.
+ */
+public class MappedPlaytimeStore implements PlaytimeStore {
+    static final int RECORD_SIZE = 32;
+    /** worldId de los registros que guardan flags del jugador en lugar de tiempo */
+    static final int PLAYER_RECORD = -1;
+    /** Bit del worldId que marca un registro de tiempo con actividad en lugar de tiempo total */
+    static final int ACTIVE_RECORD = 0x80000000;
+
+    private static final int DATA_MAGIC = 0x50544D31; // "PTM1"
+    private static final int INDEX_MAGIC = 0x50544931; // "PTI1"
+    private static final int DATA_HEADER_SIZE = 4096;
+    private static final int INDEX_HEADER_SIZE = 16;
+    private static final int INITIAL_RECORDS = 1024;
+    private static final int INITIAL_INDEX_SLOTS = 2048;
+    // Las particiones reparten la tabla en bloques alternos, así no dependen del número de registros
+    private static final int PARTITIONS = 64;
+    private static final int PARTITION_BLOCK = 4096;
+
+    private static final int OFFSET_MOST = 0;
+    private static final int OFFSET_LEAST = 8;
+    private static final int OFFSET_WORLD = 16;
+    private static final int OFFSET_FLAGS = 20;
+    private static final int OFFSET_MILLIS = 24;
+
+    private final File directory;
+    private final SessionClock clock;
+    private final HytaleLogger logger;
+    private final FileChannel dataChannel;
+    private final FileChannel indexChannel;
+    private final FileChannel worldsChannel;
+    private final List<UUID> worlds; // id persistente -> mundo
+    private final Map<UUID, Integer> worldIds;
+    private MappedByteBuffer data;
+    private MappedByteBuffer index;
+    private int recordCount;
+    private int indexCapacity;
+
+    public MappedPlaytimeStore(File directory, SessionClock clock, HytaleLogger logger) {
+        this.directory = directory;
+        this.clock = clock;
+        this.logger = logger;
+        this.worlds = new ArrayList<>();
+        this.worldIds = new HashMap<>();
+
+        if (!directory.exists() && !directory.mkdirs()) {
+            logger.atWarning().log("No se pudo crear el directorio de la tabla de jugadores");
+        }
+
+        try {
+            this.dataChannel = open("playtime.dat");
+            this.indexChannel = open("playtime.idx");
+            this.worldsChannel = open("worlds.dat");
+            loadWorlds();
+            mapData();
+            mapIndex();
+        } catch (IOException e) {
+            // Sin tabla no hay dónde guardar: mejor fallar al arrancar que perder datos
+            throw new UncheckedIOException("No se pudo abrir la tabla de jugadores", e);
+        }
+    }
+
+    /**
+     * Indica si la tabla no tiene ningún registro (recién creada)
+     */
+    public synchronized boolean isEmpty() {
+        return recordCount == 0;
+    }
+
+    @Override
+    public synchronized PlaytimeData load(UUID playerId) {
+        long most = playerId.getMostSignificantBits();
+        long least = playerId.getLeastSignificantBits();
+        PlaytimeData loaded = null;
+        for (int slot = probe(most, least, home(most, least)); slot >= 0; slot = probe(most, least, next(slot))) {
+            int offset = recordOffset(recordAt(slot));
+            int worldId = data.getInt(offset + OFFSET_WORLD);
+            PlaytimeMetrics.BYTES_READ.add(RECORD_SIZE);
+            if (worldId == PLAYER_RECORD) {
+                continue;
+            }
+            if (loaded == null) {
+                loaded = new PlaytimeData(playerId, clock);
+            }
+            if ((worldId & ACTIVE_RECORD) != 0) {
+                loaded.addActivePlaytime(worlds.get(worldId & ~ACTIVE_RECORD), data.getLong(offset + OFFSET_MILLIS));
+            } else {
+                loaded.addPlaytime(worlds.get(worldId), data.getLong(offset + OFFSET_MILLIS));
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Escribe en el sitio los totales de cada mundo (y su tiempo con actividad); los mundos nuevos añaden un registro
+     */
+    @Override
+    public synchronized void save(Collection<PlaytimeData> players) throws IOException {
+        for (PlaytimeData player : players) {
+            PlaytimeData.Snapshot snapshot = player.snapshot();
+            int worldCount = WorldRegistry.size();
+            for (int worldId = 0; worldId < worldCount; worldId++) {
+                long milliseconds = snapshot.getPlaytime(worldId);
+                if (milliseconds != 0L) {
+                    writeMillis(player.getPlayerId(), persistentWorldId(WorldRegistry.uuidOf(worldId)), milliseconds);
+                }
+                long activeMilliseconds = snapshot.getActivePlaytime(worldId);
+                if (activeMilliseconds != 0L) {
+                    writeMillis(player.getPlayerId(), persistentWorldId(WorldRegistry.uuidOf(worldId)) | ACTIVE_RECORD, activeMilliseconds);
+                }
+            }
+        }
+    }
+
+    /**
+     * Recorre la tabla en orden; cada jugador se visita en su primer registro.
+     * El lock se toma por registro para no bloquear las cargas de jugadores mientras tanto.
+     */
+    @Override
+    public void forEachPlayer(PlayerVisitor visitor) throws IOException {
+        for (int record = 0; visitRecord(record, visitor); record++) {
+        }
+    }
+
+    @Override
+    public int partitionCount() {
+        return PARTITIONS;
+    }
+
+    /**
+     * La partición p recorre los bloques p, p + {@value #PARTITIONS}, p + 2 * {@value #PARTITIONS}...
+     * de {@value #PARTITION_BLOCK} registros
+     */
+    @Override
+    public void forEachPlayer(int partition, PlayerVisitor visitor) throws IOException {
+        for (int block = partition; ; block += PARTITIONS) {
+            int first = block * PARTITION_BLOCK;
+            for (int record = first; record < first + PARTITION_BLOCK; record++) {
+                if (!visitRecord(record, visitor)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Visita al jugador del registro si es su primer registro
+     *
+     * @return false si el registro está más allá del final de la tabla
+     */
+    private boolean visitRecord(int record, PlayerVisitor visitor) throws IOException {
+        PlaytimeData player;
+        synchronized (this) {
+            if (record >= recordCount) {
+                return false;
+            }
+            int offset = recordOffset(record);
+            long most = data.getLong(offset + OFFSET_MOST);
+            long least = data.getLong(offset + OFFSET_LEAST);
+            int first = recordAt(probe(most, least, home(most, least)));
+            player = first == record ? load(new UUID(most, least)) : null;
+        }
+        if (player != null) {
+            visitor.accept(player);
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized void importLegacy(File legacyFile) throws IOException {
+        try (FileInputStream in = new FileInputStream(legacyFile)) {
+            PlaytimeJsonCodec.read(in, clock, player -> {
+                PlaytimeData.Snapshot snapshot = player.snapshot();
+                int worldCount = WorldRegistry.size();
+                for (int worldId = 0; worldId < worldCount; worldId++) {
+                    long milliseconds = snapshot.getPlaytime(worldId);
+                    if (milliseconds != 0L) {
+                        int persistentId = persistentWorldId(WorldRegistry.uuidOf(worldId));
+                        int record = findRecord(player.getPlayerId(), persistentId);
+                        long existing = record >= 0 ? data.getLong(recordOffset(record) + OFFSET_MILLIS) : 0L;
+                        writeMillis(player.getPlayerId(), persistentId, Math.max(existing, milliseconds));
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Flags por jugador (preferencias), guardados en un registro propio sin mundo
+     */
+    public synchronized int getFlags(UUID playerId) {
+        int record = findRecord(playerId, PLAYER_RECORD);
+        return record >= 0 ? data.getInt(recordOffset(record) + OFFSET_FLAGS) : 0;
+    }
+
+    public synchronized void setFlags(UUID playerId, int flags) throws IOException {
+        int record = findRecord(playerId, PLAYER_RECORD);
+        if (record >= 0) {
+            data.putInt(recordOffset(record) + OFFSET_FLAGS, flags);
+        } else if (flags != 0) {
+            appendRecord(playerId, PLAYER_RECORD, flags, 0L);
+        }
+    }
+
+    @Override
+    public synchronized void force() {
+        data.force();
+        index.force();
+    }
+
+    @Override
+    public synchronized void close() {
+        force();
+        try {
+            dataChannel.close();
+            indexChannel.close();
+            worldsChannel.close();
+        } catch (IOException e) {
+            logger.atWarning().log("Error al cerrar la tabla de jugadores: " + e.getMessage());
+        }
+    }
+
+    private void writeMillis(UUID playerId, int worldId, long milliseconds) throws IOException {
+        int record = findRecord(playerId, worldId);
+        if (record >= 0) {
+            data.putLong(recordOffset(record) + OFFSET_MILLIS, milliseconds);
+        } else {
+            appendRecord(playerId, worldId, 0, milliseconds);
+        }
+    }
+
+    private void appendRecord(UUID playerId, int worldId, int flags, long milliseconds) throws IOException {
+        if (recordOffset(recordCount + 1) > data.capacity()) {
+            remapData((long) data.capacity() * 2);
+        }
+
+        int offset = recordOffset(recordCount);
+        data.putLong(offset + OFFSET_MOST, playerId.getMostSignificantBits());
+        data.putLong(offset + OFFSET_LEAST, playerId.getLeastSignificantBits());
+        data.putInt(offset + OFFSET_WORLD, worldId);
+        data.putInt(offset + OFFSET_FLAGS, flags);
+        data.putLong(offset + OFFSET_MILLIS, milliseconds);
+        // El contador se publica después del registro: un cierre a medias lo deja fuera
+        recordCount++;
+        data.putInt(8, recordCount);
+
+        if ((long) recordCount * 2 > indexCapacity) {
+            rebuildIndex(indexCapacity * 2);
+        } else {
+            insert(recordCount - 1);
+            index.putInt(8, recordCount);
+        }
+    }
+
+    private int findRecord(UUID playerId, int worldId) {
+        long most = playerId.getMostSignificantBits();
+        long least = playerId.getLeastSignificantBits();
+        for (int slot = probe(most, least, home(most, least)); slot >= 0; slot = probe(most, least, next(slot))) {
+            int record = recordAt(slot);
+            if (data.getInt(recordOffset(record) + OFFSET_WORLD) == worldId) {
+                return record;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Avanza desde el slot dado hasta el siguiente registro del jugador; -1 al llegar a un slot vacío
+     */
+    private int probe(long most, long least, int slot) {
+        while (true) {
+            int value = index.getInt(INDEX_HEADER_SIZE + slot * 4);
+            if (value == 0) {
+                return -1;
+            }
+            int offset = recordOffset(value - 1);
+            if (data.getLong(offset + OFFSET_MOST) == most && data.getLong(offset + OFFSET_LEAST) == least) {
+                return slot;
+            }
+            slot = next(slot);
+        }
+    }
+
+    private void insert(int record) {
+        int offset = recordOffset(record);
+        int slot = home(data.getLong(offset + OFFSET_MOST), data.getLong(offset + OFFSET_LEAST));
+        while (index.getInt(INDEX_HEADER_SIZE + slot * 4) != 0) {
+            slot = next(slot);
+        }
+        index.putInt(INDEX_HEADER_SIZE + slot * 4, record + 1);
+    }
+
+    private int home(long most, long least) {
+        long hash = (most ^ least) * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 32) & (indexCapacity - 1);
+    }
+
+    private int next(int slot) {
+        return (slot + 1) & (indexCapacity - 1);
+    }
+
+    private int recordAt(int slot) {
+        return index.getInt(INDEX_HEADER_SIZE + slot * 4) - 1;
+    }
+
+    private static int recordOffset(int record) {
+        return DATA_HEADER_SIZE + record * RECORD_SIZE;
+    }
+
+    private int persistentWorldId(UUID worldUuid) throws IOException {
+        Integer id = worldIds.get(worldUuid);
+        if (id != null) {
+            return id;
+        }
+
+        // La tabla de mundos se fuerza antes de que ningún registro apunte al nuevo id
+        ByteBuffer entry = ByteBuffer.allocate(16);
+        entry.putLong(worldUuid.getMostSignificantBits()).putLong(worldUuid.getLeastSignificantBits()).flip();
+        long position = (long) worlds.size() * 16;
+        while (entry.hasRemaining()) {
+            position += worldsChannel.write(entry, position);
+        }
+        worldsChannel.force(false);
+
+        int newId = worlds.size();
+        worlds.add(worldUuid);
+        worldIds.put(worldUuid, newId);
+        return newId;
+    }
+
+    private void loadWorlds() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) (worldsChannel.size() / 16 * 16));
+        while (buffer.hasRemaining() && worldsChannel.read(buffer, buffer.position()) >= 0) {
+        }
+        buffer.flip();
+        while (buffer.remaining() >= 16) {
+            UUID worldUuid = new UUID(buffer.getLong(), buffer.getLong());
+            worldIds.put(worldUuid, worlds.size());
+            worlds.add(worldUuid);
+        }
+    }
+
+    private void mapData() throws IOException {
+        boolean fresh = dataChannel.size() < DATA_HEADER_SIZE;
+        remapData(Math.max(dataChannel.size(), recordOffset(INITIAL_RECORDS)));
+        if (fresh) {
+            data.putInt(0, DATA_MAGIC);
+            data.putInt(8, 0);
+            return;
+        }
+
+        if (data.getInt(0) != DATA_MAGIC) {
+            throw new IOException("playtime.dat no tiene el formato esperado");
+        }
+        recordCount = data.getInt(8);
+        int maxRecords = (data.capacity() - DATA_HEADER_SIZE) / RECORD_SIZE;
+        if (recordCount < 0 || recordCount > maxRecords) {
+            throw new IOException("playtime.dat tiene un número de registros inválido: " + recordCount);
+        }
+    }
+
+    private void remapData(long size) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("La tabla de jugadores ha alcanzado el tamaño máximo");
+        }
+        data = dataChannel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    private void mapIndex() throws IOException {
+        if (indexChannel.size() >= INDEX_HEADER_SIZE) {
+            index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, indexChannel.size());
+            int capacity = index.getInt(4);
+            boolean valid = index.getInt(0) == INDEX_MAGIC
+                    && capacity > 0 && Integer.bitCount(capacity) == 1
+                    && INDEX_HEADER_SIZE + (long) capacity * 4 <= index.capacity()
+                    && index.getInt(8) == recordCount;
+            if (valid) {
+                indexCapacity = capacity;
+                return;
+            }
+            logger.atWarning().log("El índice de la tabla de jugadores no es coherente, reconstruyendo");
+        }
+
+        int capacity = INITIAL_INDEX_SLOTS;
+        while ((long) recordCount * 2 > capacity) {
+            capacity *= 2;
+        }
+        rebuildIndex(capacity);
+    }
+
+    private void rebuildIndex(int capacity) throws IOException {
+        long size = INDEX_HEADER_SIZE + (long) capacity * 4;
+        index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        index.putInt(8, -1); // inválido hasta terminar
+        for (int slot = 0; slot < capacity; slot++) {
+            index.putInt(INDEX_HEADER_SIZE + slot * 4, 0);
+        }
+        indexCapacity = capacity;
+        for (int record = 0; record < recordCount; record++) {
+            insert(record);
+        }
+        index.putInt(0, INDEX_MAGIC);
+        index.putInt(4, capacity);
+        index.putInt(8, recordCount);
+    }
+
+    private FileChannel open(String name) throws IOException {
+        return FileChannel.open(new File(directory, name).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+}
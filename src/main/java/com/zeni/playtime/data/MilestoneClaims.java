@@ -0,0 +1,131 @@
+package com.zeni.playtime.data;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hitos ya entregados. Cada registro guarda (jugador, umbral) en 24 bytes y se añade al final del
+ * fichero con fsync antes de entregar la recompensa, así un hito nunca se entrega dos veces aunque
+ * el proceso muera justo después. Por jugador solo importa el mayor umbral: los umbrales se
+ * alcanzan en orden. Al abrir, si sobran muchos registros antiguos, el fichero se reescribe.
+ */
+final class MilestoneClaims {
+    static final int RECORD_SIZE = 24;
+
+    private final File file;
+    private final HytaleLogger logger;
+    private final Map<UUID, Long> claimed = new ConcurrentHashMap<>();
+    private final ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE); // solo dentro de claim
+    private FileChannel channel;
+
+    MilestoneClaims(File file, HytaleLogger logger) {
+        this.file = file;
+        this.logger = logger;
+        long records = load();
+        if (records > 2L * claimed.size() + 1024) {
+            compact();
+        }
+    }
+
+    /**
+     * Mayor umbral entregado al jugador, o 0 si ninguno
+     */
+    long getClaimed(UUID playerId) {
+        return claimed.getOrDefault(playerId, 0L);
+    }
+
+    /**
+     * Registra el umbral de forma duradera antes de volver
+     */
+    synchronized void claim(UUID playerId, long thresholdMillis) throws IOException {
+        if (channel == null) {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        record.clear();
+        record.putLong(playerId.getMostSignificantBits());
+        record.putLong(playerId.getLeastSignificantBits());
+        record.putLong(thresholdMillis);
+        record.flip();
+        while (record.hasRemaining()) {
+            channel.write(record);
+        }
+        channel.force(false);
+        claimed.merge(playerId, thresholdMillis, Math::max);
+    }
+
+    synchronized void close() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.atWarning().log("Error al cerrar el registro de hitos: " + e.getMessage());
+        }
+        channel = null;
+    }
+
+    private long load() {
+        if (!file.exists()) {
+            return 0L;
+        }
+
+        long records = 0L;
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE * 1024);
+        try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // Un registro a medias al final es una escritura interrumpida que nunca llegó a confirmarse
+            long complete = (in.size() / RECORD_SIZE) * RECORD_SIZE;
+            if (complete < in.size()) {
+                in.truncate(complete);
+            }
+            long position = 0L;
+            while (position < complete) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), complete - position));
+                while (buffer.hasRemaining()) {
+                    if (in.read(buffer, position + buffer.position()) < 0) {
+                        throw new IOException("Fin de fichero inesperado");
+                    }
+                }
+                buffer.flip();
+                position += buffer.limit();
+                while (buffer.remaining() >= RECORD_SIZE) {
+                    UUID playerId = new UUID(buffer.getLong(), buffer.getLong());
+                    claimed.merge(playerId, buffer.getLong(), Math::max);
+                    records++;
+                }
+            }
+        } catch (IOException e) {
+            logger.atWarning().log("Error al leer el registro de hitos: " + e.getMessage());
+        }
+        return records;
+    }
+
+    private void compact() {
+        try {
+            AtomicFiles.writeStream(file, out -> {
+                ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE * 1024);
+                for (Map.Entry<UUID, Long> entry : claimed.entrySet()) {
+                    if (buffer.remaining() < RECORD_SIZE) {
+                        out.write(buffer.array(), 0, buffer.position());
+                        buffer.clear();
+                    }
+                    buffer.putLong(entry.getKey().getMostSignificantBits());
+                    buffer.putLong(entry.getKey().getLeastSignificantBits());
+                    buffer.putLong(entry.getValue());
+                }
+                out.write(buffer.array(), 0, buffer.position());
+            });
+        } catch (IOException e) {
+            logger.atWarning().log("Error al compactar el registro de hitos: " + e.getMessage());
+        }
+    }
+}
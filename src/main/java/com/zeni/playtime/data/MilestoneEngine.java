@@ -0,0 +1,256 @@
+package com.zeni.playtime.data;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+import com.zeni.playtime.events.SessionEvent;
+import com.zeni.playtime.events.SessionEventBus;
+import com.zeni.playtime.metrics.PlaytimeMetrics;
+import com.zeni.playtime.scheduler.PlaytimeScheduler;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.function.Function;
+
+/**
+ * Entrega los hitos de tiempo total (1 h, 10 h, 100 h...) sin recorrer a los jugadores en cada tick.
+ * Con cada evento de sesión se calcula el instante en que el jugador cruzará su siguiente umbral
+ * (total guardado más lo que lleva la sesión abierta) y se guarda en una única cola de prioridad;
+ * solo hay un temporizador, programado para la cabeza de la cola.
+ * <p>
+ * Antes de publicar {@link SessionEvent.MilestoneReached} el hito se registra en {@link MilestoneClaims},
+ * así cada umbral se entrega una sola vez por jugador, también entre reinicios.
+ */
+public class MilestoneEngine {
+    private static final int EVENT_CAPACITY = 8192;
+    private static final long RETRY_MILLIS = 30_000L;
+
+    private final long[] thresholds; // ordenados, sin repetidos
+    private final Function<UUID, PlaytimeData> residents;
+    private final MilestoneClaims claims;
+    private final SessionEventBus events;
+    private final SessionEventBus.Subscription subscription;
+    private final PlaytimeScheduler scheduler;
+    private final SessionClock clock;
+    private final HytaleLogger logger;
+
+    // Protegidos por this
+    private final PriorityQueue<Pending> queue = new PriorityQueue<>();
+    private final Map<UUID, Pending> scheduled = new HashMap<>(); // entrada vigente de cada jugador; las demás de la cola están caducadas
+    private ScheduledFuture<?> wakeup;
+    private long wakeupAt = Long.MAX_VALUE;
+    private boolean closed;
+
+    private record Pending(long dueAt, UUID playerId) implements Comparable<Pending> {
+        @Override
+        public int compareTo(Pending other) {
+            return Long.compare(dueAt, other.dueAt);
+        }
+    }
+
+    MilestoneEngine(long[] thresholds, Function<UUID, PlaytimeData> residents, File claimsFile, SessionEventBus events,
+                    PlaytimeScheduler scheduler, SessionClock clock, HytaleLogger logger) {
+        this.thresholds = Arrays.stream(thresholds).filter(threshold -> threshold > 0).sorted().distinct().toArray();
+        this.residents = residents;
+        this.claims = new MilestoneClaims(claimsFile, logger);
+        this.events = events;
+        this.scheduler = scheduler;
+        this.clock = clock;
+        this.logger = logger;
+        this.subscription = this.thresholds.length > 0 ? events.subscribe("milestones", EVENT_CAPACITY, this::onEvents) : null;
+    }
+
+    /**
+     * Mayor umbral ya entregado al jugador, o 0 si ninguno
+     */
+    public long getClaimed(UUID playerId) {
+        return claims.getClaimed(playerId);
+    }
+
+    /**
+     * Siguiente umbral del jugador, o -1 si ya los ha alcanzado todos
+     */
+    public long getNextThreshold(UUID playerId) {
+        return nextThreshold(claims.getClaimed(playerId));
+    }
+
+    /**
+     * Jugadores con un hito programado
+     */
+    public synchronized int getScheduledCount() {
+        return scheduled.size();
+    }
+
+    public void close() {
+        if (subscription != null) {
+            subscription.close();
+        }
+        synchronized (this) {
+            closed = true;
+            cancelWakeup();
+            queue.clear();
+            scheduled.clear();
+        }
+        claims.close();
+    }
+
+    private void onEvents(List<SessionEvent> batch) {
+        Set<UUID> changed = new HashSet<>();
+        for (SessionEvent event : batch) {
+            if (!(event instanceof SessionEvent.MilestoneReached)) {
+                changed.add(event.playerId());
+            }
+        }
+        if (changed.isEmpty()) {
+            return;
+        }
+        synchronized (this) {
+            long now = clock.monotonicMillis();
+            for (UUID playerId : changed) {
+                plan(playerId, now);
+            }
+        }
+        fireDue();
+    }
+
+    /**
+     * Entrega los hitos vencidos y reprograma el temporizador para la nueva cabeza de la cola
+     */
+    synchronized void fireDue() {
+        if (closed) {
+            return;
+        }
+        // El temporizador que ha llamado ya no sirve: arm lo vuelve a programar si hace falta
+        cancelWakeup();
+        long now = clock.monotonicMillis();
+        Pending head;
+        while ((head = queue.peek()) != null && head.dueAt() <= now) {
+            queue.poll();
+            if (scheduled.get(head.playerId()) != head) {
+                continue;
+            }
+            scheduled.remove(head.playerId());
+            if (deliver(head.playerId())) {
+                plan(head.playerId(), now);
+            } else {
+                schedule(head.playerId(), now + RETRY_MILLIS);
+            }
+        }
+        arm(now);
+    }
+
+    /**
+     * Calcula cuándo cruzará el jugador su siguiente umbral al ritmo actual (una unidad por sesión abierta)
+     */
+    private void plan(UUID playerId, long now) {
+        PlaytimeData data = residents.apply(playerId);
+        long next = nextThreshold(claims.getClaimed(playerId));
+        if (data == null || next < 0) {
+            scheduled.remove(playerId);
+            return;
+        }
+
+        PlaytimeData.Snapshot snapshot = data.snapshot();
+        int sessions = snapshot.getActiveSessionCount();
+        long live = livePlaytime(snapshot, now);
+        if (live >= next) {
+            schedule(playerId, now);
+        } else if (sessions == 0) {
+            scheduled.remove(playerId);
+        } else {
+            schedule(playerId, now + Math.ceilDiv(next - live, sessions));
+        }
+    }
+
+    private void schedule(UUID playerId, long dueAt) {
+        Pending previous = scheduled.get(playerId);
+        if (previous != null && previous.dueAt() == dueAt) {
+            return;
+        }
+        Pending pending = new Pending(dueAt, playerId);
+        scheduled.put(playerId, pending);
+        queue.add(pending);
+        // Las entradas caducadas se quedan en la cola hasta llegar a la cabeza; si se acumulan, se rehace
+        if (queue.size() > 2 * scheduled.size() + 64) {
+            queue.clear();
+            queue.addAll(scheduled.values());
+        }
+    }
+
+    /**
+     * Registra y publica todos los umbrales que el jugador ya ha cruzado.
+     *
+     * @return false si no se pudo registrar un hito y hay que reintentarlo
+     */
+    private boolean deliver(UUID playerId) {
+        PlaytimeData data = residents.apply(playerId);
+        if (data == null) {
+            return true;
+        }
+        long live = livePlaytime(data.snapshot(), clock.monotonicMillis());
+        long next = nextThreshold(claims.getClaimed(playerId));
+        while (next > 0 && live >= next) {
+            try {
+                claims.claim(playerId, next);
+            } catch (IOException e) {
+                PlaytimeMetrics.recordError("milestones.claim");
+                logger.atWarning().log("No se pudo registrar el hito de " + playerId + ": " + e.getMessage());
+                return false;
+            }
+            events.publish(new SessionEvent.MilestoneReached(playerId, null, next, clock.currentTimeMillis()));
+            next = nextThreshold(next);
+        }
+        return true;
+    }
+
+    private void arm(long now) {
+        Pending head;
+        while ((head = queue.peek()) != null && scheduled.get(head.playerId()) != head) {
+            queue.poll();
+        }
+        if (head == null) {
+            cancelWakeup();
+            return;
+        }
+        if (wakeup != null && wakeupAt == head.dueAt()) {
+            return;
+        }
+        cancelWakeup();
+        try {
+            wakeup = scheduler.runIoAfter("milestones.fire", head.dueAt() - now, this::fireDue);
+            wakeupAt = head.dueAt();
+        } catch (RejectedExecutionException e) {
+            // Cerrando el planificador
+        }
+    }
+
+    private void cancelWakeup() {
+        if (wakeup != null) {
+            wakeup.cancel(false);
+            wakeup = null;
+        }
+        wakeupAt = Long.MAX_VALUE;
+    }
+
+    private long nextThreshold(long claimed) {
+        for (long threshold : thresholds) {
+            if (threshold > claimed) {
+                return threshold;
+            }
+        }
+        return -1L;
+    }
+
+    private static long livePlaytime(PlaytimeData.Snapshot snapshot, long now) {
+        return snapshot.getTotalPlaytime()
+                + (long) snapshot.getActiveSessionCount() * now - snapshot.getActiveSessionStartSum();
+    }
+}
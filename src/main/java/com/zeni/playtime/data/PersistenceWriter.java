@@ -0,0 +1,138 @@
+package com.zeni.playtime.data;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+import com.zeni.playtime.metrics.PlaytimeMetrics;
+import com.zeni.playtime.scheduler.PlaytimeScheduler;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Etapa de persistencia con un único hilo escritor (un hilo virtual del {@link PlaytimeScheduler}).
+ * Los llamadores solo marcan los datos como sucios; el hilo agrupa las ráfagas
+ * y escribe como mucho una vez por intervalo, salvo que se pida un {@link #flush()}.
+ * El intervalo se mide con {@link System#nanoTime()}: un salto atrás del reloj de pared no retrasa las escrituras.
+ */
+public class PersistenceWriter {
+
+    public interface WriteTask {
+        /**
+         * @param flush true si la escritura la ha pedido {@link #flush()} o el cierre
+         */
+        void write(boolean flush) throws Exception;
+    }
+
+    private final String name;
+    private final WriteTask task;
+    private final long intervalNanos;
+    private final HytaleLogger logger;
+    private final Thread thread;
+    private final Object lock = new Object();
+
+    private boolean dirty;
+    private boolean running = true;
+    private long requestedFlushes;
+    private long completedFlushes;
+    private long lastWriteAt; // System.nanoTime()
+
+    public PersistenceWriter(String name, long intervalMillis, WriteTask task, PlaytimeScheduler scheduler, HytaleLogger logger) {
+        this.name = name;
+        this.task = task;
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        this.lastWriteAt = System.nanoTime() - intervalNanos;
+        this.logger = logger;
+        this.thread = scheduler.startWorker(name, this::run);
+    }
+
+    /**
+     * Marca los datos como pendientes de guardar. No bloquea ni hace E/S.
+     */
+    public void markDirty() {
+        synchronized (lock) {
+            if (!dirty) {
+                dirty = true;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Fuerza una escritura inmediata y espera a que termine.
+     */
+    public void flush() {
+        synchronized (lock) {
+            long ticket = ++requestedFlushes;
+            lock.notifyAll();
+            awaitFlush(ticket);
+        }
+    }
+
+    /**
+     * Hace una última escritura y detiene el hilo escritor.
+     */
+    public void close() {
+        synchronized (lock) {
+            running = false;
+            requestedFlushes++;
+            lock.notifyAll();
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void awaitFlush(long ticket) {
+        boolean interrupted = false;
+        while (completedFlushes < ticket && thread.isAlive()) {
+            try {
+                lock.wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        while (true) {
+            long ticket;
+            synchronized (lock) {
+                try {
+                    while (running && !dirty && requestedFlushes == completedFlushes) {
+                        lock.wait();
+                    }
+                    // Agrupar ráfagas: esperar al siguiente intervalo salvo que se pida un flush
+                    long waitNanos;
+                    while (running && requestedFlushes == completedFlushes
+                            && (waitNanos = lastWriteAt + intervalNanos - System.nanoTime()) > 0) {
+                        lock.wait(waitNanos / 1_000_000L, (int) (waitNanos % 1_000_000L));
+                    }
+                } catch (InterruptedException e) {
+                    running = false;
+                }
+                ticket = requestedFlushes;
+                dirty = false;
+            }
+
+            boolean flush = ticket != completedFlushes;
+            try {
+                task.write(flush);
+            } catch (Exception e) {
+                PlaytimeMetrics.recordError(name);
+                logger.atWarning().log("Error en el hilo de guardado: " + e.getMessage());
+            }
+
+            synchronized (lock) {
+                lastWriteAt = System.nanoTime();
+                completedFlushes = ticket;
+                lock.notifyAll();
+                if (!running && requestedFlushes == completedFlushes) {
+                    return;
+                }
+            }
+        }
+    }
+}
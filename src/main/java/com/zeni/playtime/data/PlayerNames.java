@@ -0,0 +1,187 @@
+package com.zeni.playtime.data;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Nombres de los jugadores, para que la clasificación y los informes los sigan mostrando tras un reinicio.
+ * Cada registro guarda (jugador, longitud, nombre en UTF-8) y se añade al final del fichero; vale el último
+ * de cada jugador. Los nombres nuevos los escribe el hilo escritor por lotes, con un solo fsync.
+ * Al abrir, si sobran muchos registros antiguos, el fichero se reescribe.
+ * <p>
+ * Se tienen en memoria los de todos los jugadores guardados, unos 100 bytes por jugador
+ * (entrada del mapa, UUID y String).
+ */
+final class PlayerNames {
+    private static final int HEADER_SIZE = 18; // UUID y longitud del nombre
+    private static final int MAX_NAME_BYTES = 255;
+
+    private final File file;
+    private final HytaleLogger logger;
+    private final Map<UUID, String> names = new ConcurrentHashMap<>();
+    private final Map<UUID, String> pending = new ConcurrentHashMap<>();
+    private long records;
+
+    PlayerNames(File file, HytaleLogger logger) {
+        this.file = file;
+        this.logger = logger;
+        load();
+        if (records > 2L * names.size() + 1024) {
+            compact();
+        }
+    }
+
+    /**
+     * Nombre conocido del jugador, o null
+     */
+    String get(UUID playerId) {
+        return names.get(playerId);
+    }
+
+    /**
+     * Recuerda el nombre con el que se ha visto al jugador
+     *
+     * @return true si es nuevo o ha cambiado y queda pendiente de escribir
+     */
+    boolean remember(UUID playerId, String name) {
+        if (name == null || name.isEmpty() || name.equals(names.put(playerId, name))) {
+            return false;
+        }
+        pending.put(playerId, name);
+        return true;
+    }
+
+    /**
+     * Nombre leído de otra fuente (la base de datos compartida); no se vuelve a escribir.
+     * Uno visto en este servidor y aún sin escribir es más reciente y se conserva.
+     */
+    void learn(UUID playerId, String name) {
+        if (!pending.containsKey(playerId)) {
+            names.put(playerId, name);
+        }
+    }
+
+    /**
+     * Quita y devuelve los nombres pendientes. Si no se pueden escribir, devolverlos con {@link #retry}.
+     */
+    Map<UUID, String> drainPending() {
+        Map<UUID, String> drained = new HashMap<>();
+        for (UUID playerId : pending.keySet()) {
+            String name = pending.remove(playerId);
+            if (name != null) {
+                drained.put(playerId, name);
+            }
+        }
+        return drained;
+    }
+
+    void retry(Map<UUID, String> failed) {
+        failed.forEach(pending::putIfAbsent);
+    }
+
+    /**
+     * Añade los nombres al fichero con un solo fsync. Solo desde el hilo escritor.
+     */
+    void append(Map<UUID, String> learned) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(learned.size() * 40);
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (Map.Entry<UUID, String> entry : learned.entrySet()) {
+            writeRecord(out, entry.getKey(), entry.getValue());
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            long end = channel.size();
+            try {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer, end + buffer.position());
+                }
+                channel.force(false);
+            } catch (IOException e) {
+                // Un registro a medias desalinearía los siguientes
+                try {
+                    channel.truncate(end);
+                } catch (IOException truncateError) {
+                    e.addSuppressed(truncateError);
+                }
+                throw e;
+            }
+        }
+        records += learned.size();
+    }
+
+    private static void writeRecord(DataOutputStream out, UUID playerId, String name) throws IOException {
+        byte[] encoded = name.getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(encoded.length, MAX_NAME_BYTES);
+        out.writeLong(playerId.getMostSignificantBits());
+        out.writeLong(playerId.getLeastSignificantBits());
+        out.writeShort(length);
+        out.write(encoded, 0, length);
+    }
+
+    private void load() {
+        if (!file.exists()) {
+            return;
+        }
+
+        long valid = 0L;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            byte[] encoded = new byte[MAX_NAME_BYTES];
+            while (true) {
+                UUID playerId = new UUID(in.readLong(), in.readLong());
+                int length = in.readUnsignedShort();
+                if (length > MAX_NAME_BYTES) {
+                    throw new IOException("Registro de nombre inválido");
+                }
+                in.readFully(encoded, 0, length);
+                names.put(playerId, new String(encoded, 0, length, StandardCharsets.UTF_8));
+                valid += HEADER_SIZE + length;
+                records++;
+            }
+        } catch (EOFException e) {
+            // Fin del fichero, o un registro a medias de una escritura interrumpida
+        } catch (IOException e) {
+            logger.atWarning().log("Error al leer los nombres de los jugadores: " + e.getMessage());
+        }
+
+        if (valid < file.length()) {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                channel.truncate(valid);
+            } catch (IOException e) {
+                logger.atWarning().log("Error al recortar el fichero de nombres: " + e.getMessage());
+            }
+        }
+    }
+
+    private void compact() {
+        try {
+            AtomicFiles.writeStream(file, stream -> {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+                for (Map.Entry<UUID, String> entry : names.entrySet()) {
+                    writeRecord(out, entry.getKey(), entry.getValue());
+                }
+                out.flush();
+            });
+            records = names.size();
+        } catch (IOException e) {
+            logger.atWarning().log("Error al compactar el fichero de nombres: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.zeni.playtime.data;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.hypixel.hytale.logger.HytaleLogger;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.time.DateTimeException;
+import java.time.ZoneId;
+import java.util.Arrays;
+
+/**
+ * Configuración del plugin, leída de config.json en la carpeta de datos.
+ * Si el fichero no existe se crea con los valores por defecto.
+ */
+public class PlaytimeConfig {
+    public static final String STORAGE_SHARDED = "sharded";
+    public static final String STORAGE_MAPPED = "mapped";
+    public static final String STORAGE_JDBC = "jdbc";
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    private String storage = STORAGE_SHARDED;
+    private String timeZone = "";
+    private long metricsIntervalSeconds = 60L;
+    private String jdbcUrl = "";
+    private String jdbcUser = "";
+    private String jdbcPassword = "";
+    private long cacheTtlSeconds = 5L;
+    private boolean activityTracking = true;
+    private long afkTimeoutSeconds = 120L;
+    private long reportThresholdHours = 100L;
+    private long[] milestoneHours = {1L, 10L, 100L};
+
+    public PlaytimeConfig() {
+    }
+
+    public PlaytimeConfig(String storage, String timeZone) {
+        this.storage = storage;
+        this.timeZone = timeZone;
+    }
+
+    public static PlaytimeConfig load(File dataFolder, HytaleLogger logger) {
+        File configFile = new File(dataFolder, "config.json");
+        if (configFile.exists()) {
+            try (FileReader reader = new FileReader(configFile)) {
+                PlaytimeConfig config = GSON.fromJson(reader, PlaytimeConfig.class);
+                if (config != null) {
+                    return config;
+                }
+            } catch (IOException | JsonParseException e) {
+                logger.atWarning().log("Error al leer config.json, usando valores por defecto: " + e.getMessage());
+            }
+            return new PlaytimeConfig();
+        }
+
+        PlaytimeConfig defaults = new PlaytimeConfig();
+        if (!dataFolder.exists() && !dataFolder.mkdirs()) {
+            logger.atWarning().log("No se pudo crear el directorio de datos");
+        }
+        try {
+            AtomicFiles.write(configFile, writer -> GSON.toJson(defaults, writer));
+        } catch (IOException e) {
+            logger.atWarning().log("No se pudo crear config.json: " + e.getMessage());
+        }
+        return defaults;
+    }
+
+    /**
+     * Backend de almacenamiento: "sharded" (JSON por prefijo de UUID), "mapped" (tabla mapeada en memoria)
+     * o "jdbc" (base de datos compartida entre servidores).
+     * <p>
+     * "jdbc" necesita un driver en el jar del plugin: el perfil {@code cluster} ({@code mvn package -Pcluster})
+     * incluye H2, la que se usa con {@link #getJdbcUrl()} vacía. Con otra base de datos hay que añadir su driver
+     * al jar del plugin o al classpath del servidor.
+     * Si no hay driver para la URL, se avisa en el log y se usan los shards locales.
+     */
+    public String getStorage() {
+        return storage;
+    }
+
+    public boolean isMappedStorage() {
+        return STORAGE_MAPPED.equalsIgnoreCase(storage);
+    }
+
+    public boolean isJdbcStorage() {
+        return STORAGE_JDBC.equalsIgnoreCase(storage);
+    }
+
+    /**
+     * URL JDBC de la base de datos compartida; vacía para usar un fichero H2 en la carpeta de datos
+     */
+    public String getJdbcUrl() {
+        return jdbcUrl != null ? jdbcUrl : "";
+    }
+
+    public String getJdbcUser() {
+        return jdbcUser != null ? jdbcUser : "";
+    }
+
+    public String getJdbcPassword() {
+        return jdbcPassword != null ? jdbcPassword : "";
+    }
+
+    /**
+     * Cuánto tiempo se da por buena la copia en memoria de un jugador antes de releer lo que han sumado otros nodos
+     */
+    public long getCacheTtlMillis() {
+        return Math.max(0L, cacheTtlSeconds) * 1_000L;
+    }
+
+    /**
+     * Si se mide, además del total, el tiempo con actividad (sin contar al jugador como AFK)
+     */
+    public boolean isActivityTracking() {
+        return activityTracking;
+    }
+
+    /**
+     * Segundos sin moverse ni mover la cámara tras los que el jugador deja de sumar tiempo activo
+     */
+    public long getAfkTimeoutMillis() {
+        return Math.max(1L, afkTimeoutSeconds) * 1_000L;
+    }
+
+    /**
+     * Horas a partir de las cuales /playtime report cuenta a un jugador como veterano
+     */
+    public long getReportThresholdMillis() {
+        return Math.max(0L, reportThresholdHours) * 3_600_000L;
+    }
+
+    /**
+     * Umbrales de tiempo total que se premian una sola vez por jugador; vacío los desactiva
+     */
+    public long[] getMilestoneThresholdsMillis() {
+        if (milestoneHours == null) {
+            return new long[0];
+        }
+        return Arrays.stream(milestoneHours).filter(hours -> hours > 0).map(hours -> hours * 3_600_000L).toArray();
+    }
+
+    /**
+     * Cada cuántos segundos se escribe metrics.prom y la línea de resumen en el log; 0 lo desactiva
+     */
+    public long getMetricsIntervalSeconds() {
+        return Math.max(0L, metricsIntervalSeconds);
+    }
+
+    /**
+     * Zona horaria para el histórico diario; vacía para usar la del servidor
+     */
+    public ZoneId getZone() {
+        if (timeZone == null || timeZone.isBlank()) {
+            return ZoneId.systemDefault();
+        }
+        try {
+            return ZoneId.of(timeZone);
+        } catch (DateTimeException e) {
+            return ZoneId.systemDefault();
+        }
+    }
+}
@@ -1,57 +1,369 @@
 package com.zeni.playtime.data;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
 
 /**
- * Representa los datos de tiempo jugado de un jugador
+ * Representa los datos de tiempo jugado de un jugador.
+ * Los mundos se indexan por su id de {@link WorldRegistry} en arrays primitivos,
+ * sin Longs en caja ni entradas de mapa por jugador.
+ * <p>
+ * Las sesiones se miden con el reloj monótono de {@link SessionClock}; el instante de pared
+ * de inicio se guarda aparte, solo para informar.
+ * <p>
+ * Concurrencia: el estado es un {@link Snapshot} inmutable publicado en un campo volatile.
+ * Los escritores (inicio/fin de sesión, carga) se serializan con el monitor de esta instancia,
+ * que hace de lock por jugador; los lectores (HUD, guardado, comandos) nunca bloquean y siempre
+ * ven un estado coherente.
  */
 public class PlaytimeData {
+    private static final long NO_SESSION = Long.MIN_VALUE;
+    private static final long[] EMPTY = new long[0];
+
     private final UUID playerId;
-    private final Map<UUID, Long> worldPlaytime; // worldName -> tiempo en milisegundos
-    private final Map<UUID, Long> sessionStartTime; // worldName -> timestamp de inicio de sesión
+    private final SessionClock clock;
+    private volatile Snapshot state;
+    private volatile long lastAccessAt;
+
+    /**
+     * Recibe el tiempo acumulado de cada mundo sin copiar ningún mapa
+     */
+    public interface WorldPlaytimeConsumer {
+        void accept(UUID worldUuid, long milliseconds);
+    }
+
+    /**
+     * Estado inmutable del jugador en un instante. Los arrays nunca se modifican tras publicarse.
+     */
+    public static final class Snapshot {
+        private final long[] worldPlaytime; // worldId -> tiempo en milisegundos
+        private final long[] sessionStartTime; // worldId -> inicio de sesión en ms monótonos, o NO_SESSION
+        private final long[] sessionStartWallTime; // worldId -> inicio de sesión en reloj de pared
+        private final long[] activePlaytime; // worldId -> tiempo con actividad en milisegundos
+        private final long totalPlaytime;
+        private final long totalActivePlaytime;
+        private final int activeSessions;
+        private final long activeSessionStartSum;
+
+        private Snapshot(long[] worldPlaytime, long[] sessionStartTime, long[] sessionStartWallTime, long[] activePlaytime,
+                         long totalPlaytime, long totalActivePlaytime, int activeSessions, long activeSessionStartSum) {
+            this.worldPlaytime = worldPlaytime;
+            this.sessionStartTime = sessionStartTime;
+            this.sessionStartWallTime = sessionStartWallTime;
+            this.activePlaytime = activePlaytime;
+            this.totalPlaytime = totalPlaytime;
+            this.totalActivePlaytime = totalActivePlaytime;
+            this.activeSessions = activeSessions;
+            this.activeSessionStartSum = activeSessionStartSum;
+        }
+
+        public long getTotalPlaytime() {
+            return totalPlaytime;
+        }
+
+        /**
+         * Parte del tiempo total en la que el jugador no estaba ausente (AFK)
+         */
+        public long getTotalActivePlaytime() {
+            return totalActivePlaytime;
+        }
+
+        public int getActiveSessionCount() {
+            return activeSessions;
+        }
+
+        /**
+         * Suma de los inicios de las sesiones activas. Con ella, el tiempo total en un instante
+         * es {@code total - suma + sesiones * ahora}, sin recorrer los mundos en cada tick.
+         */
+        public long getActiveSessionStartSum() {
+            return activeSessionStartSum;
+        }
+
+        public long getPlaytime(int worldId) {
+            return worldId >= 0 && worldId < worldPlaytime.length ? worldPlaytime[worldId] : 0L;
+        }
+
+        public long getActivePlaytime(int worldId) {
+            return worldId >= 0 && worldId < activePlaytime.length ? activePlaytime[worldId] : 0L;
+        }
+
+        public long getSessionStart(int worldId) {
+            return worldId >= 0 && worldId < sessionStartTime.length ? sessionStartTime[worldId] : NO_SESSION;
+        }
+
+        /**
+         * Instante de pared en que empezó la sesión; solo para informar, no para medir
+         */
+        public long getSessionStartWallTime(int worldId) {
+            return hasActiveSession(worldId) ? sessionStartWallTime[worldId] : 0L;
+        }
+
+        public boolean hasActiveSession(int worldId) {
+            return getSessionStart(worldId) != NO_SESSION;
+        }
+
+        public void forEachWorld(WorldPlaytimeConsumer consumer) {
+            for (int worldId = 0; worldId < worldPlaytime.length; worldId++) {
+                if (worldPlaytime[worldId] != 0L) {
+                    consumer.accept(WorldRegistry.uuidOf(worldId), worldPlaytime[worldId]);
+                }
+            }
+        }
+
+        public void forEachActiveWorld(WorldPlaytimeConsumer consumer) {
+            for (int worldId = 0; worldId < activePlaytime.length; worldId++) {
+                if (activePlaytime[worldId] != 0L) {
+                    consumer.accept(WorldRegistry.uuidOf(worldId), activePlaytime[worldId]);
+                }
+            }
+        }
+    }
 
     public PlaytimeData(UUID playerId) {
+        this(playerId, SessionClock.SYSTEM);
+    }
+
+    public PlaytimeData(UUID playerId, SessionClock clock) {
         this.playerId = playerId;
-        this.worldPlaytime = new HashMap<>();
-        this.sessionStartTime = new HashMap<>();
+        this.clock = clock;
+        this.state = new Snapshot(EMPTY, EMPTY, EMPTY, EMPTY, 0L, 0L, 0, 0L);
+        this.lastAccessAt = clock.monotonicMillis();
     }
 
+    public UUID getPlayerId() {
+        return playerId;
+    }
 
+    /**
+     * Estado actual, para leer varios valores de forma coherente sin bloquear
+     */
+    public Snapshot snapshot() {
+        return state;
+    }
+
+    /**
+     * Devuelve una copia del tiempo por mundo. Para lecturas frecuentes usar
+     * {@link #forEachWorld} o {@link #getPlaytime(UUID)}, que no copian.
+     */
     public Map<UUID, Long> getWorldPlaytime() {
-        return new HashMap<>(worldPlaytime);
+        Map<UUID, Long> copy = new HashMap<>();
+        forEachWorld(copy::put);
+        return copy;
+    }
+
+    public void forEachWorld(WorldPlaytimeConsumer consumer) {
+        state.forEachWorld(consumer);
     }
 
     public long getTotalPlaytime() {
-        return worldPlaytime.values().stream().mapToLong(Long::longValue).sum();
+        return state.totalPlaytime;
     }
 
-    public void startSession(UUID uuid) {
-        sessionStartTime.put(uuid, System.currentTimeMillis());
+    public synchronized void startSession(UUID uuid) {
+        int worldId = WorldRegistry.idOf(uuid);
+        Snapshot current = state;
+        long[] sessions = copySessions(current.sessionStartTime, worldId);
+        long[] wallSessions = copySessions(current.sessionStartWallTime, worldId);
+        long previous = sessions[worldId];
+        long now = clock.monotonicMillis();
+        sessions[worldId] = now;
+        wallSessions[worldId] = clock.currentTimeMillis();
+
+        boolean wasActive = previous != NO_SESSION;
+        state = new Snapshot(current.worldPlaytime, sessions, wallSessions, current.activePlaytime,
+                current.totalPlaytime, current.totalActivePlaytime,
+                wasActive ? current.activeSessions : current.activeSessions + 1,
+                current.activeSessionStartSum - (wasActive ? previous : 0L) + now);
     }
 
-    public void endSession(UUID uuid) {
-        Long startTime = sessionStartTime.remove(uuid);
-        if (startTime != null) {
-            long sessionDuration = System.currentTimeMillis() - startTime;
-            worldPlaytime.merge(uuid, sessionDuration, Long::sum);
+    /**
+     * Finaliza la sesión en el mundo y devuelve su duración en milisegundos (0 si no había sesión)
+     */
+    public synchronized long endSession(UUID uuid) {
+        int worldId = WorldRegistry.find(uuid);
+        Snapshot current = state;
+        long startTime = current.getSessionStart(worldId);
+        if (startTime == NO_SESSION) {
+            return 0L;
         }
+
+        long sessionDuration = Math.max(0L, clock.monotonicMillis() - startTime);
+        long[] sessions = copySessions(current.sessionStartTime, worldId);
+        sessions[worldId] = NO_SESSION;
+        long[] playtime = copyPlaytime(current, worldId);
+        playtime[worldId] += sessionDuration;
+
+        state = new Snapshot(playtime, sessions, current.sessionStartWallTime, current.activePlaytime,
+                current.totalPlaytime + sessionDuration, current.totalActivePlaytime, current.activeSessions - 1, current.activeSessionStartSum - startTime);
+        return sessionDuration;
     }
 
-    public void addPlaytime(UUID uuid, long milliseconds) {
-        worldPlaytime.merge(uuid, milliseconds, Long::sum);
+    public synchronized void addPlaytime(UUID uuid, long milliseconds) {
+        int worldId = WorldRegistry.idOf(uuid);
+        Snapshot current = state;
+        long[] playtime = copyPlaytime(current, worldId);
+        playtime[worldId] += milliseconds;
+        state = new Snapshot(playtime, current.sessionStartTime, current.sessionStartWallTime, current.activePlaytime,
+                current.totalPlaytime + milliseconds, current.totalActivePlaytime,
+                current.activeSessions, current.activeSessionStartSum);
+    }
+
+    /**
+     * Acredita tiempo con actividad en el mundo. Es un contador aparte: no cambia el total ni las sesiones.
+     */
+    public synchronized void addActivePlaytime(UUID uuid, long milliseconds) {
+        int worldId = WorldRegistry.idOf(uuid);
+        Snapshot current = state;
+        long[] active = copyActive(current, worldId);
+        active[worldId] += milliseconds;
+        state = new Snapshot(current.worldPlaytime, current.sessionStartTime, current.sessionStartWallTime, active,
+                current.totalPlaytime, current.totalActivePlaytime + milliseconds,
+                current.activeSessions, current.activeSessionStartSum);
+    }
+
+    /**
+     * Suma los totales guardados a lo acumulado en memoria, para un jugador que empezó a jugar
+     * antes de que terminara su carga
+     */
+    public synchronized void addStored(PlaytimeData stored) {
+        stored.forEachWorld(this::addPlaytime);
+        stored.forEachActiveWorld(this::addActivePlaytime);
+    }
+
+    /**
+     * Aplica un total registrado en el journal; nunca reduce el tiempo ya acumulado
+     */
+    public synchronized void restorePlaytime(UUID uuid, long totalMilliseconds) {
+        int worldId = WorldRegistry.idOf(uuid);
+        Snapshot current = state;
+        long existing = current.getPlaytime(worldId);
+        if (totalMilliseconds > existing) {
+            long[] playtime = copyPlaytime(current, worldId);
+            playtime[worldId] = totalMilliseconds;
+            state = new Snapshot(playtime, current.sessionStartTime, current.sessionStartWallTime, current.activePlaytime,
+                    current.totalPlaytime + totalMilliseconds - existing, current.totalActivePlaytime,
+                    current.activeSessions, current.activeSessionStartSum);
+        }
+    }
+
+    /**
+     * Como {@link #restorePlaytime}, para el contador de tiempo con actividad
+     */
+    public synchronized void restoreActivePlaytime(UUID uuid, long totalMilliseconds) {
+        int worldId = WorldRegistry.idOf(uuid);
+        Snapshot current = state;
+        long existing = current.getActivePlaytime(worldId);
+        if (totalMilliseconds > existing) {
+            long[] active = copyActive(current, worldId);
+            active[worldId] = totalMilliseconds;
+            state = new Snapshot(current.worldPlaytime, current.sessionStartTime, current.sessionStartWallTime, active,
+                    current.totalPlaytime, current.totalActivePlaytime + totalMilliseconds - existing,
+                    current.activeSessions, current.activeSessionStartSum);
+        }
+    }
+
+    public long getPlaytime(UUID uuid) {
+        return state.getPlaytime(WorldRegistry.find(uuid));
+    }
+
+    public long getActivePlaytime(UUID uuid) {
+        return state.getActivePlaytime(WorldRegistry.find(uuid));
+    }
+
+    public long getTotalActivePlaytime() {
+        return state.totalActivePlaytime;
+    }
+
+    public void forEachActiveWorld(WorldPlaytimeConsumer consumer) {
+        state.forEachActiveWorld(consumer);
     }
 
     public boolean hasActiveSession(UUID uuid) {
-        return sessionStartTime.containsKey(uuid);
+        return state.hasActiveSession(WorldRegistry.find(uuid));
+    }
+
+    public boolean hasAnyActiveSession() {
+        return state.activeSessions > 0;
+    }
+
+    /**
+     * Marca el último acceso, usado para expulsar de memoria a los jugadores inactivos
+     */
+    public void touch() {
+        lastAccessAt = clock.monotonicMillis();
+    }
+
+    public long getLastAccessAt() {
+        return lastAccessAt;
     }
 
     public long getCurrentSessionTime(UUID uuid) {
-        Long startTime = sessionStartTime.get(uuid);
-        if (startTime == null) {
+        long startTime = state.getSessionStart(WorldRegistry.find(uuid));
+        if (startTime == NO_SESSION) {
             return 0L;
         }
-        return System.currentTimeMillis() - startTime;
+        return Math.max(0L, clock.monotonicMillis() - startTime);
+    }
+
+    /**
+     * Instante de pared en que empezó la sesión en el mundo, o 0 si no hay sesión
+     */
+    public long getSessionStartWallTime(UUID uuid) {
+        return state.getSessionStartWallTime(WorldRegistry.find(uuid));
+    }
+
+    /**
+     * Suma el tiempo en curso de todas las sesiones activas
+     */
+    public long getActiveSessionTime() {
+        Snapshot current = state;
+        return current.activeSessions * clock.monotonicMillis() - current.activeSessionStartSum;
+    }
+
+    public int getActiveSessionCount() {
+        return state.activeSessions;
+    }
+
+    public long getActiveSessionStartSum() {
+        return state.activeSessionStartSum;
+    }
+
+    public SessionClock getClock() {
+        return clock;
+    }
+
+    /**
+     * Finaliza todas las sesiones activas, incluidas las de mundos sin tiempo acumulado todavía
+     */
+    public synchronized void endAllSessions(WorldPlaytimeConsumer endedSessions) {
+        long[] sessions = state.sessionStartTime;
+        for (int worldId = 0; worldId < sessions.length && state.activeSessions > 0; worldId++) {
+            if (sessions[worldId] != NO_SESSION) {
+                UUID worldUuid = WorldRegistry.uuidOf(worldId);
+                endedSessions.accept(worldUuid, endSession(worldUuid));
+            }
+        }
+    }
+
+    private static long[] copyPlaytime(Snapshot current, int worldId) {
+        return Arrays.copyOf(current.worldPlaytime, Math.max(current.worldPlaytime.length, capacityFor(worldId)));
+    }
+
+    private static long[] copyActive(Snapshot current, int worldId) {
+        return Arrays.copyOf(current.activePlaytime, Math.max(current.activePlaytime.length, capacityFor(worldId)));
+    }
+
+    private static long[] copySessions(long[] current, int worldId) {
+        int previous = current.length;
+        long[] sessions = Arrays.copyOf(current, Math.max(previous, capacityFor(worldId)));
+        Arrays.fill(sessions, previous, sessions.length, NO_SESSION);
+        return sessions;
+    }
+
+    private static int capacityFor(int worldId) {
+        return Math.max(worldId + 1, WorldRegistry.size());
     }
 }
@@ -0,0 +1,184 @@
+package com.zeni.playtime.data;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Histórico de tiempo jugado de un jugador en cubos diarios, con acumulados semanales
+ * (semanas de lunes a domingo) y mensuales que se actualizan a la vez que el día.
+ * Cada mundo guarda tres columnas contiguas de segundos, de modo que una consulta de rango
+ * cuesta lo mismo que el número de cubos que cubre, no el de sesiones.
+ */
+public class PlaytimeHistory {
+    private static final WorldBuckets[] EMPTY = new WorldBuckets[0];
+    private static final int WEEK_ROLLUP_MIN_DAYS = 14;
+
+    private final UUID playerId;
+    private WorldBuckets[] worlds = EMPTY; // worldId -> cubos, o null
+
+    private static final class WorldBuckets {
+        final BucketSeries days;
+        final BucketSeries weeks;
+        final BucketSeries months;
+
+        WorldBuckets(BucketSeries days, BucketSeries weeks, BucketSeries months) {
+            this.days = days;
+            this.weeks = weeks;
+            this.months = months;
+        }
+    }
+
+    public PlaytimeHistory(UUID playerId) {
+        this.playerId = playerId;
+    }
+
+    public UUID getPlayerId() {
+        return playerId;
+    }
+
+    /**
+     * Índice de la semana (empezando en lunes) que contiene el día dado
+     */
+    public static int weekOf(long epochDay) {
+        // El 1970-01-01 fue jueves
+        return (int) Math.floorDiv(epochDay + 3, 7);
+    }
+
+    public static long firstDayOfWeek(int week) {
+        return 7L * week - 3;
+    }
+
+    public static int monthOf(YearMonth month) {
+        return month.getYear() * 12 + month.getMonthValue() - 1;
+    }
+
+    synchronized void add(UUID worldUuid, LocalDate day, int seconds) {
+        if (seconds <= 0) {
+            return;
+        }
+        int worldId = WorldRegistry.idOf(worldUuid);
+        if (worldId >= worlds.length) {
+            worlds = Arrays.copyOf(worlds, Math.max(worldId + 1, WorldRegistry.size()));
+        }
+        WorldBuckets buckets = worlds[worldId];
+        if (buckets == null) {
+            buckets = new WorldBuckets(new BucketSeries(), new BucketSeries(), new BucketSeries());
+            worlds[worldId] = buckets;
+        }
+
+        long epochDay = day.toEpochDay();
+        buckets.days.add((int) epochDay, seconds);
+        buckets.weeks.add(weekOf(epochDay), seconds);
+        buckets.months.add(monthOf(YearMonth.from(day)), seconds);
+    }
+
+    /**
+     * Segundos jugados en los días [fromDay, toDay) en un mundo, o en todos si worldUuid es null.
+     * Los rangos largos usan el acumulado semanal para las semanas completas.
+     */
+    public synchronized long getSeconds(UUID worldUuid, long fromDay, long toDay) {
+        long total = 0L;
+        for (WorldBuckets buckets : selected(worldUuid)) {
+            if (buckets != null) {
+                total += sumDays(buckets, (int) fromDay, (int) toDay);
+            }
+        }
+        return total;
+    }
+
+    public synchronized long getWeekSeconds(UUID worldUuid, int week) {
+        long total = 0L;
+        for (WorldBuckets buckets : selected(worldUuid)) {
+            if (buckets != null) {
+                total += buckets.weeks.get(week);
+            }
+        }
+        return total;
+    }
+
+    public synchronized long getMonthSeconds(UUID worldUuid, YearMonth month) {
+        int index = monthOf(month);
+        long total = 0L;
+        for (WorldBuckets buckets : selected(worldUuid)) {
+            if (buckets != null) {
+                total += buckets.months.get(index);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Descarta los cubos diarios anteriores al día dado; los acumulados se conservan
+     */
+    synchronized void trimDaysBefore(long epochDay) {
+        for (WorldBuckets buckets : worlds) {
+            if (buckets != null) {
+                buckets.days.trimBefore((int) epochDay);
+            }
+        }
+    }
+
+    synchronized void write(DataOutputStream out) throws IOException {
+        int count = 0;
+        for (WorldBuckets buckets : worlds) {
+            if (buckets != null) {
+                count++;
+            }
+        }
+
+        out.writeInt(count);
+        for (int worldId = 0; worldId < worlds.length; worldId++) {
+            WorldBuckets buckets = worlds[worldId];
+            if (buckets != null) {
+                UUID worldUuid = WorldRegistry.uuidOf(worldId);
+                out.writeLong(worldUuid.getMostSignificantBits());
+                out.writeLong(worldUuid.getLeastSignificantBits());
+                buckets.days.write(out);
+                buckets.weeks.write(out);
+                buckets.months.write(out);
+            }
+        }
+    }
+
+    static PlaytimeHistory read(UUID playerId, DataInputStream in) throws IOException {
+        PlaytimeHistory history = new PlaytimeHistory(playerId);
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            int worldId = WorldRegistry.idOf(new UUID(in.readLong(), in.readLong()));
+            WorldBuckets buckets = new WorldBuckets(BucketSeries.read(in), BucketSeries.read(in), BucketSeries.read(in));
+            if (worldId >= history.worlds.length) {
+                history.worlds = Arrays.copyOf(history.worlds, Math.max(worldId + 1, WorldRegistry.size()));
+            }
+            history.worlds[worldId] = buckets;
+        }
+        return history;
+    }
+
+    private WorldBuckets[] selected(UUID worldUuid) {
+        if (worldUuid == null) {
+            return worlds;
+        }
+        int worldId = WorldRegistry.find(worldUuid);
+        return worldId >= 0 && worldId < worlds.length ? new WorldBuckets[] {worlds[worldId]} : EMPTY;
+    }
+
+    private static long sumDays(WorldBuckets buckets, int fromDay, int toDay) {
+        if (toDay - fromDay < WEEK_ROLLUP_MIN_DAYS) {
+            return buckets.days.sum(fromDay, toDay);
+        }
+
+        // Días sueltos al principio y al final, semanas completas en medio
+        int firstWeek = weekOf(fromDay + 6L);
+        int endWeek = weekOf(toDay);
+        int firstWeekDay = (int) firstDayOfWeek(firstWeek);
+        int endWeekDay = (int) firstDayOfWeek(endWeek);
+        return buckets.days.sum(fromDay, firstWeekDay)
+                + buckets.weeks.sum(firstWeek, endWeek)
+                + buckets.days.sum(endWeekDay, toDay);
+    }
+}
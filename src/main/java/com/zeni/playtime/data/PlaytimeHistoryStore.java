@@ -0,0 +1,195 @@
+package com.zeni.playtime.data;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+import com.zeni.playtime.metrics.PlaytimeMetrics;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Guarda el histórico por días de cada jugador en un fichero binario propio,
+ * repartido en subdirectorios por el mismo prefijo de UUID que los shards.
+ * Las sesiones se reparten entre días al terminar, usando el instante de pared de inicio
+ * y la duración monótona, en la zona horaria configurada.
+ * <p>
+ * Los cubos diarios se conservan {@value #DAILY_RETENTION_DAYS} días (unos 1,5 KB por mundo);
+ * los acumulados semanales y mensuales no caducan.
+ */
+public class PlaytimeHistoryStore {
+    private static final int MAGIC = 0x50544831; // "PTH1"
+    static final int DAILY_RETENTION_DAYS = 400;
+
+    private final File directory;
+    private final ZoneId zone;
+    private final HytaleLogger logger;
+    private final Map<UUID, PlaytimeHistory> resident;
+    private final Set<UUID> dirtyPlayers;
+
+    public PlaytimeHistoryStore(File directory, ZoneId zone, HytaleLogger logger) {
+        this.directory = directory;
+        this.zone = zone;
+        this.logger = logger;
+        this.resident = new ConcurrentHashMap<>();
+        this.dirtyPlayers = ConcurrentHashMap.newKeySet();
+
+        if (!directory.exists() && !directory.mkdirs()) {
+            logger.atWarning().log("No se pudo crear el directorio del histórico");
+        }
+    }
+
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    public LocalDate dayOf(long wallMillis) {
+        return Instant.ofEpochMilli(wallMillis).atZone(zone).toLocalDate();
+    }
+
+    /**
+     * Instante de pared en que empieza el día en la zona configurada
+     */
+    public long startOfDay(long epochDay) {
+        return LocalDate.ofEpochDay(epochDay).atStartOfDay(zone).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Devuelve el histórico del jugador, cargándolo si no está en memoria
+     */
+    public PlaytimeHistory get(UUID playerId) {
+        return resident.computeIfAbsent(playerId, this::load);
+    }
+
+    /**
+     * Reparte una sesión terminada entre los días que abarca
+     */
+    public void recordSession(UUID playerId, UUID worldUuid, long startWallMillis, long durationMillis) {
+        if (durationMillis <= 0) {
+            return;
+        }
+        // compute es atómico respecto a la expulsión de históricos en memoria
+        resident.compute(playerId, (id, history) -> {
+            PlaytimeHistory current = history != null ? history : load(id);
+            long endWallMillis = startWallMillis + durationMillis;
+            long cursor = startWallMillis;
+            LocalDate day = dayOf(cursor);
+            while (cursor < endWallMillis) {
+                long nextDay = startOfDay(day.toEpochDay() + 1);
+                long segmentEnd = Math.min(nextDay, endWallMillis);
+                // Restar segundos truncados hace que los tramos sumen exactamente la sesión
+                current.add(worldUuid, day, (int) (Math.floorDiv(segmentEnd, 1000L) - Math.floorDiv(cursor, 1000L)));
+                cursor = segmentEnd;
+                day = day.plusDays(1);
+            }
+            dirtyPlayers.add(id);
+            return current;
+        });
+    }
+
+    /**
+     * Anota tiempo que no procede de una sesión en el día del instante dado
+     */
+    public void recordAt(UUID playerId, UUID worldUuid, long wallMillis, long milliseconds) {
+        if (milliseconds <= 0) {
+            return;
+        }
+        resident.compute(playerId, (id, history) -> {
+            PlaytimeHistory current = history != null ? history : load(id);
+            current.add(worldUuid, dayOf(wallMillis), (int) Math.min(Integer.MAX_VALUE, milliseconds / 1000L));
+            dirtyPlayers.add(id);
+            return current;
+        });
+    }
+
+    /**
+     * Escribe los históricos modificados. Ejecutado únicamente en el hilo escritor.
+     */
+    public void writeDirty(long nowWallMillis) throws IOException {
+        if (dirtyPlayers.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        long retainFrom = dayOf(nowWallMillis).toEpochDay() - DAILY_RETENTION_DAYS;
+        IOException failure = null;
+        for (UUID playerId : dirtyPlayers) {
+            // Quitar antes de serializar: una modificación posterior volverá a marcarlo
+            dirtyPlayers.remove(playerId);
+            PlaytimeHistory history = resident.get(playerId);
+            if (history == null) {
+                continue;
+            }
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                out.writeInt(MAGIC);
+                history.trimDaysBefore(retainFrom);
+                history.write(out);
+            }
+
+            try {
+                File file = historyFile(playerId);
+                File parent = file.getParentFile();
+                if (!parent.exists() && !parent.mkdirs()) {
+                    throw new IOException("No se pudo crear " + parent);
+                }
+                AtomicFiles.writeStream(file, bytes::writeTo);
+            } catch (IOException e) {
+                dirtyPlayers.add(playerId);
+                failure = e;
+            }
+        }
+        PlaytimeMetrics.HISTORY_WRITE.recordSince(start);
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Libera los históricos ya guardados de jugadores que ya no están en memoria
+     */
+    public void retainOnly(Set<UUID> residentPlayers) {
+        for (UUID playerId : resident.keySet()) {
+            if (!residentPlayers.contains(playerId)) {
+                resident.computeIfPresent(playerId, (id, history) -> dirtyPlayers.contains(id) ? history : null);
+            }
+        }
+    }
+
+    private PlaytimeHistory load(UUID playerId) {
+        File file = historyFile(playerId);
+        if (!file.exists()) {
+            return new PlaytimeHistory(playerId);
+        }
+
+        PlaytimeMetrics.BYTES_READ.add(file.length());
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Formato desconocido");
+            }
+            return PlaytimeHistory.read(playerId, in);
+        } catch (IOException e) {
+            PlaytimeMetrics.recordError("history.load");
+            logger.atWarning().log("Error al leer el histórico del jugador " + playerId + ": " + e.getMessage());
+            // Apartar el fichero para no sobrescribirlo con un histórico vacío
+            if (!file.renameTo(new File(file.getParentFile(), file.getName() + ".corrupt"))) {
+                logger.atWarning().log("No se pudo apartar el histórico dañado del jugador " + playerId);
+            }
+            return new PlaytimeHistory(playerId);
+        }
+    }
+
+    private File historyFile(UUID playerId) {
+        return new File(directory, String.format("%02x/%s.bin", ShardedPlaytimeStore.shardOf(playerId), playerId));
+    }
+}
@@ -0,0 +1,389 @@
+package com.zeni.playtime.data;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+import com.zeni.playtime.metrics.PlaytimeMetrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.CRC32C;
+
+/**
+ * Log binario de solo escritura por segmentos con los deltas de tiempo de juego.
+ * Cada registro guarda (jugador, mundo, delta, total resultante) y un CRC32C en 56 bytes, por lo que
+ * cerrar una sesión cuesta lo mismo sin importar cuántos jugadores haya guardados.
+ * El total resultante hace que reaplicar un registro ya incluido en el snapshot sea inocuo.
+ * <p>
+ * Cada segmento empieza con una cabecera; los que no la tienen son del formato anterior (48 bytes sin CRC).
+ * Si una escritura falla, el segmento se trunca a como estaba y los registros vuelven al buffer; si no se
+ * puede truncar, se pasa a otro segmento. Al reproducir, los registros con el CRC mal se descartan.
+ * <p>
+ * {@link #append} solo copia el registro a un buffer en memoria; {@link #sync} y {@link #roll}
+ * hacen la E/S y deben llamarse siempre desde el mismo hilo escritor.
+ */
+public class PlaytimeJournal {
+    static final int RECORD_SIZE = 56;
+    private static final int PAYLOAD_SIZE = 48; // lo que cubre el CRC
+    private static final int LEGACY_RECORD_SIZE = 48;
+    private static final int MAGIC = 0x50544A32; // "PTJ2"
+    private static final int HEADER_SIZE = 8;
+    private static final int INITIAL_BUFFER_RECORDS = 256;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final File directory;
+    private final HytaleLogger logger;
+    private ByteBuffer pending;
+    private ByteBuffer draining;
+    private long recordsSinceRoll;
+
+    // Solo accedidos desde el hilo escritor
+    private FileChannel channel;
+    private int currentSegment;
+
+    public interface RecordConsumer {
+        void accept(UUID playerId, UUID worldUuid, long deltaMillis, long totalMillis);
+    }
+
+    public PlaytimeJournal(File directory, HytaleLogger logger) {
+        this.directory = directory;
+        this.logger = logger;
+        this.pending = ByteBuffer.allocate(RECORD_SIZE * INITIAL_BUFFER_RECORDS);
+        this.draining = ByteBuffer.allocate(RECORD_SIZE * INITIAL_BUFFER_RECORDS);
+
+        if (!directory.exists() && !directory.mkdirs()) {
+            logger.atWarning().log("No se pudo crear el directorio del journal");
+        }
+
+        List<Integer> segments = listSegments();
+        this.currentSegment = segments.isEmpty() ? 0 : segments.get(segments.size() - 1) + 1;
+    }
+
+    /**
+     * Añade un registro al buffer del segmento activo. No hace E/S.
+     */
+    public synchronized void append(UUID playerId, UUID worldUuid, long deltaMillis, long totalMillis) {
+        if (pending.remaining() < RECORD_SIZE) {
+            ByteBuffer grown = ByteBuffer.allocate(pending.capacity() * 2);
+            pending.flip();
+            grown.put(pending);
+            pending = grown;
+        }
+
+        putRecord(pending, playerId, worldUuid, deltaMillis, totalMillis);
+        recordsSinceRoll++;
+    }
+
+    private static void putRecord(ByteBuffer buffer, UUID playerId, UUID worldUuid, long deltaMillis, long totalMillis) {
+        int start = buffer.position();
+        buffer.putLong(playerId.getMostSignificantBits());
+        buffer.putLong(playerId.getLeastSignificantBits());
+        buffer.putLong(worldUuid.getMostSignificantBits());
+        buffer.putLong(worldUuid.getLeastSignificantBits());
+        buffer.putLong(deltaMillis);
+        buffer.putLong(totalMillis);
+        buffer.putLong(checksum(buffer.array(), start));
+    }
+
+    private static long checksum(byte[] records, int offset) {
+        CRC32C crc = new CRC32C();
+        crc.update(records, offset, PAYLOAD_SIZE);
+        return crc.getValue();
+    }
+
+    /**
+     * Añade de una vez los registros de un lote preparado fuera del lock. No hace E/S.
+     */
+    public synchronized void append(Batch batch) {
+        ByteBuffer records = batch.records.flip();
+        if (pending.remaining() < records.remaining()) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + records.remaining()));
+            pending.flip();
+            grown.put(pending);
+            pending = grown;
+        }
+        pending.put(records);
+        recordsSinceRoll += batch.count;
+    }
+
+    public Batch newBatch() {
+        return new Batch();
+    }
+
+    /**
+     * Registros acumulados por un solo hilo para añadirlos al journal con una sola toma del lock
+     */
+    public static final class Batch {
+        private ByteBuffer records = ByteBuffer.allocate(RECORD_SIZE * 64);
+        private int count;
+
+        private Batch() {
+        }
+
+        public void add(UUID playerId, UUID worldUuid, long deltaMillis, long totalMillis) {
+            if (records.remaining() < RECORD_SIZE) {
+                ByteBuffer grown = ByteBuffer.allocate(records.capacity() * 2);
+                records.flip();
+                grown.put(records);
+                records = grown;
+            }
+            putRecord(records, playerId, worldUuid, deltaMillis, totalMillis);
+            count++;
+        }
+
+        public boolean isEmpty() {
+            return count == 0;
+        }
+    }
+
+    /**
+     * Indica si se ha añadido algo desde el último cambio de segmento.
+     */
+    public synchronized boolean hasPendingRecords() {
+        return recordsSinceRoll > 0;
+    }
+
+    /**
+     * Escribe en disco los registros acumulados en el buffer.
+     * El buffer se intercambia bajo el lock para que {@link #append} nunca espere a la E/S.
+     * Si falla, nada queda a medias: lo no escrito vuelve delante del buffer y se reintenta en la siguiente llamada.
+     */
+    public void sync() throws IOException {
+        ByteBuffer toWrite;
+        synchronized (this) {
+            if (pending.position() == 0) {
+                return;
+            }
+            toWrite = pending;
+            draining.clear();
+            pending = draining;
+        }
+
+        long start = System.nanoTime();
+        int bytes = toWrite.position();
+        toWrite.flip();
+        long segmentSize = -1L;
+        boolean written = false;
+        try {
+            if (channel == null) {
+                channel = FileChannel.open(segmentFile(currentSegment).toPath(),
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            }
+            segmentSize = channel.size();
+            if (segmentSize == 0L) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(RECORD_SIZE).flip();
+                while (header.hasRemaining()) {
+                    channel.write(header);
+                }
+            }
+            while (toWrite.hasRemaining()) {
+                channel.write(toWrite);
+            }
+            channel.force(false);
+            written = true;
+            PlaytimeMetrics.JOURNAL_SYNC.recordSince(start);
+            PlaytimeMetrics.JOURNAL_BYTES.add(bytes);
+        } finally {
+            if (!written) {
+                PlaytimeMetrics.recordError("journal.sync");
+                toWrite.position(discardPartialWrite(segmentSize, toWrite.position()));
+                requeue(toWrite);
+            }
+            toWrite.clear();
+            synchronized (this) {
+                draining = toWrite;
+            }
+        }
+    }
+
+    /**
+     * Tras una escritura fallida, deja el segmento como estaba antes de ella. Si no se puede truncar, lo cierra
+     * y pasa al siguiente: los registros completos ya entregados se quedan en él y uno cortado al final se descarta
+     * al reproducirlo, porque nunca se escribe nada detrás.
+     *
+     * @return a partir de qué byte del buffer hay que volver a escribir
+     */
+    private int discardPartialWrite(long segmentSize, int writtenBytes) {
+        if (channel == null || segmentSize < 0L) {
+            return 0;
+        }
+        try {
+            channel.truncate(segmentSize);
+            return 0;
+        } catch (IOException e) {
+            logger.atWarning().log("No se pudo truncar el segmento " + currentSegment + " del journal: " + e.getMessage());
+        }
+        closeChannel();
+        currentSegment++;
+        return writtenBytes / RECORD_SIZE * RECORD_SIZE;
+    }
+
+    /**
+     * Devuelve los registros no escritos delante de los añadidos mientras tanto, para conservar el orden
+     */
+    private synchronized void requeue(ByteBuffer unwritten) {
+        ByteBuffer merged = ByteBuffer.allocate(Math.max(pending.capacity(), unwritten.remaining() + pending.position()));
+        merged.put(unwritten);
+        pending.flip();
+        merged.put(pending);
+        pending = merged;
+    }
+
+    /**
+     * Vuelca el buffer, cierra el segmento activo y abre uno nuevo.
+     * Devuelve el índice del nuevo segmento; todos los anteriores quedan sellados.
+     */
+    public int roll() throws IOException {
+        synchronized (this) {
+            recordsSinceRoll = 0;
+        }
+        sync();
+        closeChannel();
+        currentSegment++;
+        return currentSegment;
+    }
+
+    /**
+     * Reproduce todos los segmentos en orden. Un registro incompleto al final
+     * de un segmento (escritura cortada) se ignora.
+     */
+    public synchronized void replay(RecordConsumer consumer) {
+        replaySealed(0, Integer.MAX_VALUE, consumer);
+    }
+
+    /**
+     * Reproduce en orden los segmentos de {@code fromSegment} (incluido) a {@code toSegment} (excluido).
+     * No toma el lock: solo debe pedir segmentos ya sellados por {@link #roll}, que no cambian.
+     */
+    public void replaySealed(int fromSegment, int toSegment, RecordConsumer consumer) {
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE * 1024);
+        for (int segment : listSegments()) {
+            if (segment < fromSegment || segment >= toSegment) {
+                continue;
+            }
+            try (FileChannel in = FileChannel.open(segmentFile(segment).toPath(), StandardOpenOption.READ)) {
+                int recordSize = readHeader(in) ? RECORD_SIZE : LEGACY_RECORD_SIZE;
+                long remainingBytes = ((in.size() - in.position()) / recordSize) * recordSize;
+                long rejected = 0L;
+                while (remainingBytes > 0) {
+                    buffer.clear();
+                    buffer.limit((int) Math.min(buffer.capacity() / recordSize * recordSize, remainingBytes));
+                    while (buffer.hasRemaining()) {
+                        if (in.read(buffer) < 0) {
+                            break;
+                        }
+                    }
+                    buffer.flip();
+                    remainingBytes -= buffer.remaining();
+                    while (buffer.remaining() >= recordSize) {
+                        int start = buffer.position();
+                        UUID playerId = new UUID(buffer.getLong(), buffer.getLong());
+                        UUID worldUuid = new UUID(buffer.getLong(), buffer.getLong());
+                        long delta = buffer.getLong();
+                        long total = buffer.getLong();
+                        if (recordSize == RECORD_SIZE && buffer.getLong() != checksum(buffer.array(), start)) {
+                            rejected++;
+                            continue;
+                        }
+                        consumer.accept(playerId, worldUuid, delta, total);
+                    }
+                    if (buffer.limit() == 0) {
+                        break;
+                    }
+                }
+                if (rejected > 0) {
+                    PlaytimeMetrics.recordError("journal.replay");
+                    logger.atWarning().log("Descartados " + rejected + " registros dañados del segmento " + segment + " del journal");
+                }
+            } catch (IOException e) {
+                logger.atWarning().log("Error al leer el segmento " + segment + " del journal: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Lee la cabecera del segmento y deja el canal detrás de ella. Sin cabecera, el segmento es del
+     * formato anterior y el canal se queda al principio.
+     */
+    private static boolean readHeader(FileChannel in) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        while (header.hasRemaining()) {
+            if (in.read(header) < 0) {
+                break;
+            }
+        }
+        header.flip();
+        if (header.remaining() == HEADER_SIZE && header.getInt() == MAGIC && header.getInt() == RECORD_SIZE) {
+            return true;
+        }
+        in.position(0L);
+        return false;
+    }
+
+    /**
+     * Hace que los próximos segmentos se numeren después del indicado, aunque ya no quede ninguno en disco.
+     * Con almacenamiento compartido, la base de datos recuerda el último segmento aplicado y los nuevos no pueden reutilizar su número.
+     */
+    public void startAfter(int segment) {
+        currentSegment = Math.max(currentSegment, segment + 1);
+    }
+
+    /**
+     * Elimina los segmentos anteriores al índice dado, una vez volcados en el snapshot.
+     */
+    public synchronized void deleteSegmentsBefore(int segment) {
+        for (int existing : listSegments()) {
+            if (existing < segment && !segmentFile(existing).delete()) {
+                logger.atWarning().log("No se pudo eliminar el segmento " + existing + " del journal");
+            }
+        }
+    }
+
+    public void close() {
+        try {
+            sync();
+        } catch (IOException e) {
+            logger.atWarning().log("Error al escribir en el journal: " + e.getMessage());
+        }
+        closeChannel();
+    }
+
+    private void closeChannel() {
+        if (channel != null) {
+            try {
+                channel.force(false);
+                channel.close();
+            } catch (IOException e) {
+                logger.atWarning().log("Error al cerrar el journal: " + e.getMessage());
+            }
+            channel = null;
+        }
+    }
+
+    private File segmentFile(int segment) {
+        return new File(directory, String.format("%s%08d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX));
+    }
+
+    private List<Integer> listSegments() {
+        List<Integer> segments = new ArrayList<>();
+        String[] names = directory.list();
+        if (names == null) {
+            return segments;
+        }
+        for (String name : names) {
+            if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                try {
+                    segments.add(Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                }
+            }
+        }
+        segments.sort(null);
+        return segments;
+    }
+}
@@ -0,0 +1,200 @@
+package com.zeni.playtime.data;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Lectura y escritura en streaming del formato JSON de tiempo de juego
+ * ({@code {"jugador": {"mundo": ms, ...}, ...}}), un jugador cada vez y sin mapas intermedios,
+ * de modo que la memoria extra no depende del tamaño del fichero.
+ * El tiempo con actividad va en un objeto anidado {@code "active"} con la misma forma; como su clave
+ * no es un UUID, las versiones anteriores lo ignoran al leer.
+ * <p>
+ * La salida puede ser indentada o compacta y, opcionalmente, ir comprimida con gzip;
+ * la lectura detecta el gzip por su cabecera.
+ */
+public final class PlaytimeJsonCodec {
+    private static final int GZIP_MAGIC = 0x8b1f;
+    private static final String ACTIVE_KEY = "active";
+
+    private final boolean pretty;
+    private final boolean gzip;
+
+    /**
+     * Emite los jugadores uno a uno al escritor
+     */
+    public interface PlayerSource {
+        void forEach(PlaytimeStore.PlayerVisitor visitor) throws IOException;
+    }
+
+    public PlaytimeJsonCodec(boolean pretty, boolean gzip) {
+        this.pretty = pretty;
+        this.gzip = gzip;
+    }
+
+    /**
+     * Escribe todos los jugadores de la fuente. No cierra el flujo.
+     */
+    public void write(OutputStream out, PlayerSource source) throws IOException {
+        GZIPOutputStream compressed = gzip ? new GZIPOutputStream(out, 64 * 1024) : null;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(compressed != null ? compressed : out, StandardCharsets.UTF_8));
+        JsonWriter json = newJsonWriter(writer);
+        json.beginObject();
+        source.forEach(data -> writePlayer(json, data));
+        json.endObject();
+        json.flush();
+        if (compressed != null) {
+            compressed.finish();
+        }
+        writer.flush();
+    }
+
+    /**
+     * Lee los jugadores uno a uno. Las claves que no son UUID válidos se ignoran.
+     */
+    public static void read(InputStream in, SessionClock clock, PlaytimeStore.PlayerVisitor visitor) throws IOException {
+        try (JsonReader json = new JsonReader(openReader(in))) {
+            if (json.peek() == JsonToken.END_DOCUMENT) {
+                return;
+            }
+            json.beginObject();
+            while (json.hasNext()) {
+                String key = json.nextName();
+                UUID playerId = parseUuid(key);
+                if (playerId == null) {
+                    json.skipValue();
+                    continue;
+                }
+                visitor.accept(readPlayer(json, playerId, clock));
+            }
+            json.endObject();
+        }
+    }
+
+    public JsonWriter newJsonWriter(Writer writer) {
+        JsonWriter json = new JsonWriter(writer);
+        if (pretty) {
+            json.setIndent("  ");
+        }
+        return json;
+    }
+
+    public static void writePlayer(JsonWriter json, PlaytimeData data) throws IOException {
+        PlaytimeData.Snapshot snapshot = data.snapshot();
+        json.name(data.getPlayerId().toString());
+        json.beginObject();
+        int worldCount = WorldRegistry.size();
+        for (int worldId = 0; worldId < worldCount; worldId++) {
+            long milliseconds = snapshot.getPlaytime(worldId);
+            if (milliseconds != 0L) {
+                json.name(WorldRegistry.uuidOf(worldId).toString()).value(milliseconds);
+            }
+        }
+        if (snapshot.getTotalActivePlaytime() != 0L) {
+            json.name(ACTIVE_KEY);
+            json.beginObject();
+            for (int worldId = 0; worldId < worldCount; worldId++) {
+                long milliseconds = snapshot.getActivePlaytime(worldId);
+                if (milliseconds != 0L) {
+                    json.name(WorldRegistry.uuidOf(worldId).toString()).value(milliseconds);
+                }
+            }
+            json.endObject();
+        }
+        json.endObject();
+    }
+
+    /**
+     * Lee el objeto de mundos de un jugador cuyo nombre ya se ha consumido
+     */
+    public static PlaytimeData readPlayer(JsonReader json, UUID playerId, SessionClock clock) throws IOException {
+        PlaytimeData data = new PlaytimeData(playerId, clock);
+        json.beginObject();
+        while (json.hasNext()) {
+            String name = json.nextName();
+            if (ACTIVE_KEY.equals(name) && json.peek() == JsonToken.BEGIN_OBJECT) {
+                readActive(json, data);
+                continue;
+            }
+            UUID worldUuid = parseUuid(name);
+            if (worldUuid == null) {
+                json.skipValue();
+                continue;
+            }
+            data.addPlaytime(worldUuid, json.nextLong());
+        }
+        json.endObject();
+        return data;
+    }
+
+    private static void readActive(JsonReader json, PlaytimeData data) throws IOException {
+        json.beginObject();
+        while (json.hasNext()) {
+            UUID worldUuid = parseUuid(json.nextName());
+            if (worldUuid == null) {
+                json.skipValue();
+                continue;
+            }
+            data.addActivePlaytime(worldUuid, json.nextLong());
+        }
+        json.endObject();
+    }
+
+    /**
+     * Copia tal cual el objeto de mundos de un jugador, sin interpretar los UUID
+     */
+    public static void copyPlayer(JsonReader json, String key, JsonWriter out) throws IOException {
+        out.name(key);
+        copyObject(json, out);
+    }
+
+    private static void copyObject(JsonReader json, JsonWriter out) throws IOException {
+        out.beginObject();
+        json.beginObject();
+        while (json.hasNext()) {
+            out.name(json.nextName());
+            if (json.peek() == JsonToken.BEGIN_OBJECT) {
+                copyObject(json, out);
+            } else {
+                out.value(json.nextLong());
+            }
+        }
+        json.endObject();
+        out.endObject();
+    }
+
+    public static Reader openReader(InputStream in) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in, 64 * 1024);
+        buffered.mark(2);
+        int first = buffered.read();
+        int second = buffered.read();
+        buffered.reset();
+        InputStream source = first >= 0 && second >= 0 && (first | (second << 8)) == GZIP_MAGIC
+                ? new GZIPInputStream(buffered, 64 * 1024)
+                : buffered;
+        return new InputStreamReader(source, StandardCharsets.UTF_8);
+    }
+
+    static UUID parseUuid(String value) {
+        try {
+            return UUID.fromString(value);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.zeni.playtime.data;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Clasificación de tiempo jugado, global y por mundo, mantenida de forma incremental
+ * al terminar cada sesión. Las consultas no ordenan a todos los jugadores: el índice da los
+ * k primeros y solo se suman las sesiones en curso de los jugadores conectados.
+ */
+public class PlaytimeLeaderboard {
+    private static final Comparator<LeaderboardEntry> BY_PLAYTIME = Comparator
+            .comparingLong(LeaderboardEntry::playtime).reversed()
+            .thenComparing(LeaderboardEntry::playerId);
+
+    private final RankedIndex totals;
+    private final Map<Integer, RankedIndex> worlds;
+    private final Map<UUID, PlaytimeData> residentPlayers;
+    private final PlayerNames names;
+    private volatile boolean loaded;
+
+    /**
+     * @param residentPlayers vista viva (solo lectura) de los jugadores en memoria, para sumar sus sesiones en curso
+     * @param names nombres guardados de los jugadores
+     */
+    PlaytimeLeaderboard(Map<UUID, PlaytimeData> residentPlayers, PlayerNames names) {
+        this.totals = new RankedIndex();
+        this.worlds = new ConcurrentHashMap<>();
+        this.residentPlayers = residentPlayers;
+        this.names = names;
+    }
+
+    /**
+     * Actualiza el índice con el tiempo cerrado de un jugador en un mundo y su total
+     */
+    public void update(UUID playerId, UUID worldUuid, long worldPlaytime, long totalPlaytime) {
+        totals.offer(playerId, totalPlaytime);
+        worlds.computeIfAbsent(WorldRegistry.idOf(worldUuid), id -> new RankedIndex()).offer(playerId, worldPlaytime);
+    }
+
+    /**
+     * Indexa a un jugador completo (carga inicial desde el almacenamiento)
+     */
+    public void index(PlaytimeData data) {
+        PlaytimeData.Snapshot snapshot = data.snapshot();
+        totals.offer(data.getPlayerId(), snapshot.getTotalPlaytime());
+        snapshot.forEachWorld((worldUuid, milliseconds) ->
+                worlds.computeIfAbsent(WorldRegistry.idOf(worldUuid), id -> new RankedIndex()).offer(data.getPlayerId(), milliseconds));
+    }
+
+    void markLoaded() {
+        loaded = true;
+    }
+
+    /**
+     * Indica si ya se han indexado todos los jugadores guardados
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Nombre del jugador, o el principio de su UUID si nunca se ha visto
+     */
+    public String getName(UUID playerId) {
+        String name = names.get(playerId);
+        return name != null ? name : playerId.toString().substring(0, 8);
+    }
+
+    /**
+     * Los k jugadores con más tiempo total, incluidas las sesiones en curso
+     */
+    public List<LeaderboardEntry> top(int k) {
+        return liveTop(totals, null, k);
+    }
+
+    /**
+     * Los k jugadores con más tiempo en el mundo, incluidas las sesiones en curso
+     */
+    public List<LeaderboardEntry> top(UUID worldUuid, int k) {
+        int worldId = WorldRegistry.find(worldUuid);
+        RankedIndex index = worldId >= 0 ? worlds.get(worldId) : null;
+        return index != null ? liveTop(index, worldUuid, k) : liveTop(new RankedIndex(), worldUuid, k);
+    }
+
+    /**
+     * Posición (desde 1) del jugador en la clasificación total
+     */
+    public int rank(UUID playerId) {
+        return liveRank(totals, null, playerId);
+    }
+
+    /**
+     * Posición (desde 1) del jugador en la clasificación del mundo
+     */
+    public int rank(UUID playerId, UUID worldUuid) {
+        int worldId = WorldRegistry.find(worldUuid);
+        RankedIndex index = worldId >= 0 ? worlds.get(worldId) : null;
+        return liveRank(index != null ? index : new RankedIndex(), worldUuid, playerId);
+    }
+
+    private List<LeaderboardEntry> liveTop(RankedIndex index, UUID worldUuid, int k) {
+        List<LeaderboardEntry> indexed = new ArrayList<>(k);
+        index.top(k, indexed);
+
+        // Candidatos: los k primeros del índice más los jugadores con sesión en curso
+        Map<UUID, LeaderboardEntry> candidates = new HashMap<>();
+        for (LeaderboardEntry entry : indexed) {
+            candidates.put(entry.playerId(), entry);
+        }
+        for (PlaytimeData data : residentPlayers.values()) {
+            long live = livePlaytime(data, worldUuid);
+            if (live > 0L) {
+                candidates.merge(data.getPlayerId(), new LeaderboardEntry(data.getPlayerId(), live),
+                        (a, b) -> a.playtime() >= b.playtime() ? a : b);
+            }
+        }
+
+        List<LeaderboardEntry> result = new ArrayList<>(candidates.values());
+        result.sort(BY_PLAYTIME);
+        return result.size() > k ? new ArrayList<>(result.subList(0, k)) : result;
+    }
+
+    private int liveRank(RankedIndex index, UUID worldUuid, UUID playerId) {
+        long playtime = index.get(playerId);
+        PlaytimeData own = residentPlayers.get(playerId);
+        if (own != null) {
+            playtime = Math.max(playtime, livePlaytime(own, worldUuid));
+        }
+
+        int above = index.countAbove(playtime, playerId);
+        // Jugadores conectados que solo superan al jugador gracias a su sesión en curso
+        for (PlaytimeData data : residentPlayers.values()) {
+            if (data.hasAnyActiveSession() && !data.getPlayerId().equals(playerId)
+                    && index.get(data.getPlayerId()) <= playtime && livePlaytime(data, worldUuid) > playtime) {
+                above++;
+            }
+        }
+        return above + 1;
+    }
+
+    private static long livePlaytime(PlaytimeData data, UUID worldUuid) {
+        if (!data.hasAnyActiveSession()) {
+            return 0L;
+        }
+        if (worldUuid == null) {
+            return data.getTotalPlaytime() + data.getActiveSessionTime();
+        }
+        return data.getPlaytime(worldUuid) + data.getCurrentSessionTime(worldUuid);
+    }
+}
@@ -1,34 +1,100 @@
 package com.zeni.playtime.data;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.reflect.TypeToken;
 import com.hypixel.hytale.logger.HytaleLogger;
+import com.zeni.playtime.events.SessionEvent;
+import com.zeni.playtime.events.SessionEventBus;
+import com.zeni.playtime.metrics.PlaytimeMetrics;
+import com.zeni.playtime.scheduler.PlaytimeScheduler;
 
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.FileInputStream;
 import java.io.IOException;
-import java.lang.reflect.Type;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
 import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 /**
  * Gestiona los datos de tiempo de juego de todos los jugadores
  */
 public class PlaytimeManager {
-    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
-    private final Map<UUID, PlaytimeData> playerData;
-    private final File dataFile;
+    private static final long SAVE_INTERVAL_MILLIS = 5_000L;
+    private static final long COMPACTION_INTERVAL_MILLIS = 60_000L;
+    private static final long CHECKPOINT_INTERVAL_MILLIS = 30_000L;
+    private static final long IDLE_EVICTION_MILLIS = 10 * 60_000L;
+    private static final int IMPORT_BATCH = 1_000;
+    private static final int QUERY_PARALLELISM = Math.min(8, Runtime.getRuntime().availableProcessors());
+    private final Map<UUID, PlaytimeData> playerData; // solo jugadores residentes
+    private final Map<UUID, CompletableFuture<PlaytimeData>> loads; // residentes cuyos totales guardados aún no se han sumado
+    private final Set<UUID> dirtyPlayers;
+    private final File legacyDataFile;
+    private final PlaytimeStore store;
+    private final Object storeLock = new Object(); // serializa las escrituras de compactación e importación
+    private final PlaytimeJournal journal;
+    private final PersistenceWriter writer;
+    private final PlaytimeLeaderboard leaderboard;
+    private final PlayerNames names;
+    private final PlaytimeHistoryStore history;
+    private final SessionCheckpoint checkpoint;
+    private final Object checkpointLock = new Object();
+    private final ScheduledFuture<?> checkpointTask;
     private final HytaleLogger logger;
-    private Consumer<UUID> hudUpdateCallback;
+    private final SessionClock clock;
+    private final PlaytimeScheduler scheduler;
+    private final PlaytimeScheduler ownedScheduler; // solo si no se recibe el planificador del plugin
+    private final List<Consumer<UUID>> updateCallbacks = new CopyOnWriteArrayList<>();
+    private final SessionEventBus events;
+    private final MilestoneEngine milestones;
+    private long lastCompactionAt;
+
+    private interface ShardMigration {
+        void write(List<PlaytimeData> players) throws IOException;
+    }
+
+    /**
+     * Paso de un jugador de un mundo a otro, para {@link #changeWorlds}
+     */
+    public record WorldChange(UUID playerId, UUID fromWorld, UUID toWorld) {
+    }
 
     public PlaytimeManager(File dataFolder, HytaleLogger logger) {
+        this(dataFolder, logger, SessionClock.SYSTEM);
+    }
+
+    public PlaytimeManager(File dataFolder, HytaleLogger logger, SessionClock clock) {
+        this(dataFolder, logger, clock, new PlaytimeConfig());
+    }
+
+    public PlaytimeManager(File dataFolder, HytaleLogger logger, SessionClock clock, PlaytimeConfig config) {
+        this(dataFolder, logger, clock, config, null);
+    }
+
+    /**
+     * @param scheduler planificador del plugin, o null para usar uno propio que se cierra con {@link #close()}
+     */
+    public PlaytimeManager(File dataFolder, HytaleLogger logger, SessionClock clock, PlaytimeConfig config, PlaytimeScheduler scheduler) {
+        this.clock = clock;
+        this.ownedScheduler = scheduler == null ? new PlaytimeScheduler(logger) : null;
+        this.scheduler = scheduler != null ? scheduler : ownedScheduler;
+        this.events = new SessionEventBus(this.scheduler, logger);
         this.playerData = new ConcurrentHashMap<>();
-        this.dataFile = new File(dataFolder, "playtime-data.json");
+        this.loads = new ConcurrentHashMap<>();
+        this.dirtyPlayers = ConcurrentHashMap.newKeySet();
+        this.legacyDataFile = new File(dataFolder, "playtime-data.json");
         this.logger = logger;
 
         // Crear directorio si no existe
@@ -39,97 +105,1035 @@ public class PlaytimeManager {
             }
         }
 
+        this.names = new PlayerNames(new File(dataFolder, "names.dat"), logger);
+        this.leaderboard = new PlaytimeLeaderboard(playerData, names);
+        this.store = openStore(dataFolder, config);
+        this.journal = new PlaytimeJournal(new File(dataFolder, "journal"), logger);
+        this.history = new PlaytimeHistoryStore(new File(dataFolder, "history"), config.getZone(), logger);
+        this.checkpoint = new SessionCheckpoint(new File(dataFolder, "sessions.ckpt"), logger);
+
         loadData();
+        this.lastCompactionAt = clock.monotonicMillis();
+
+        this.writer = new PersistenceWriter("playtime-writer", SAVE_INTERVAL_MILLIS, this::persist, this.scheduler, logger);
+        this.checkpointTask = this.scheduler.scheduleIo("session.checkpoint", CHECKPOINT_INTERVAL_MILLIS, this::checkpointSessions);
+
+        loadLeaderboard();
+
+        this.milestones = new MilestoneEngine(config.getMilestoneThresholdsMillis(), playerData::get,
+                new File(dataFolder, "milestones.log"), events, this.scheduler, clock, logger);
     }
 
+    private PlaytimeStore openStore(File dataFolder, PlaytimeConfig config) {
+        File shardDirectory = new File(dataFolder, "players");
+        if (config.isJdbcStorage()) {
+            String url = config.getJdbcUrl().isBlank() ? JdbcPlaytimeStore.defaultUrl(dataFolder) : config.getJdbcUrl();
+            if (!JdbcPlaytimeStore.isDriverAvailable(url)) {
+                // Sin driver no hay base de datos que abrir: mejor seguir con los shards locales que no arrancar
+                PlaytimeMetrics.recordError("store.jdbc");
+                logger.atWarning().log("storage \"jdbc\" sin driver JDBC para la URL configurada (el de H2 se incluye compilando con -Pcluster); "
+                        + "se usan los shards locales de este servidor");
+                return new ShardedPlaytimeStore(shardDirectory, clock, logger);
+            }
+            UUID nodeId;
+            try {
+                nodeId = JdbcPlaytimeStore.nodeId(new File(dataFolder, "node.id"));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            JdbcPlaytimeStore shared = new JdbcPlaytimeStore(url, config.getJdbcUser(), config.getJdbcPassword(),
+                    config.getCacheTtlMillis(), nodeId, clock, logger);
+            if (shardDirectory.isDirectory()) {
+                migrateShards(shardDirectory, shared::addTotals);
+            }
+            return shared;
+        }
+        if (!config.isMappedStorage()) {
+            return new ShardedPlaytimeStore(shardDirectory, clock, logger);
+        }
+
+        MappedPlaytimeStore mapped = new MappedPlaytimeStore(new File(dataFolder, "table"), clock, logger);
+        if (mapped.isEmpty() && shardDirectory.isDirectory()) {
+            migrateShards(shardDirectory, players -> {
+                mapped.save(players);
+                mapped.force();
+            });
+        }
+        return mapped;
+    }
+
+    /**
+     * Pasa los shards locales al nuevo almacenamiento y aparta el directorio.
+     * En la base de datos compartida, los totales de cada nodo se suman a los que ya haya, así que
+     * el directorio se aparta antes de escribir: un cierre a medias nunca lo suma dos veces.
+     */
+    private void migrateShards(File shardDirectory, ShardMigration target) {
+        File migrating = new File(shardDirectory.getParentFile(), shardDirectory.getName() + ".migrating");
+        if (!shardDirectory.renameTo(migrating)) {
+            logger.atWarning().log("No se pudo apartar el directorio de shards para migrarlo");
+            return;
+        }
+
+        try {
+            List<PlaytimeData> players = new ArrayList<>();
+            new ShardedPlaytimeStore(migrating, clock, logger).forEachPlayer(players::add);
+            target.write(players);
+        } catch (IOException e) {
+            logger.atWarning().log("Error al migrar los shards al nuevo almacenamiento: " + e.getMessage());
+            if (!migrating.renameTo(shardDirectory)) {
+                logger.atWarning().log("No se pudo restaurar el directorio de shards " + migrating.getName());
+            }
+            return;
+        }
+
+        File migrated = new File(shardDirectory.getParentFile(), shardDirectory.getName() + ".migrated");
+        if (!migrating.renameTo(migrated)) {
+            logger.atWarning().log("No se pudo renombrar el directorio de shards tras migrarlo");
+        }
+    }
+
+    /**
+     * Almacenamiento configurado (shards JSON o tabla mapeada)
+     */
+    public PlaytimeStore getStore() {
+        return store;
+    }
+
+    /**
+     * Devuelve los datos del jugador, cargándolos desde su shard la primera vez que se necesitan.
+     * Si la carga está en curso en otro hilo, espera a que termine.
+     */
     public PlaytimeData getPlayerData(UUID playerId) {
-        return playerData.computeIfAbsent(playerId, PlaytimeData::new);
+        PlaytimeData resident = playerData.get(playerId);
+        PlaytimeData data = resident != null ? resident : loadResident(playerId);
+        awaitLoad(playerId);
+        data.touch();
+        if (store.claimRefresh(playerId)) {
+            // Con almacenamiento compartido, traer en segundo plano lo sumado en otros nodos
+            scheduler.runIo("store.refresh", () -> refreshPlayer(data));
+        }
+        return data;
     }
 
+    private void refreshPlayer(PlaytimeData data) {
+        try {
+            long before = data.getTotalPlaytime();
+            if (store.refresh(data)) {
+                leaderboard.index(data);
+                notifyUpdate(data.getPlayerId());
+                events.publish(new SessionEvent.PlaytimeAdjusted(data.getPlayerId(), null,
+                        data.getTotalPlaytime() - before, clock.currentTimeMillis()));
+            }
+        } catch (IOException e) {
+            PlaytimeMetrics.recordError("store.refresh");
+            logger.atWarning().log("Error al releer al jugador " + data.getPlayerId() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Datos en memoria del jugador sin esperar a su carga, para el hilo del juego y el del HUD.
+     * Justo después de conectarse pueden faltar los totales guardados: llegan después con un
+     * {@link SessionEvent.PlaytimeAdjusted}.
+     */
+    public PlaytimeData peekPlayerData(UUID playerId) {
+        PlaytimeData data = playerData.get(playerId);
+        return data != null ? data : getPlayerData(playerId);
+    }
+
+    /**
+     * Si el jugador tiene una sesión abierta en el mundo, sin cargarlo si no está en memoria
+     */
+    public boolean hasActiveSession(UUID playerId, UUID worldUuid) {
+        PlaytimeData data = playerData.get(playerId);
+        return data != null && data.hasActiveSession(worldUuid);
+    }
+
+    /**
+     * Devuelve solo los jugadores residentes en memoria (conectados o usados recientemente).
+     * Para recorrer a todos los guardados, usar {@link #query()}.
+     */
     public Map<UUID, PlaytimeData> getAllPlayerData() {
         return new HashMap<>(playerData);
     }
 
+    /**
+     * Abre la sesión sin E/S en el hilo que llama: un jugador que no estaba en memoria entra vacío
+     * y sus totales guardados se suman cuando termina la carga en un hilo de E/S
+     */
     public void startSession(UUID playerId, UUID worldUuid) {
-        PlaytimeData data = getPlayerData(playerId);
-        data.startSession(worldUuid);
+        openSession(playerId, worldUuid);
+        notifyUpdate(playerId);
+        events.publish(new SessionEvent.SessionStarted(playerId, worldUuid, clock.currentTimeMillis()));
+    }
+
+    private void openSession(UUID playerId, UUID worldUuid) {
+        // compute es atómico respecto a la expulsión de jugadores inactivos
+        boolean[] created = new boolean[1];
+        PlaytimeData started = playerData.compute(playerId, (id, data) -> {
+            PlaytimeData current = data;
+            if (current == null) {
+                current = beginLoad(id);
+                created[0] = true;
+            }
+            current.startSession(worldUuid);
+            current.touch();
+            return current;
+        });
+        if (created[0]) {
+            scheduler.runIo("player.load", () -> completeLoad(started));
+        }
     }
 
     public void endSession(UUID playerId, UUID worldUuid) {
         PlaytimeData data = playerData.get(playerId);
         if (data != null) {
-            data.endSession(worldUuid);
-            saveData();
-            notifyHudUpdate(playerId);
+            retainForEnd(data);
+            PlaytimeData.Snapshot before;
+            long sessionDuration;
+            // Bajo el monitor del jugador: el cierre y su registro quedan los dos antes o después de completar la carga
+            synchronized (data) {
+                before = data.snapshot();
+                sessionDuration = data.endSession(worldUuid);
+                journalSession(data, worldUuid, sessionDuration);
+            }
+            recordHistory(before, playerId, worldUuid, sessionDuration);
+            notifyUpdate(playerId);
+            if (before.hasActiveSession(WorldRegistry.find(worldUuid))) {
+                publishEnded(playerId, worldUuid, sessionDuration);
+            }
         }
     }
 
+    /**
+     * Cierra la sesión en el mundo de origen y abre la del de destino
+     */
+    public void changeWorld(UUID playerId, UUID fromWorld, UUID toWorld) {
+        endSession(playerId, fromWorld);
+        startSession(playerId, toWorld);
+        events.publish(new SessionEvent.WorldChanged(playerId, fromWorld, toWorld, clock.currentTimeMillis()));
+    }
+
+    /**
+     * Cambia de mundo a varios jugadores a la vez (recarga de mundos, reinicios). Como en
+     * {@link #endAllSessions(Collection)}, los cierres van al journal en un solo lote, el hilo escritor
+     * se despierta una vez y los eventos se publican juntos.
+     */
+    public void changeWorlds(Collection<WorldChange> changes) {
+        PlaytimeJournal.Batch batch = journal.newBatch();
+        List<SessionEvent> published = new ArrayList<>();
+        long now = clock.currentTimeMillis();
+        for (WorldChange change : changes) {
+            UUID playerId = change.playerId();
+            UUID fromWorld = change.fromWorld();
+            PlaytimeData data = playerData.get(playerId);
+            if (data != null) {
+                retainForEnd(data);
+                PlaytimeData.Snapshot before;
+                long sessionDuration;
+                synchronized (data) {
+                    before = data.snapshot();
+                    sessionDuration = data.endSession(fromWorld);
+                    if (sessionDuration > 0 && !loads.containsKey(playerId)) {
+                        dirtyPlayers.add(playerId);
+                        long worldPlaytime = data.getPlaytime(fromWorld);
+                        batch.add(playerId, fromWorld, sessionDuration, worldPlaytime);
+                        leaderboard.update(playerId, fromWorld, worldPlaytime, data.getTotalPlaytime());
+                    }
+                }
+                recordHistory(before, playerId, fromWorld, sessionDuration);
+                if (before.hasActiveSession(WorldRegistry.find(fromWorld))) {
+                    published.add(new SessionEvent.SessionEnded(playerId, fromWorld, sessionDuration, now));
+                }
+            }
+            openSession(playerId, change.toWorld());
+            notifyUpdate(playerId);
+            published.add(new SessionEvent.SessionStarted(playerId, change.toWorld(), now));
+            published.add(new SessionEvent.WorldChanged(playerId, fromWorld, change.toWorld(), now));
+        }
+
+        if (!batch.isEmpty()) {
+            journal.append(batch);
+            writer.markDirty();
+        }
+        events.publishAll(published);
+    }
+
     public void endAllSessions(UUID playerId) {
         PlaytimeData data = playerData.get(playerId);
         if (data != null) {
             // Finalizar todas las sesiones activas
-            for (UUID worldUuid : data.getWorldPlaytime().keySet()) {
-                if (data.hasActiveSession(worldUuid)) {
-                    data.endSession(worldUuid);
+            retainForEnd(data);
+            PlaytimeData.Snapshot before = data.snapshot();
+            data.endAllSessions((worldUuid, sessionDuration) -> {
+                journalSession(data, worldUuid, sessionDuration);
+                recordHistory(before, playerId, worldUuid, sessionDuration);
+                publishEnded(playerId, worldUuid, sessionDuration);
+            });
+            notifyUpdate(playerId);
+        }
+    }
+
+    /**
+     * Cierra las sesiones de varios jugadores a la vez (desconexiones en masa, cierre del servidor).
+     * Los registros del journal se añaden en un solo lote, el hilo escritor se despierta una vez
+     * y los eventos {@link SessionEvent.SessionEnded} se publican juntos.
+     */
+    public void endAllSessions(Collection<UUID> playerIds) {
+        PlaytimeJournal.Batch batch = journal.newBatch();
+        List<SessionEvent> ended = new ArrayList<>();
+        long now = clock.currentTimeMillis();
+        for (UUID playerId : playerIds) {
+            PlaytimeData data = playerData.get(playerId);
+            if (data == null) {
+                continue;
+            }
+            retainForEnd(data);
+            PlaytimeData.Snapshot before = data.snapshot();
+            data.endAllSessions((worldUuid, sessionDuration) -> {
+                if (sessionDuration > 0 && !loads.containsKey(playerId)) {
+                    dirtyPlayers.add(playerId);
+                    long worldPlaytime = data.getPlaytime(worldUuid);
+                    batch.add(playerId, worldUuid, sessionDuration, worldPlaytime);
+                    leaderboard.update(playerId, worldUuid, worldPlaytime, data.getTotalPlaytime());
                 }
+                recordHistory(before, playerId, worldUuid, sessionDuration);
+                ended.add(new SessionEvent.SessionEnded(playerId, worldUuid, sessionDuration, now));
+            });
+            notifyUpdate(playerId);
+        }
+
+        // Todo el lote ya está en memoria antes de llegar al journal, como en journalSession
+        if (!batch.isEmpty()) {
+            journal.append(batch);
+            writer.markDirty();
+        }
+        events.publishAll(ended);
+    }
+
+    /**
+     * Suma tiempo a un jugador fuera de una sesión (recompensas, correcciones de administración)
+     */
+    public void addPlaytime(UUID playerId, UUID worldUuid, long milliseconds) {
+        PlaytimeData data = getPlayerData(playerId);
+        synchronized (data) {
+            data.addPlaytime(worldUuid, milliseconds);
+            journalSession(data, worldUuid, milliseconds);
+        }
+        long now = clock.currentTimeMillis();
+        history.recordAt(playerId, worldUuid, now, milliseconds);
+        notifyUpdate(playerId);
+        events.publish(new SessionEvent.PlaytimeAdjusted(playerId, worldUuid, milliseconds, now));
+    }
+
+    private void publishEnded(UUID playerId, UUID worldUuid, long sessionDuration) {
+        events.publish(new SessionEvent.SessionEnded(playerId, worldUuid, sessionDuration, clock.currentTimeMillis()));
+    }
+
+    /**
+     * Acredita tiempo con actividad medido por el muestreo de AFK. No pasa por el journal:
+     * se guarda en la siguiente compactación, así que un cierre inesperado puede perder el último intervalo.
+     */
+    public void addActivePlaytime(UUID playerId, UUID worldUuid, long milliseconds) {
+        PlaytimeData data = playerData.get(playerId);
+        if (data == null || milliseconds <= 0) {
+            return;
+        }
+        dirtyPlayers.add(playerId);
+        data.addActivePlaytime(worldUuid, milliseconds);
+        writer.markDirty();
+    }
+
+    public PlaytimeLeaderboard getLeaderboard() {
+        return leaderboard;
+    }
+
+    /**
+     * Recuerda el nombre del jugador para la clasificación y los informes. Se guarda en el siguiente volcado.
+     */
+    public void rememberName(UUID playerId, String name) {
+        if (names.remember(playerId, name)) {
+            writer.markDirty();
+        }
+    }
+
+    /**
+     * Antes de cerrar sesiones: con el jugador tocado y marcado, la expulsión de inactivos no puede
+     * quitarlo de memoria entre el cierre y su registro en el journal, que caerían en un objeto huérfano
+     */
+    private void retainForEnd(PlaytimeData data) {
+        data.touch();
+        if (data.hasAnyActiveSession()) {
+            dirtyPlayers.add(data.getPlayerId());
+        }
+    }
+
+    /**
+     * Registra en el journal el delta de una sesión ya aplicada en memoria.
+     * El orden (memoria antes que journal) garantiza que el snapshot de la compactación lo incluya.
+     * Mientras el jugador se carga no se registra nada: {@link #completeLoad} lo hace con el total completo.
+     * Llamar con el monitor del jugador.
+     */
+    private void journalSession(PlaytimeData data, UUID worldUuid, long sessionDuration) {
+        if (sessionDuration > 0 && !loads.containsKey(data.getPlayerId())) {
+            dirtyPlayers.add(data.getPlayerId());
+            long worldPlaytime = data.getPlaytime(worldUuid);
+            journal.append(data.getPlayerId(), worldUuid, sessionDuration, worldPlaytime);
+            writer.markDirty();
+            leaderboard.update(data.getPlayerId(), worldUuid, worldPlaytime, data.getTotalPlaytime());
+        }
+    }
+
+    /**
+     * Reparte en el histórico diario una sesión recién terminada, anclada al instante de pared
+     * en que empezó según el estado previo al cierre
+     */
+    private void recordHistory(PlaytimeData.Snapshot before, UUID playerId, UUID worldUuid, long sessionDuration) {
+        if (sessionDuration > 0) {
+            long startWall = before.getSessionStartWallTime(WorldRegistry.find(worldUuid));
+            if (startWall == 0L) {
+                startWall = clock.currentTimeMillis() - sessionDuration;
+            }
+            history.recordSession(playerId, worldUuid, startWall, sessionDuration);
+        }
+    }
+
+    /**
+     * Tiempo jugado entre dos días (ambos incluidos) en un mundo, o en todos si worldUuid es null.
+     * Incluye la parte de las sesiones en curso que cae dentro del rango.
+     */
+    public long getPlaytimeBetween(UUID playerId, UUID worldUuid, LocalDate from, LocalDate to) {
+        long fromDay = from.toEpochDay();
+        long toDay = to.toEpochDay() + 1;
+        return history.get(playerId).getSeconds(worldUuid, fromDay, toDay) * 1000L
+                + livePlaytimeWithin(playerId, worldUuid, history.startOfDay(fromDay), history.startOfDay(toDay));
+    }
+
+    /**
+     * Tiempo jugado en los últimos días, contando hoy
+     */
+    public long getRecentPlaytime(UUID playerId, UUID worldUuid, int days) {
+        LocalDate today = history.dayOf(clock.currentTimeMillis());
+        return getPlaytimeBetween(playerId, worldUuid, today.minusDays(days - 1L), today);
+    }
+
+    /**
+     * Tiempo jugado en la semana (de lunes a domingo) que contiene el día dado
+     */
+    public long getWeeklyPlaytime(UUID playerId, UUID worldUuid, LocalDate day) {
+        int week = PlaytimeHistory.weekOf(day.toEpochDay());
+        long firstDay = PlaytimeHistory.firstDayOfWeek(week);
+        return history.get(playerId).getWeekSeconds(worldUuid, week) * 1000L
+                + livePlaytimeWithin(playerId, worldUuid, history.startOfDay(firstDay), history.startOfDay(firstDay + 7));
+    }
+
+    public long getMonthlyPlaytime(UUID playerId, UUID worldUuid, YearMonth month) {
+        return history.get(playerId).getMonthSeconds(worldUuid, month) * 1000L
+                + livePlaytimeWithin(playerId, worldUuid,
+                        history.startOfDay(month.atDay(1).toEpochDay()), history.startOfDay(month.plusMonths(1).atDay(1).toEpochDay()));
+    }
+
+    /**
+     * Parte de las sesiones activas del jugador que cae en [fromWall, toWall)
+     */
+    private long livePlaytimeWithin(UUID playerId, UUID worldUuid, long fromWall, long toWall) {
+        PlaytimeData data = playerData.get(playerId);
+        if (data == null) {
+            return 0L;
+        }
+        PlaytimeData.Snapshot snapshot = data.snapshot();
+        if (snapshot.getActiveSessionCount() == 0) {
+            return 0L;
+        }
+
+        int firstWorld = worldUuid != null ? WorldRegistry.find(worldUuid) : 0;
+        int endWorld = worldUuid != null ? firstWorld + 1 : WorldRegistry.size();
+        if (firstWorld < 0) {
+            return 0L;
+        }
+
+        long now = clock.monotonicMillis();
+        long total = 0L;
+        for (int worldId = firstWorld; worldId < endWorld; worldId++) {
+            if (snapshot.hasActiveSession(worldId)) {
+                long start = snapshot.getSessionStartWallTime(worldId);
+                long end = start + Math.max(0L, now - snapshot.getSessionStart(worldId));
+                total += Math.max(0L, Math.min(end, toWall) - Math.max(start, fromWall));
             }
-            saveData();
-            notifyHudUpdate(playerId);
         }
+        return total;
     }
 
     /**
-     * Establece el callback para notificar actualizaciones del HUD
+     * Jugador vacío que ocupa su sitio en memoria hasta que {@link #completeLoad} le sume lo guardado.
+     * Se llama dentro del cálculo del mapa, así que no hace E/S.
      */
-    public void setHudUpdateCallback(Consumer<UUID> callback) {
-        this.hudUpdateCallback = callback;
+    private PlaytimeData beginLoad(UUID playerId) {
+        loads.put(playerId, new CompletableFuture<>());
+        return new PlaytimeData(playerId, clock);
+    }
+
+    /**
+     * Lee al jugador del almacenamiento y suma sus totales a lo acumulado desde que entró. Ese tiempo
+     * no pasó por el journal, porque su total aún no incluía lo guardado: se registra ahora, ya completo.
+     */
+    private void completeLoad(PlaytimeData data) {
+        UUID playerId = data.getPlayerId();
+        long start = System.nanoTime();
+        PlaytimeData stored = null;
+        try {
+            stored = store.load(playerId);
+        } catch (RuntimeException e) {
+            PlaytimeMetrics.recordError("player.load");
+            logger.atWarning().log("Error al cargar al jugador " + playerId + ": " + e.getMessage());
+        }
+        PlaytimeMetrics.PLAYER_LOAD.recordSince(start);
+
+        CompletableFuture<PlaytimeData> load;
+        synchronized (data) {
+            PlaytimeData.Snapshot accumulated = data.snapshot();
+            if (stored != null) {
+                data.addStored(stored);
+            }
+            load = loads.remove(playerId);
+            accumulated.forEachWorld((worldUuid, milliseconds) -> journalSession(data, worldUuid, milliseconds));
+        }
+        load.complete(data);
+
+        if (stored != null && stored.getTotalPlaytime() > 0) {
+            leaderboard.index(data);
+            notifyUpdate(playerId);
+            events.publish(new SessionEvent.PlaytimeAdjusted(playerId, null, stored.getTotalPlaytime(), clock.currentTimeMillis()));
+        }
     }
 
     /**
-     * Notifica al HUD que los datos han sido actualizados
+     * Carga al jugador en este hilo, fuera del lock del mapa: el jugador se reserva vacío y la lectura se hace después
      */
-    private void notifyHudUpdate(UUID playerId) {
-        if (hudUpdateCallback != null) {
-            hudUpdateCallback.accept(playerId);
+    private PlaytimeData loadResident(UUID playerId) {
+        boolean[] created = new boolean[1];
+        PlaytimeData data = playerData.computeIfAbsent(playerId, id -> {
+            created[0] = true;
+            return beginLoad(id);
+        });
+        if (created[0]) {
+            completeLoad(data);
         }
+        return data;
     }
 
+    /**
+     * Espera a que terminen de sumarse los totales guardados del jugador, si se está cargando
+     */
+    private void awaitLoad(UUID playerId) {
+        CompletableFuture<PlaytimeData> load = loads.get(playerId);
+        if (load != null) {
+            load.join();
+        }
+    }
+
+    /**
+     * Jugador residente ya cargado, o null si no está en memoria
+     */
+    private PlaytimeData loadedResident(UUID playerId) {
+        awaitLoad(playerId);
+        return playerData.get(playerId);
+    }
+
+    /**
+     * Jugadores con datos en memoria
+     */
+    public int getResidentPlayerCount() {
+        return playerData.size();
+    }
+
+    /**
+     * Sesiones abiertas entre todos los jugadores en memoria
+     */
+    public int getActiveSessionCount() {
+        int sessions = 0;
+        for (PlaytimeData data : playerData.values()) {
+            sessions += data.snapshot().getActiveSessionCount();
+        }
+        return sessions;
+    }
+
+    /**
+     * Reloj usado para medir las sesiones
+     */
+    public SessionClock getClock() {
+        return clock;
+    }
+
+    /**
+     * Registra un callback para cuando cambian los datos de un jugador (inicio o fin de sesión,
+     * tiempo añadido): el HUD y la caché de resultados de /playtime
+     */
+    public void addUpdateCallback(Consumer<UUID> callback) {
+        updateCallbacks.add(callback);
+    }
+
+    /**
+     * Flujo de eventos de sesión para suscriptores que no deben frenar al hilo del juego
+     * (HUD, recompensas, clasificaciones externas)
+     */
+    public SessionEventBus getEvents() {
+        return events;
+    }
+
+    /**
+     * Hitos de tiempo total entregados y pendientes
+     */
+    public MilestoneEngine getMilestones() {
+        return milestones;
+    }
+
+    /**
+     * Notifica que los datos del jugador han sido actualizados
+     */
+    private void notifyUpdate(UUID playerId) {
+        for (Consumer<UUID> callback : updateCallbacks) {
+            callback.accept(playerId);
+        }
+    }
+
+    /**
+     * Marca los datos como pendientes de guardar. No hace E/S: el hilo escritor
+     * vuelca el journal como mucho una vez por intervalo y compacta periódicamente.
+     */
     public void saveData() {
-        try (FileWriter writer = new FileWriter(dataFile)) {
-            Map<String, Map<UUID, Long>> serializableData = new HashMap<>();
-            for (Map.Entry<UUID, PlaytimeData> entry : playerData.entrySet()) {
-                serializableData.put(entry.getKey().toString(), entry.getValue().getWorldPlaytime());
+        writer.markDirty();
+    }
+
+    /**
+     * Vuelca el journal y compacta el snapshot, esperando a que termine
+     */
+    public void flush() {
+        writer.flush();
+    }
+
+    /**
+     * Hace la compactación final y detiene el hilo escritor. Las sesiones que sigan abiertas
+     * quedan en el punto de control; si no queda ninguna, se elimina.
+     */
+    public void close() {
+        milestones.close();
+        checkpointTask.cancel(false);
+        writer.close();
+        checkpointSessions();
+        journal.close();
+        store.close();
+        events.close();
+        if (ownedScheduler != null) {
+            ownedScheduler.shutdown();
+        }
+    }
+
+    /**
+     * Ejecutado únicamente en el hilo escritor
+     */
+    private void persist(boolean flush) throws IOException {
+        journal.sync();
+
+        long now = clock.monotonicMillis();
+        // El tiempo con actividad solo marca al jugador: también hay que compactar sin registros en el journal
+        boolean pending = journal.hasPendingRecords() || !dirtyPlayers.isEmpty();
+        if (pending && (flush || now - lastCompactionAt >= COMPACTION_INTERVAL_MILLIS)) {
+            long start = System.nanoTime();
+            compact();
+            PlaytimeMetrics.COMPACTION.recordSince(start);
+            lastCompactionAt = now;
+        }
+
+        history.writeDirty(clock.currentTimeMillis());
+        writeNames();
+        evictIdlePlayers(now);
+        history.retainOnly(playerData.keySet());
+    }
+
+    /**
+     * Añade al fichero de nombres los vistos desde el último volcado y, con almacenamiento compartido,
+     * los lleva a la base de datos para los demás nodos
+     */
+    private void writeNames() {
+        Map<UUID, String> learned = names.drainPending();
+        if (learned.isEmpty()) {
+            return;
+        }
+        try {
+            names.append(learned);
+            store.saveNames(learned);
+        } catch (IOException e) {
+            names.retry(learned);
+            PlaytimeMetrics.recordError("names.write");
+            logger.atWarning().log("Error al guardar los nombres de los jugadores: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Escribe el punto de control de las sesiones abiertas. Solo recorre a los jugadores en memoria
+     * (conectados o desconectados hace poco), no a todos los guardados.
+     */
+    private boolean checkpointSessions() {
+        synchronized (checkpointLock) {
+            long start = System.nanoTime();
+            try {
+                checkpoint.write(loadedPlayers(), clock.monotonicMillis());
+                PlaytimeMetrics.SESSION_CHECKPOINT.recordSince(start);
+                return true;
+            } catch (IOException e) {
+                PlaytimeMetrics.recordError("session.checkpoint");
+                logger.atWarning().log("Error al escribir el punto de control de sesiones: " + e.getMessage());
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Residentes cuyos totales ya incluyen lo guardado; los que se están cargando llevan solo lo de esta conexión
+     */
+    private List<PlaytimeData> loadedPlayers() {
+        List<PlaytimeData> loaded = new ArrayList<>(playerData.size());
+        for (PlaytimeData data : playerData.values()) {
+            if (!loads.containsKey(data.getPlayerId())) {
+                loaded.add(data);
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Compacta el journal: sella el segmento activo, guarda a los jugadores modificados
+     * y elimina los segmentos ya incluidos en el almacenamiento.
+     */
+    private void compact() throws IOException {
+        int activeSegment = journal.roll();
+
+        List<PlaytimeData> dirty = new ArrayList<>();
+        for (UUID playerId : dirtyPlayers) {
+            if (loads.containsKey(playerId)) {
+                // Sigue marcado: guardarlo ahora pisaría sus totales con los de esta conexión
+                continue;
+            }
+            // Quitar antes de leer: una modificación posterior volverá a marcarlo
+            dirtyPlayers.remove(playerId);
+            PlaytimeData data = playerData.get(playerId);
+            if (data != null) {
+                dirty.add(data);
+            }
+        }
+
+        try {
+            synchronized (storeLock) {
+                if (store.isShared()) {
+                    store.saveJournal(journalDeltas(activeSegment), activeSegment - 1, dirty);
+                } else {
+                    store.save(dirty);
+                }
+                // Los segmentos solo se borran cuando lo guardado está en disco
+                store.force();
             }
-            GSON.toJson(serializableData, writer);
         } catch (IOException e) {
-            logger.atWarning().log("Error al guardar los datos de tiempo de juego: " + e.getMessage());
+            // Los segmentos se conservan; volver a marcar para reintentar en la siguiente compactación
+            for (PlaytimeData data : dirty) {
+                dirtyPlayers.add(data.getPlayerId());
+            }
+            throw e;
+        }
+        // Compartido: el punto de control tiene que ser posterior a los cierres de sesión que se borran (ver loadData)
+        if (store.isShared() && !checkpointSessions()) {
+            return;
+        }
+        journal.deleteSegmentsBefore(activeSegment);
+    }
+
+    /**
+     * Suma por jugador y mundo los deltas de los segmentos sellados que el almacenamiento compartido aún no tiene
+     */
+    private Map<UUID, long[]> journalDeltas(int activeSegment) {
+        Map<UUID, long[]> deltas = new HashMap<>();
+        journal.replaySealed(store.appliedJournalSegment() + 1, activeSegment, (playerId, worldUuid, deltaMillis, totalMillis) -> {
+            int worldId = WorldRegistry.idOf(worldUuid);
+            worldsOf(deltas, playerId, worldId)[worldId] += deltaMillis;
+        });
+        return deltas;
+    }
+
+    /**
+     * Valores por id de mundo de un jugador, creados o ampliados hasta incluir {@code worldId}
+     */
+    private static long[] worldsOf(Map<UUID, long[]> values, UUID playerId, int worldId) {
+        long[] worlds = values.get(playerId);
+        if (worlds == null || worlds.length <= worldId) {
+            worlds = worlds == null ? new long[worldId + 1] : Arrays.copyOf(worlds, worldId + 1);
+            values.put(playerId, worlds);
+        }
+        return worlds;
+    }
+
+    /**
+     * Libera de memoria a los jugadores sin sesión activa, ya guardados e inactivos durante el TTL.
+     * Se comprueba bajo el monitor del jugador: un cierre de sesión en curso termina antes o se ve.
+     */
+    private void evictIdlePlayers(long now) {
+        for (UUID playerId : playerData.keySet()) {
+            playerData.computeIfPresent(playerId, (id, data) -> {
+                synchronized (data) {
+                    if (data.hasAnyActiveSession()
+                            || dirtyPlayers.contains(id)
+                            || loads.containsKey(id)
+                            || now - data.getLastAccessAt() < IDLE_EVICTION_MILLIS) {
+                        return data;
+                    }
+                }
+                store.release(id);
+                return null;
+            });
         }
     }
 
+    /**
+     * Migra el fichero antiguo a shards, reproduce los segmentos del journal y recupera
+     * las sesiones que seguían abiertas en el último punto de control.
+     * Los jugadores no se cargan hasta que se necesitan.
+     * <p>
+     * Con un almacenamiento local, cada registro se aplica con la regla del máximo. Con uno compartido, el total
+     * guardado incluye lo que han sumado otros nodos y el máximo perdería lo de este: se suman los deltas de los
+     * segmentos posteriores al último aplicado, y las sesiones del punto de control se comparan con los totales
+     * del journal, que son de la memoria del mismo proceso, no con la base de datos.
+     */
     public void loadData() {
-        if (!dataFile.exists()) {
+        migrateLegacyData();
+
+        boolean shared = store.isShared();
+        int applied = store.appliedJournalSegment();
+        journal.startAfter(applied);
+        Map<UUID, long[]> journaledTotals = new HashMap<>(); // mayor total de cada jugador y mundo en el journal del proceso anterior
+        long[] replayed = new long[1];
+        if (shared) {
+            // Lo ya aplicado no se suma, pero sus totales sirven para saber qué sesiones se cerraron tras el punto de control
+            journal.replaySealed(0, applied + 1, (playerId, worldUuid, deltaMillis, totalMillis) ->
+                    raiseJournaled(journaledTotals, playerId, worldUuid, totalMillis));
+            journal.replaySealed(applied + 1, Integer.MAX_VALUE, (playerId, worldUuid, deltaMillis, totalMillis) -> {
+                raiseJournaled(journaledTotals, playerId, worldUuid, totalMillis);
+                getPlayerData(playerId).addPlaytime(worldUuid, deltaMillis);
+                dirtyPlayers.add(playerId);
+                replayed[0]++;
+            });
+        } else {
+            journal.replay((playerId, worldUuid, deltaMillis, totalMillis) -> {
+                getPlayerData(playerId).restorePlaytime(worldUuid, totalMillis);
+                dirtyPlayers.add(playerId);
+                replayed[0]++;
+            });
+        }
+
+        // Tras un cierre inesperado, acreditar las sesiones abiertas hasta el último punto de control
+        checkpoint.read((playerId, worldUuid, savedMillis, elapsedMillis, startWallMillis) -> {
+            PlaytimeData data = getPlayerData(playerId);
+            long recovered;
+            long journaledTotal;
+            if (shared) {
+                // Si la sesión se cerró después, su registro lleva un total de al menos guardado + transcurrido
+                long[] journaled = journaledTotals.get(playerId);
+                int worldId = WorldRegistry.idOf(worldUuid);
+                long known = Math.max(savedMillis, journaled != null && worldId < journaled.length ? journaled[worldId] : 0L);
+                recovered = Math.max(0L, savedMillis + elapsedMillis - known);
+                if (recovered > 0) {
+                    data.addPlaytime(worldUuid, recovered);
+                }
+                // En el marco del proceso anterior: si este arranque no llega a compactar, el siguiente no lo vuelve a acreditar
+                journaledTotal = savedMillis + elapsedMillis;
+            } else {
+                long before = data.getPlaytime(worldUuid);
+                data.restorePlaytime(worldUuid, savedMillis + elapsedMillis);
+                recovered = data.getPlaytime(worldUuid) - before;
+                journaledTotal = data.getPlaytime(worldUuid);
+            }
+            if (recovered > 0) {
+                journal.append(playerId, worldUuid, recovered, journaledTotal);
+                history.recordSession(playerId, worldUuid, startWallMillis + elapsedMillis - recovered, recovered);
+                dirtyPlayers.add(playerId);
+                replayed[0]++;
+            }
+        });
+
+        // Plegar en los shards lo que quedó en el journal tras un cierre inesperado
+        if (replayed[0] > 0) {
+            try {
+                compact();
+            } catch (IOException e) {
+                // El punto de control se conserva: se volverá a aplicar en el próximo arranque
+                logger.atWarning().log("Error al compactar el journal: " + e.getMessage());
+                return;
+            }
+        }
+        checkpoint.delete();
+    }
+
+    private static void raiseJournaled(Map<UUID, long[]> totals, UUID playerId, UUID worldUuid, long totalMillis) {
+        int worldId = WorldRegistry.idOf(worldUuid);
+        long[] worlds = worldsOf(totals, playerId, worldId);
+        worlds[worldId] = Math.max(worlds[worldId], totalMillis);
+    }
+
+    /**
+     * Indexa en segundo plano a todos los jugadores guardados para la clasificación.
+     * Las sesiones que terminan mientras tanto actualizan el índice directamente.
+     * Queda en memoria de forma permanente: unos 48 bytes por jugador en el índice total y otros tantos
+     * por cada mundo en que haya jugado (ver {@link RankedIndex}), más su nombre si se conoce.
+     */
+    private void loadLeaderboard() {
+        scheduler.runIo("leaderboard.load", () -> {
+            try {
+                store.forEachName(names::learn);
+                store.forEachPlayer(leaderboard::index);
+                for (PlaytimeData data : playerData.values()) {
+                    leaderboard.index(data);
+                }
+                leaderboard.markLoaded();
+            } catch (Exception e) {
+                logger.atWarning().log("Error al cargar la clasificación de tiempo de juego: " + e.getMessage());
+            }
+        });
+    }
+
+    private void migrateLegacyData() {
+        if (!legacyDataFile.exists()) {
             return;
         }
 
-        try (FileReader reader = new FileReader(dataFile)) {
-            Type type = new TypeToken<Map<String, Map<UUID, Long>>>(){}.getType();
-            Map<String, Map<UUID, Long>> loadedData = GSON.fromJson(reader, type);
+        try {
+            store.importLegacy(legacyDataFile);
+        } catch (IOException | IllegalStateException | NumberFormatException e) {
+            logger.atWarning().log("Error al migrar los datos de tiempo de juego: " + e.getMessage());
+            return;
+        }
 
-            if (loadedData != null) {
-                for (Map.Entry<String, Map<UUID, Long>> entry : loadedData.entrySet()) {
-                    UUID playerId = UUID.fromString(entry.getKey());
-                    PlaytimeData data = new PlaytimeData(playerId);
-                    for (Map.Entry<UUID, Long> worldEntry : entry.getValue().entrySet()) {
-                        data.addPlaytime(worldEntry.getKey(), worldEntry.getValue());
-                    }
-                    playerData.put(playerId, data);
+        File migrated = new File(legacyDataFile.getParentFile(), legacyDataFile.getName() + ".migrated");
+        if (!legacyDataFile.renameTo(migrated)) {
+            logger.atWarning().log("No se pudo renombrar el fichero de datos antiguo tras migrarlo");
+        }
+    }
+
+    /**
+     * Exporta todos los jugadores a un fichero JSON en streaming, sin cargarlos a la vez en memoria.
+     * Los jugadores residentes se escriben con su estado en memoria.
+     */
+    public void exportData(File target, boolean pretty, boolean gzip) throws IOException {
+        flush();
+        PlaytimeJsonCodec codec = new PlaytimeJsonCodec(pretty, gzip);
+        AtomicFiles.writeStream(target, out -> codec.write(out, visitor -> store.forEachPlayer(data -> {
+            PlaytimeData resident = loadedResident(data.getPlayerId());
+            visitor.accept(resident != null ? resident : data);
+        })));
+    }
+
+    /**
+     * Copia de seguridad compacta y comprimida en la carpeta backups
+     */
+    public File backup() throws IOException {
+        File target = timestampedFile("backups", ".json.gz");
+        exportData(target, false, true);
+        return target;
+    }
+
+    /**
+     * Consultas y agregados sobre todos los jugadores guardados, en paralelo sobre el almacenamiento.
+     * Antes vuelca lo pendiente, para que incluya a los jugadores que aún no se habían guardado.
+     * Bloquea: llamar desde un hilo de E/S.
+     */
+    public PlaytimeQuery query() {
+        flush();
+        return new PlaytimeQuery(store, this::loadedResident, QUERY_PARALLELISM);
+    }
+
+    /**
+     * Exporta a CSV, en la carpeta reports, a los jugadores que cumplen el filtro
+     */
+    public File exportReport(Predicate<PlaytimeData> filter) throws IOException {
+        File target = timestampedFile("reports", ".csv");
+        query().exportCsv(target, filter, leaderboard::getName);
+        return target;
+    }
+
+    private File timestampedFile(String directoryName, String extension) throws IOException {
+        File directory = new File(legacyDataFile.getParentFile(), directoryName);
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("No se pudo crear el directorio " + directoryName);
+        }
+        LocalDateTime now = LocalDateTime.now();
+        return new File(directory, String.format("playtime-%04d%02d%02d-%02d%02d%02d%s",
+                now.getYear(), now.getMonthValue(), now.getDayOfMonth(), now.getHour(), now.getMinute(), now.getSecond(), extension));
+    }
+
+    /**
+     * Importa un fichero exportado (comprimido o no) por lotes, conservando por mundo el mayor valor.
+     * Los jugadores residentes se actualizan en memoria y pasan por el journal; el resto se escribe
+     * directamente en el almacenamiento, así la memoria usada no depende del tamaño del fichero.
+     *
+     * @return número de jugadores importados
+     */
+    public int importData(File source) throws IOException {
+        List<PlaytimeData> batch = new ArrayList<>(IMPORT_BATCH);
+        int[] imported = new int[1];
+        try (FileInputStream in = new FileInputStream(source)) {
+            PlaytimeJsonCodec.read(in, clock, data -> {
+                batch.add(data);
+                imported[0]++;
+                if (batch.size() >= IMPORT_BATCH) {
+                    importBatch(batch);
+                    batch.clear();
                 }
+            });
+        } catch (IllegalStateException | NumberFormatException e) {
+            throw new IOException("Formato de importación inválido: " + e.getMessage(), e);
+        }
+        importBatch(batch);
+        return imported[0];
+    }
+
+    private void importBatch(List<PlaytimeData> batch) throws IOException {
+        List<PlaytimeData> offline = new ArrayList<>();
+        for (PlaytimeData data : batch) {
+            PlaytimeData resident = loadedResident(data.getPlayerId());
+            if (resident != null) {
+                restoreImported(resident, data);
+                continue;
             }
-        } catch (IOException e) {
-            logger.atWarning().log("Error al cargar los datos de tiempo de juego: " + e.getMessage());
+            PlaytimeData stored = store.load(data.getPlayerId());
+            if (stored != null) {
+                stored.forEachWorld(data::restorePlaytime);
+                stored.forEachActiveWorld(data::restoreActivePlaytime);
+            }
+            offline.add(data);
+        }
+
+        synchronized (storeLock) {
+            store.save(offline);
+            store.force();
+        }
+
+        for (PlaytimeData data : offline) {
+            // Si se ha cargado mientras tanto, llevar también a memoria el valor importado
+            PlaytimeData resident = loadedResident(data.getPlayerId());
+            if (resident != null) {
+                restoreImported(resident, data);
+            }
+            leaderboard.index(data);
         }
     }
 
+    private void restoreImported(PlaytimeData resident, PlaytimeData imported) {
+        imported.forEachWorld((worldUuid, milliseconds) -> {
+            synchronized (resident) {
+                long before = resident.getPlaytime(worldUuid);
+                resident.restorePlaytime(worldUuid, milliseconds);
+                journalSession(resident, worldUuid, resident.getPlaytime(worldUuid) - before);
+            }
+        });
+        imported.forEachActiveWorld(resident::restoreActivePlaytime);
+    }
+
     public String formatTime(long milliseconds) {
         long seconds = milliseconds / 1000;
         long minutes = seconds / 60;
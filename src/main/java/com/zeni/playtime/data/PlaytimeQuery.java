@@ -0,0 +1,212 @@
+package com.zeni.playtime.data;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/**
+ * Consultas sobre todos los jugadores guardados, recorriendo el almacenamiento directamente y sin copiar
+ * mapas. Las particiones del almacenamiento (shards, bloques de la tabla, prefijos en la base de datos)
+ * se reparten con un stream paralelo en un {@link ForkJoinPool} propio, para no ocupar el pool común con E/S.
+ * Cada hilo acumula en su propio resultado y solo se combinan al final: la memoria depende de los hilos,
+ * no del número de jugadores.
+ * <p>
+ * Los jugadores residentes se leen de memoria, más al día que lo guardado. El tiempo de las sesiones
+ * abiertas no se incluye hasta que terminan.
+ */
+public class PlaytimeQuery {
+    private static final int CSV_CHUNK_CHARS = 64 * 1024;
+
+    private final PlaytimeStore store;
+    private final Function<UUID, PlaytimeData> residents; // jugador en memoria ya cargado, o null
+    private final int parallelism;
+
+    /**
+     * Acumula un jugador en el resultado parcial de un hilo
+     */
+    public interface Accumulator<A> {
+        void accept(A result, PlaytimeData player);
+    }
+
+    PlaytimeQuery(PlaytimeStore store, Function<UUID, PlaytimeData> residents, int parallelism) {
+        this.store = store;
+        this.residents = residents;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Reducción paralela: un resultado por partición, combinados de dos en dos
+     */
+    public <A> A collect(Supplier<A> supplier, Accumulator<A> accumulator, BinaryOperator<A> combiner) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            return pool.submit(() -> IntStream.range(0, store.partitionCount())
+                    .parallel()
+                    .mapToObj(partition -> scan(partition, supplier.get(), accumulator))
+                    .reduce(combiner)
+                    .orElseGet(supplier)).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException io) {
+                throw io.getCause();
+            }
+            throw new IOException("Error en la consulta: " + e.getCause(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Consulta interrumpida", e);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Número de jugadores que cumplen el filtro
+     */
+    public long count(Predicate<PlaytimeData> filter) throws IOException {
+        return collect(() -> new long[1], (count, player) -> {
+            if (filter.test(player)) {
+                count[0]++;
+            }
+        }, (left, right) -> {
+            left[0] += right[0];
+            return left;
+        })[0];
+    }
+
+    /**
+     * Totales, por mundo y umbral sobre los jugadores que cumplen el filtro
+     *
+     * @param thresholdMillis tiempo total a partir del cual un jugador cuenta en {@link PlaytimeReport#getPlayersOverThreshold()}
+     */
+    public PlaytimeReport report(Predicate<PlaytimeData> filter, long thresholdMillis) throws IOException {
+        return collect(() -> new PlaytimeReport(thresholdMillis), (report, player) -> {
+            if (filter.test(player)) {
+                report.add(player.snapshot());
+            }
+        }, PlaytimeReport::merge);
+    }
+
+    /**
+     * Exporta a CSV una fila por jugador y mundo ({@code player_id,name,world_id,playtime_ms,active_ms}).
+     * Cada hilo prepara bloques de texto y los vuelca al fichero en cuanto llenan {@value #CSV_CHUNK_CHARS} caracteres.
+     *
+     * @return número de jugadores exportados
+     */
+    public long exportCsv(File target, Predicate<PlaytimeData> filter, Function<UUID, String> names) throws IOException {
+        long[] exported = new long[1];
+        AtomicFiles.write(target, writer -> {
+            Writer out = new BufferedWriter(writer, CSV_CHUNK_CHARS);
+            out.write("player_id,name,world_id,playtime_ms,active_ms\n");
+            exported[0] = collect(() -> new CsvChunk(out), (chunk, player) -> {
+                if (filter.test(player)) {
+                    chunk.append(player, names.apply(player.getPlayerId()));
+                }
+            }, CsvChunk::merge).finish();
+            out.flush();
+        });
+        return exported[0];
+    }
+
+    private <A> A scan(int partition, A result, Accumulator<A> accumulator) {
+        try {
+            store.forEachPlayer(partition, stored -> {
+                PlaytimeData resident = residents.apply(stored.getPlayerId());
+                accumulator.accept(result, resident != null ? resident : stored);
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return result;
+    }
+
+    /**
+     * Texto CSV pendiente de un hilo. El fichero compartido solo se toca al vaciar un bloque entero.
+     */
+    private static final class CsvChunk {
+        private final Writer out;
+        private final StringBuilder text = new StringBuilder(CSV_CHUNK_CHARS + 256);
+        private String[] worldIds = new String[0]; // worldId -> UUID en texto, para no formatearlo en cada fila
+        private long players;
+
+        private CsvChunk(Writer out) {
+            this.out = out;
+        }
+
+        private void append(PlaytimeData player, String name) {
+            PlaytimeData.Snapshot snapshot = player.snapshot();
+            String playerId = player.getPlayerId().toString();
+            int worldCount = WorldRegistry.size();
+            for (int worldId = 0; worldId < worldCount; worldId++) {
+                long playtime = snapshot.getPlaytime(worldId);
+                long active = snapshot.getActivePlaytime(worldId);
+                if (playtime == 0L && active == 0L) {
+                    continue;
+                }
+                text.append(playerId).append(',');
+                appendEscaped(name);
+                text.append(',').append(worldIdText(worldId))
+                        .append(',').append(playtime)
+                        .append(',').append(active).append('\n');
+            }
+            players++;
+            if (text.length() >= CSV_CHUNK_CHARS) {
+                drain();
+            }
+        }
+
+        private String worldIdText(int worldId) {
+            if (worldId >= worldIds.length) {
+                worldIds = Arrays.copyOf(worldIds, WorldRegistry.size());
+            }
+            String value = worldIds[worldId];
+            if (value == null) {
+                value = WorldRegistry.uuidOf(worldId).toString();
+                worldIds[worldId] = value;
+            }
+            return value;
+        }
+
+        private CsvChunk merge(CsvChunk other) {
+            other.drain();
+            players += other.players;
+            return this;
+        }
+
+        private long finish() {
+            drain();
+            return players;
+        }
+
+        private void drain() {
+            if (text.isEmpty()) {
+                return;
+            }
+            try {
+                synchronized (out) {
+                    out.append(text);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            text.setLength(0);
+        }
+
+        private void appendEscaped(String value) {
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+                text.append(value);
+                return;
+            }
+            text.append('"').append(value.replace("\"", "\"\"")).append('"');
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.zeni.playtime.data;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Agregados de una consulta sobre todos los jugadores. Los totales por mundo van en arrays
+ * indexados por el id de {@link WorldRegistry}; cada hilo llena el suyo y se suman al final.
+ */
+public class PlaytimeReport {
+    private final long thresholdMillis;
+    private long players;
+    private long playersOverThreshold;
+    private long totalMillis;
+    private long activeMillis;
+    private long maxMillis;
+    private long[] worldMillis = new long[0];
+    private long[] worldPlayers = new long[0];
+
+    /**
+     * Recibe los agregados de un mundo
+     */
+    public interface WorldTotalConsumer {
+        void accept(UUID worldUuid, long players, long milliseconds);
+    }
+
+    public PlaytimeReport(long thresholdMillis) {
+        this.thresholdMillis = thresholdMillis;
+    }
+
+    void add(PlaytimeData.Snapshot snapshot) {
+        long total = snapshot.getTotalPlaytime();
+        players++;
+        totalMillis += total;
+        activeMillis += snapshot.getTotalActivePlaytime();
+        maxMillis = Math.max(maxMillis, total);
+        if (total >= thresholdMillis) {
+            playersOverThreshold++;
+        }
+
+        int worldCount = WorldRegistry.size();
+        if (worldMillis.length < worldCount) {
+            worldMillis = Arrays.copyOf(worldMillis, worldCount);
+            worldPlayers = Arrays.copyOf(worldPlayers, worldCount);
+        }
+        for (int worldId = 0; worldId < worldCount; worldId++) {
+            long milliseconds = snapshot.getPlaytime(worldId);
+            if (milliseconds != 0L) {
+                worldMillis[worldId] += milliseconds;
+                worldPlayers[worldId]++;
+            }
+        }
+    }
+
+    PlaytimeReport merge(PlaytimeReport other) {
+        players += other.players;
+        playersOverThreshold += other.playersOverThreshold;
+        totalMillis += other.totalMillis;
+        activeMillis += other.activeMillis;
+        maxMillis = Math.max(maxMillis, other.maxMillis);
+        if (worldMillis.length < other.worldMillis.length) {
+            worldMillis = Arrays.copyOf(worldMillis, other.worldMillis.length);
+            worldPlayers = Arrays.copyOf(worldPlayers, other.worldPlayers.length);
+        }
+        for (int worldId = 0; worldId < other.worldMillis.length; worldId++) {
+            worldMillis[worldId] += other.worldMillis[worldId];
+            worldPlayers[worldId] += other.worldPlayers[worldId];
+        }
+        return this;
+    }
+
+    public long getPlayers() {
+        return players;
+    }
+
+    public long getPlayersOverThreshold() {
+        return playersOverThreshold;
+    }
+
+    public long getThresholdMillis() {
+        return thresholdMillis;
+    }
+
+    public long getTotalMillis() {
+        return totalMillis;
+    }
+
+    public long getActiveMillis() {
+        return activeMillis;
+    }
+
+    public long getMaxMillis() {
+        return maxMillis;
+    }
+
+    public long getAverageMillis() {
+        return players > 0 ? totalMillis / players : 0L;
+    }
+
+    /**
+     * Recorre los mundos con tiempo, de más a menos tiempo total
+     */
+    public void forEachWorld(WorldTotalConsumer consumer) {
+        Integer[] order = new Integer[worldMillis.length];
+        for (int worldId = 0; worldId < order.length; worldId++) {
+            order[worldId] = worldId;
+        }
+        Arrays.sort(order, (left, right) -> Long.compare(worldMillis[right], worldMillis[left]));
+        for (int worldId : order) {
+            if (worldPlayers[worldId] > 0) {
+                consumer.accept(WorldRegistry.uuidOf(worldId), worldPlayers[worldId], worldMillis[worldId]);
+            }
+        }
+    }
+}
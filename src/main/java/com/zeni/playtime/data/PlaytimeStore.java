@@ -0,0 +1,133 @@
+package com.zeni.playtime.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Almacenamiento persistente de los totales por mundo de cada jugador.
+ * Las escrituras llegan desde el hilo escritor; las cargas, desde cualquier hilo.
+ */
+public interface PlaytimeStore {
+
+    /**
+     * Recibe los jugadores de uno en uno al recorrer o importar datos
+     */
+    interface PlayerVisitor {
+        void accept(PlaytimeData data) throws IOException;
+    }
+
+    /**
+     * Recibe los nombres guardados de uno en uno
+     */
+    interface NameVisitor {
+        void accept(UUID playerId, String name);
+    }
+
+    /**
+     * Carga un jugador, o null si no tiene datos guardados
+     */
+    PlaytimeData load(UUID playerId);
+
+    /**
+     * Guarda el estado actual de los jugadores indicados, conservando el resto
+     */
+    void save(Collection<PlaytimeData> players) throws IOException;
+
+    /**
+     * Recorre todos los jugadores guardados
+     */
+    void forEachPlayer(PlayerVisitor visitor) throws IOException;
+
+    /**
+     * Número de particiones que se pueden recorrer a la vez desde hilos distintos
+     */
+    default int partitionCount() {
+        return 1;
+    }
+
+    /**
+     * Recorre una sola partición. Cada jugador guardado aparece en exactamente una.
+     */
+    default void forEachPlayer(int partition, PlayerVisitor visitor) throws IOException {
+        forEachPlayer(visitor);
+    }
+
+    /**
+     * Importa en streaming un fichero con el formato antiguo (todos los jugadores en un único JSON).
+     * Por cada mundo se conserva el mayor de los dos valores.
+     */
+    void importLegacy(File legacyFile) throws IOException;
+
+    /**
+     * Almacenamiento compartido con otros nodos: indica si toca volver a leer al jugador.
+     * Quien recibe true se encarga de llamar a {@link #refresh}.
+     */
+    default boolean claimRefresh(UUID playerId) {
+        return false;
+    }
+
+    /**
+     * Suma a la copia en memoria lo que otros nodos han guardado desde la última lectura
+     *
+     * @return true si el jugador ha cambiado
+     */
+    default boolean refresh(PlaytimeData data) throws IOException {
+        return false;
+    }
+
+    /**
+     * Almacenamiento compartido con otros nodos. Sus totales incluyen lo que suman los demás, así que
+     * el journal no se puede reaplicar con la regla del máximo: se suman los deltas de los segmentos
+     * posteriores a {@link #appliedJournalSegment()} y se guardan con {@link #saveJournal}.
+     */
+    default boolean isShared() {
+        return false;
+    }
+
+    /**
+     * Último segmento del journal de este nodo ya sumado al almacenamiento, o -1 si ninguno
+     */
+    default int appliedJournalSegment() {
+        return -1;
+    }
+
+    /**
+     * Suma los deltas del journal (jugador -> id de mundo de {@link WorldRegistry} -> milisegundos) hasta
+     * {@code lastSegment} incluido y guarda el tiempo con actividad de los jugadores indicados, en una sola
+     * transacción que también avanza {@link #appliedJournalSegment()}. Solo para almacenamientos compartidos.
+     */
+    default void saveJournal(Map<UUID, long[]> deltas, int lastSegment, Collection<PlaytimeData> players) throws IOException {
+        throw new UnsupportedOperationException("Solo para almacenamiento compartido");
+    }
+
+    /**
+     * Guarda los nombres de los jugadores junto a sus totales, para que los vean los demás nodos.
+     * Los almacenamientos locales no lo necesitan: los nombres de este servidor ya van en su propio fichero.
+     */
+    default void saveNames(Map<UUID, String> names) throws IOException {
+    }
+
+    /**
+     * Recorre los nombres guardados con {@link #saveNames}
+     */
+    default void forEachName(NameVisitor visitor) throws IOException {
+    }
+
+    /**
+     * El jugador ha salido de memoria; se puede olvidar lo que se sabía de él
+     */
+    default void release(UUID playerId) {
+    }
+
+    /**
+     * Garantiza que lo guardado hasta ahora está en disco
+     */
+    default void force() throws IOException {
+    }
+
+    default void close() {
+    }
+}
@@ -0,0 +1,241 @@
+package com.zeni.playtime.data;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+/**
+ * Índice ordenado de jugadores por tiempo jugado (de mayor a menor), implementado como
+ * un treap con tamaños de subárbol: actualizaciones y rangos en O(log n), top-k en O(k + log n).
+ * Los valores solo crecen: {@link #offer} ignora valores menores que el ya indexado, así la carga
+ * inicial y las actualizaciones en vivo pueden llegar en cualquier orden.
+ * <p>
+ * Indexa a todos los jugadores guardados, así que los nodos no son objetos: viven en arrays primitivos
+ * paralelos y el UUID de cada jugador se busca en una tabla hash abierta de ints. Son unos 48 bytes
+ * por jugador y por índice (40 del nodo y el hueco de la tabla), sin UUIDs ni entradas de mapa en el heap.
+ */
+final class RankedIndex {
+    private static final int NIL = -1;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final SplittableRandom random = new SplittableRandom();
+    private long[] mostBits = new long[INITIAL_CAPACITY];
+    private long[] leastBits = new long[INITIAL_CAPACITY];
+    private long[] playtimes = new long[INITIAL_CAPACITY];
+    private int[] priorities = new int[INITIAL_CAPACITY];
+    private int[] sizes = new int[INITIAL_CAPACITY];
+    private int[] lefts = new int[INITIAL_CAPACITY];
+    private int[] rights = new int[INITIAL_CAPACITY];
+    private int count;
+    private int root = NIL;
+    private int[] slots = new int[INITIAL_CAPACITY * 2]; // nodo + 1 por hueco, 0 si está libre
+    // Resultado de split, para no crear un array por nivel
+    private int splitBefore;
+    private int splitAfter;
+
+    synchronized void offer(UUID playerId, long playtime) {
+        long most = playerId.getMostSignificantBits();
+        long least = playerId.getLeastSignificantBits();
+        int node = find(most, least);
+        if (node != NIL) {
+            if (playtimes[node] >= playtime) {
+                return;
+            }
+            // Se reutiliza el nodo: fuera del árbol, nuevo valor y de vuelta en su posición
+            root = remove(root, node);
+            lefts[node] = NIL;
+            rights[node] = NIL;
+            sizes[node] = 1;
+        } else {
+            node = add(most, least);
+        }
+
+        playtimes[node] = playtime;
+        priorities[node] = random.nextInt();
+        split(root, playtime, most, least);
+        int after = splitAfter;
+        root = merge(merge(splitBefore, node), after);
+    }
+
+    synchronized long get(UUID playerId) {
+        int node = find(playerId.getMostSignificantBits(), playerId.getLeastSignificantBits());
+        return node != NIL ? playtimes[node] : 0L;
+    }
+
+    synchronized int size() {
+        return size(root);
+    }
+
+    /**
+     * Número de jugadores indexados con más tiempo que el dado, sin contar al jugador indicado
+     */
+    synchronized int countAbove(long playtime, UUID excluding) {
+        int above = 0;
+        int node = root;
+        while (node != NIL) {
+            if (playtimes[node] > playtime) {
+                above += size(lefts[node]) + 1;
+                node = rights[node];
+            } else {
+                node = lefts[node];
+            }
+        }
+
+        int excluded = excluding != null ? find(excluding.getMostSignificantBits(), excluding.getLeastSignificantBits()) : NIL;
+        if (excluded != NIL && playtimes[excluded] > playtime) {
+            above--;
+        }
+        return above;
+    }
+
+    /**
+     * Añade a la lista los k primeros jugadores, en orden
+     */
+    synchronized void top(int k, List<LeaderboardEntry> out) {
+        int[] stack = new int[32];
+        int depth = 0;
+        int node = root;
+        int added = 0;
+        while (added < k && (node != NIL || depth > 0)) {
+            while (node != NIL) {
+                if (depth == stack.length) {
+                    stack = Arrays.copyOf(stack, depth * 2);
+                }
+                stack[depth++] = node;
+                node = lefts[node];
+            }
+            node = stack[--depth];
+            out.add(new LeaderboardEntry(new UUID(mostBits[node], leastBits[node]), playtimes[node]));
+            added++;
+            node = rights[node];
+        }
+    }
+
+    // Orden: más tiempo primero; a igualdad, por UUID
+    private boolean before(int node, long playtime, long most, long least) {
+        if (playtimes[node] != playtime) {
+            return playtimes[node] > playtime;
+        }
+        if (mostBits[node] != most) {
+            return mostBits[node] < most;
+        }
+        return leastBits[node] < least;
+    }
+
+    /**
+     * Divide en [nodos antes de la clave, nodos en o después de la clave], en splitBefore y splitAfter
+     */
+    private void split(int node, long playtime, long most, long least) {
+        if (node == NIL) {
+            splitBefore = NIL;
+            splitAfter = NIL;
+            return;
+        }
+        if (before(node, playtime, most, least)) {
+            split(rights[node], playtime, most, least);
+            rights[node] = splitBefore;
+            update(node);
+            splitBefore = node;
+        } else {
+            split(lefts[node], playtime, most, least);
+            lefts[node] = splitAfter;
+            update(node);
+            splitAfter = node;
+        }
+    }
+
+    private int merge(int left, int right) {
+        if (left == NIL) {
+            return right;
+        }
+        if (right == NIL) {
+            return left;
+        }
+        if (priorities[left] > priorities[right]) {
+            rights[left] = merge(rights[left], right);
+            update(left);
+            return left;
+        }
+        lefts[right] = merge(left, lefts[right]);
+        update(right);
+        return right;
+    }
+
+    private int remove(int node, int target) {
+        if (node == NIL) {
+            return NIL;
+        }
+        if (node == target) {
+            return merge(lefts[node], rights[node]);
+        }
+        if (before(target, playtimes[node], mostBits[node], leastBits[node])) {
+            lefts[node] = remove(lefts[node], target);
+        } else {
+            rights[node] = remove(rights[node], target);
+        }
+        update(node);
+        return node;
+    }
+
+    private void update(int node) {
+        sizes[node] = 1 + size(lefts[node]) + size(rights[node]);
+    }
+
+    private int size(int node) {
+        return node != NIL ? sizes[node] : 0;
+    }
+
+    private int find(long most, long least) {
+        int mask = slots.length - 1;
+        for (int slot = hash(most, least) & mask; ; slot = (slot + 1) & mask) {
+            int node = slots[slot] - 1;
+            if (node == NIL || (mostBits[node] == most && leastBits[node] == least)) {
+                return node;
+            }
+        }
+    }
+
+    private int add(long most, long least) {
+        if (count == mostBits.length) {
+            int capacity = count * 2;
+            mostBits = Arrays.copyOf(mostBits, capacity);
+            leastBits = Arrays.copyOf(leastBits, capacity);
+            playtimes = Arrays.copyOf(playtimes, capacity);
+            priorities = Arrays.copyOf(priorities, capacity);
+            sizes = Arrays.copyOf(sizes, capacity);
+            lefts = Arrays.copyOf(lefts, capacity);
+            rights = Arrays.copyOf(rights, capacity);
+        }
+        int node = count++;
+        mostBits[node] = most;
+        leastBits[node] = least;
+        sizes[node] = 1;
+        lefts[node] = NIL;
+        rights[node] = NIL;
+
+        // Tabla al 50% como mucho
+        if (count * 2 > slots.length) {
+            slots = new int[slots.length * 2];
+            for (int existing = 0; existing < node; existing++) {
+                place(existing);
+            }
+        }
+        place(node);
+        return node;
+    }
+
+    private void place(int node) {
+        int mask = slots.length - 1;
+        int slot = hash(mostBits[node], leastBits[node]) & mask;
+        while (slots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = node + 1;
+    }
+
+    private static int hash(long most, long least) {
+        long mixed = (most ^ least) * 0x9E3779B97F4A7C15L;
+        return (int) (mixed ^ (mixed >>> 32));
+    }
+}
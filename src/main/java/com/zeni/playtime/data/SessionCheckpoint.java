@@ -0,0 +1,121 @@
+package com.zeni.playtime.data;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.UUID;
+
+/**
+ * Punto de control de las sesiones abiertas, para no perder el tiempo en curso si el proceso
+ * muere sin pasar por el cierre. Cada registro guarda (jugador, mundo, total guardado del mundo,
+ * tiempo transcurrido de la sesión, inicio de pared) en 56 bytes; el fichero se reescribe entero
+ * y solo contiene a los jugadores con sesión abierta.
+ * <p>
+ * Al arrancar, cada registro se aplica como {@code total + transcurrido} con la misma regla de máximo
+ * que el journal: si la sesión llegó a cerrarse después del punto de control, el total ya es mayor
+ * y el registro no cambia nada.
+ */
+final class SessionCheckpoint {
+    static final int RECORD_SIZE = 56;
+    private static final int MAGIC = 0x50544331; // "PTC1"
+
+    private final File file;
+    private final HytaleLogger logger;
+
+    interface SessionConsumer {
+        void accept(UUID playerId, UUID worldUuid, long savedMillis, long elapsedMillis, long startWallMillis);
+    }
+
+    SessionCheckpoint(File file, HytaleLogger logger) {
+        this.file = file;
+        this.logger = logger;
+    }
+
+    /**
+     * Reescribe el punto de control con las sesiones abiertas de los jugadores dados.
+     * Sin sesiones abiertas, el fichero se elimina.
+     *
+     * @return número de sesiones escritas
+     */
+    int write(Collection<PlaytimeData> players, long nowMonotonic) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8 + RECORD_SIZE * 16);
+        buffer.putInt(MAGIC);
+        buffer.putInt(0);
+        int sessions = 0;
+        int worldCount = WorldRegistry.size();
+        for (PlaytimeData data : players) {
+            PlaytimeData.Snapshot snapshot = data.snapshot();
+            if (snapshot.getActiveSessionCount() == 0) {
+                continue;
+            }
+            for (int worldId = 0; worldId < worldCount; worldId++) {
+                if (!snapshot.hasActiveSession(worldId)) {
+                    continue;
+                }
+                if (buffer.remaining() < RECORD_SIZE) {
+                    ByteBuffer grown = ByteBuffer.allocate(buffer.capacity() * 2);
+                    buffer.flip();
+                    grown.put(buffer);
+                    buffer = grown;
+                }
+                UUID worldUuid = WorldRegistry.uuidOf(worldId);
+                buffer.putLong(data.getPlayerId().getMostSignificantBits());
+                buffer.putLong(data.getPlayerId().getLeastSignificantBits());
+                buffer.putLong(worldUuid.getMostSignificantBits());
+                buffer.putLong(worldUuid.getLeastSignificantBits());
+                buffer.putLong(snapshot.getPlaytime(worldId));
+                buffer.putLong(Math.max(0L, nowMonotonic - snapshot.getSessionStart(worldId)));
+                buffer.putLong(snapshot.getSessionStartWallTime(worldId));
+                sessions++;
+            }
+        }
+
+        if (sessions == 0) {
+            delete();
+            return 0;
+        }
+
+        buffer.putInt(4, sessions);
+        ByteBuffer content = buffer;
+        AtomicFiles.writeStream(file, out -> out.write(content.array(), 0, content.position()));
+        return sessions;
+    }
+
+    /**
+     * Lee las sesiones del último punto de control. Un fichero dañado se ignora.
+     */
+    void read(SessionConsumer consumer) {
+        if (!file.exists()) {
+            return;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Formato desconocido");
+            }
+            int sessions = in.readInt();
+            for (int i = 0; i < sessions; i++) {
+                UUID playerId = new UUID(in.readLong(), in.readLong());
+                UUID worldUuid = new UUID(in.readLong(), in.readLong());
+                consumer.accept(playerId, worldUuid, in.readLong(), in.readLong(), in.readLong());
+            }
+        } catch (EOFException e) {
+            logger.atWarning().log("Punto de control de sesiones incompleto");
+        } catch (IOException e) {
+            logger.atWarning().log("Error al leer el punto de control de sesiones: " + e.getMessage());
+        }
+    }
+
+    void delete() {
+        if (file.exists() && !file.delete()) {
+            logger.atWarning().log("No se pudo eliminar el punto de control de sesiones");
+        }
+    }
+}
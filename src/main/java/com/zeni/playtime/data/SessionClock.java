@@ -0,0 +1,33 @@
+package com.zeni.playtime.data;
+
+/**
+ * Reloj de las sesiones. Las duraciones se miden con un reloj monótono ({@link System#nanoTime()}),
+ * inmune a saltos de NTP o cambios manuales de hora; el reloj de pared solo se usa para
+ * anclar las sesiones a una fecha al informar.
+ * Es inyectable para que pruebas y benchmarks controlen el tiempo.
+ */
+public interface SessionClock {
+
+    SessionClock SYSTEM = new SessionClock() {
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+    };
+
+    long nanoTime();
+
+    long currentTimeMillis();
+
+    /**
+     * Milisegundos monótonos: solo sirven para restar entre sí, no son una fecha
+     */
+    default long monotonicMillis() {
+        return nanoTime() / 1_000_000L;
+    }
+}
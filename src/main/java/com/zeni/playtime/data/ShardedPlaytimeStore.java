@@ -0,0 +1,221 @@
+package com.zeni.playtime.data;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.hypixel.hytale.logger.HytaleLogger;
+import com.zeni.playtime.metrics.PlaytimeMetrics;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Almacenamiento de los datos de tiempo de juego repartido en ficheros por prefijo de UUID.
+ * Cada shard contiene los jugadores cuyo UUID empieza por el mismo byte, de modo que cargar
+ * o guardar un jugador solo toca su shard. Los shards se leen y escriben en streaming,
+ * un jugador cada vez.
+ */
+public class ShardedPlaytimeStore implements PlaytimeStore {
+    static final int SHARD_COUNT = 256;
+    private static final PlaytimeJsonCodec CODEC = new PlaytimeJsonCodec(true, false);
+
+    private final File directory;
+    private final SessionClock clock;
+    private final HytaleLogger logger;
+
+    public ShardedPlaytimeStore(File directory, SessionClock clock, HytaleLogger logger) {
+        this.directory = directory;
+        this.clock = clock;
+        this.logger = logger;
+
+        if (!directory.exists() && !directory.mkdirs()) {
+            logger.atWarning().log("No se pudo crear el directorio de shards");
+        }
+    }
+
+    public static int shardOf(UUID playerId) {
+        return (int) (playerId.getMostSignificantBits() >>> 56) & (SHARD_COUNT - 1);
+    }
+
+    @Override
+    public PlaytimeData load(UUID playerId) {
+        File file = shardFile(shardOf(playerId));
+        if (!file.exists()) {
+            return null;
+        }
+
+        PlaytimeMetrics.BYTES_READ.add(file.length());
+        String key = playerId.toString();
+        try (JsonReader json = new JsonReader(PlaytimeJsonCodec.openReader(new FileInputStream(file)))) {
+            if (json.peek() == JsonToken.END_DOCUMENT) {
+                return null;
+            }
+            json.beginObject();
+            while (json.hasNext()) {
+                if (json.nextName().equals(key)) {
+                    return PlaytimeJsonCodec.readPlayer(json, playerId, clock);
+                }
+                json.skipValue();
+            }
+        } catch (IOException | IllegalStateException | NumberFormatException e) {
+            PlaytimeMetrics.recordError("store.load");
+            logger.atWarning().log("Error al leer el shard del jugador " + playerId + ": " + e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Agrupa a los jugadores por shard y reescribe solo los shards afectados
+     */
+    @Override
+    public void save(Collection<PlaytimeData> players) throws IOException {
+        for (Map.Entry<Integer, Map<String, PlaytimeData>> entry : groupByShard(players).entrySet()) {
+            writeShard(entry.getKey(), entry.getValue(), false);
+        }
+    }
+
+    /**
+     * Recorre todos los jugadores guardados, shard a shard y uno a uno
+     */
+    @Override
+    public void forEachPlayer(PlayerVisitor visitor) throws IOException {
+        for (int shard = 0; shard < SHARD_COUNT; shard++) {
+            forEachPlayer(shard, visitor);
+        }
+    }
+
+    /**
+     * Cada shard es una partición
+     */
+    @Override
+    public int partitionCount() {
+        return SHARD_COUNT;
+    }
+
+    @Override
+    public void forEachPlayer(int shard, PlayerVisitor visitor) throws IOException {
+        File file = shardFile(shard);
+        if (file.exists()) {
+            PlaytimeMetrics.BYTES_READ.add(file.length());
+            try (FileInputStream in = new FileInputStream(file)) {
+                PlaytimeJsonCodec.read(in, clock, visitor);
+            }
+        }
+    }
+
+    /**
+     * Reparte en streaming un fichero con el formato antiguo: cada jugador se escribe primero en un
+     * temporal de su shard, y después cada temporal (una 256ª parte de los datos) se funde con el shard
+     */
+    @Override
+    public void importLegacy(File legacyFile) throws IOException {
+        Map<Integer, JsonWriter> writers = new HashMap<>();
+        try (FileInputStream in = new FileInputStream(legacyFile)) {
+            PlaytimeJsonCodec.read(in, clock, data -> {
+                int shard = shardOf(data.getPlayerId());
+                JsonWriter out = writers.get(shard);
+                if (out == null) {
+                    out = CODEC.newJsonWriter(new BufferedWriter(new OutputStreamWriter(
+                            new FileOutputStream(importFile(shard)), StandardCharsets.UTF_8)));
+                    out.beginObject();
+                    writers.put(shard, out);
+                }
+                PlaytimeJsonCodec.writePlayer(out, data);
+            });
+        } finally {
+            for (JsonWriter out : writers.values()) {
+                try {
+                    out.endObject();
+                    out.close();
+                } catch (IOException | IllegalStateException e) {
+                    logger.atWarning().log("Error al cerrar un temporal de importación: " + e.getMessage());
+                }
+            }
+        }
+
+        for (int shard : writers.keySet()) {
+            File imported = importFile(shard);
+            Map<String, PlaytimeData> players = new HashMap<>();
+            try (FileInputStream in = new FileInputStream(imported)) {
+                PlaytimeJsonCodec.read(in, clock, data -> players.put(data.getPlayerId().toString(), data));
+            }
+            writeShard(shard, players, true);
+            if (!imported.delete()) {
+                logger.atWarning().log("No se pudo eliminar el temporal de importación " + imported.getName());
+            }
+        }
+    }
+
+    /**
+     * Reescribe un shard copiando en streaming los jugadores que no cambian y sustituyendo los indicados.
+     * Con keepMax, cada mundo sustituido conserva el mayor entre el valor guardado y el nuevo.
+     */
+    private void writeShard(int shard, Map<String, PlaytimeData> replacing, boolean keepMax) throws IOException {
+        File target = shardFile(shard);
+        AtomicFiles.write(target, writer -> {
+            JsonWriter out = CODEC.newJsonWriter(writer);
+            out.beginObject();
+            copyShardExcept(target, replacing, keepMax, out);
+            for (PlaytimeData data : replacing.values()) {
+                PlaytimeJsonCodec.writePlayer(out, data);
+            }
+            out.endObject();
+            out.flush();
+        });
+    }
+
+    private void copyShardExcept(File shardFile, Map<String, PlaytimeData> replacing, boolean keepMax, JsonWriter out) throws IOException {
+        if (!shardFile.exists()) {
+            return;
+        }
+
+        try (JsonReader json = new JsonReader(PlaytimeJsonCodec.openReader(new FileInputStream(shardFile)))) {
+            if (json.peek() == JsonToken.END_DOCUMENT) {
+                return;
+            }
+            json.beginObject();
+            while (json.hasNext()) {
+                String key = json.nextName();
+                PlaytimeData replacement = replacing.get(key);
+                if (replacement == null) {
+                    PlaytimeJsonCodec.copyPlayer(json, key, out);
+                } else if (keepMax) {
+                    PlaytimeData stored = PlaytimeJsonCodec.readPlayer(json, replacement.getPlayerId(), clock);
+                    stored.forEachWorld(replacement::restorePlaytime);
+                    stored.forEachActiveWorld(replacement::restoreActivePlaytime);
+                } else {
+                    json.skipValue();
+                }
+            }
+            json.endObject();
+        } catch (IllegalStateException | NumberFormatException e) {
+            // No reescribir sobre un shard que no se entiende: se perderían sus jugadores
+            throw new IOException("Shard dañado " + shardFile.getName() + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static Map<Integer, Map<String, PlaytimeData>> groupByShard(Collection<PlaytimeData> players) {
+        Map<Integer, Map<String, PlaytimeData>> byShard = new HashMap<>();
+        for (PlaytimeData data : players) {
+            byShard.computeIfAbsent(shardOf(data.getPlayerId()), k -> new HashMap<>()).put(data.getPlayerId().toString(), data);
+        }
+        return byShard;
+    }
+
+    private File shardFile(int shard) {
+        return new File(directory, String.format("%02x.json", shard));
+    }
+
+    private File importFile(int shard) {
+        return new File(directory, String.format("%02x.json.import", shard));
+    }
+}
@@ -0,0 +1,58 @@
+package com.zeni.playtime.data;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registro compartido que asigna a cada mundo un identificador entero pequeño y estable
+ * durante la ejecución, para indexar arrays primitivos en lugar de mapas por UUID.
+ */
+public final class WorldRegistry {
+    private static final Map<UUID, Integer> IDS = new ConcurrentHashMap<>();
+    private static volatile UUID[] worlds = new UUID[0];
+
+    private WorldRegistry() {
+    }
+
+    /**
+     * Devuelve el id del mundo, registrándolo si es la primera vez que aparece
+     */
+    public static int idOf(UUID worldUuid) {
+        Integer id = IDS.get(worldUuid);
+        return id != null ? id : register(worldUuid);
+    }
+
+    /**
+     * Devuelve el id del mundo o -1 si nunca se ha registrado
+     */
+    public static int find(UUID worldUuid) {
+        Integer id = IDS.get(worldUuid);
+        return id != null ? id : -1;
+    }
+
+    public static UUID uuidOf(int worldId) {
+        return worlds[worldId];
+    }
+
+    public static int size() {
+        return worlds.length;
+    }
+
+    private static synchronized int register(UUID worldUuid) {
+        Integer existing = IDS.get(worldUuid);
+        if (existing != null) {
+            return existing;
+        }
+
+        UUID[] current = worlds;
+        int id = current.length;
+        UUID[] grown = Arrays.copyOf(current, id + 1);
+        grown[id] = worldUuid;
+        // Publicar el array antes que el id para que uuidOf nunca vea un id sin mundo
+        worlds = grown;
+        IDS.put(worldUuid, id);
+        return id;
+    }
+}
@@ -0,0 +1,78 @@
+package com.zeni.playtime.events;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Cola circular acotada sin locks, con varios productores y un solo consumidor.
+ * Cada posición lleva un número de secuencia: el productor reserva una posición con un CAS sobre
+ * la cola y la publica al escribir la secuencia; el consumidor solo avanza por posiciones publicadas.
+ * Si está llena, {@link #offer} devuelve false en vez de esperar.
+ */
+final class EventRing {
+    private final AtomicReferenceArray<SessionEvent> slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private long head; // solo lo toca el consumidor
+
+    EventRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+
+    boolean offer(SessionEvent event) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) (position & mask);
+            long diff = sequences.getAcquire(index) - position;
+            if (diff == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots.setPlain(index, event);
+                    sequences.setRelease(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (diff < 0) {
+                // La posición aún guarda un evento de la vuelta anterior: llena
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Pasa a la lista hasta {@code max} eventos publicados, en orden. Solo desde el consumidor.
+     */
+    int drain(List<SessionEvent> out, int max) {
+        int drained = 0;
+        while (drained < max) {
+            int index = (int) (head & mask);
+            if (sequences.getAcquire(index) != head + 1) {
+                break;
+            }
+            out.add(slots.getPlain(index));
+            slots.setPlain(index, null);
+            sequences.setRelease(index, head + mask + 1);
+            head++;
+            drained++;
+        }
+        return drained;
+    }
+
+    boolean isEmpty() {
+        return sequences.getAcquire((int) (head & mask)) != head + 1;
+    }
+}
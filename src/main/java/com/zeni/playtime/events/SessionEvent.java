@@ -0,0 +1,38 @@
+package com.zeni.playtime.events;
+
+import java.util.UUID;
+
+/**
+ * Cambio en el tiempo de juego de un jugador. Los instantes son de reloj de pared.
+ */
+public sealed interface SessionEvent {
+
+    UUID playerId();
+
+    long atMillis();
+
+    record SessionStarted(UUID playerId, UUID worldUuid, long atMillis) implements SessionEvent {
+    }
+
+    record SessionEnded(UUID playerId, UUID worldUuid, long durationMillis, long atMillis) implements SessionEvent {
+    }
+
+    record WorldChanged(UUID playerId, UUID fromWorld, UUID toWorld, long atMillis) implements SessionEvent {
+    }
+
+    /**
+     * El jugador ha alcanzado un umbral de tiempo
+     *
+     * @param worldUuid mundo del umbral, o null si es sobre el tiempo total
+     */
+    record MilestoneReached(UUID playerId, UUID worldUuid, long thresholdMillis, long atMillis) implements SessionEvent {
+    }
+
+    /**
+     * Tiempo sumado fuera de una sesión (administración, importación, otros nodos)
+     *
+     * @param worldUuid mundo afectado, o null si pueden ser varios
+     */
+    record PlaytimeAdjusted(UUID playerId, UUID worldUuid, long deltaMillis, long atMillis) implements SessionEvent {
+    }
+}
@@ -0,0 +1,192 @@
+package com.zeni.playtime.events;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+import com.zeni.playtime.metrics.PlaytimeMetrics;
+import com.zeni.playtime.scheduler.PlaytimeScheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Flujo de eventos de sesión. Cada suscriptor tiene su propia {@link EventRing} acotada y un hilo virtual
+ * que la vacía por lotes; publicar nunca bloquea ni espera a un suscriptor lento. Si la cola de un suscriptor
+ * está llena, el evento se descarta solo para él y se cuenta.
+ */
+public class SessionEventBus {
+    private static final int MAX_BATCH = 256;
+    // Espera máxima dormido: cubre un despertar perdido sin gastar CPU
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long CLOSE_TIMEOUT_MILLIS = 5_000L;
+
+    private final PlaytimeScheduler scheduler;
+    private final HytaleLogger logger;
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final LongAdder published = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * Recibe un lote de eventos en el hilo del suscriptor. La lista se reutiliza: no guardarla.
+     */
+    public interface SessionEventConsumer {
+        void accept(List<SessionEvent> batch);
+    }
+
+    public SessionEventBus(PlaytimeScheduler scheduler, HytaleLogger logger) {
+        this.scheduler = scheduler;
+        this.logger = logger;
+    }
+
+    /**
+     * Registra un suscriptor con su propia cola de {@code capacity} eventos y su propio hilo
+     */
+    public Subscription subscribe(String name, int capacity, SessionEventConsumer consumer) {
+        Subscription subscription = new Subscription(name, new EventRing(capacity), consumer);
+        subscriptions.add(subscription);
+        subscription.start();
+        return subscription;
+    }
+
+    /**
+     * Entrega el evento a la cola de cada suscriptor. No bloquea.
+     */
+    public void publish(SessionEvent event) {
+        published.increment();
+        for (Subscription subscription : subscriptions) {
+            subscription.offer(event);
+        }
+    }
+
+    /**
+     * Publica un lote de eventos: cada suscriptor se despierta una sola vez para todo el lote
+     */
+    public void publishAll(List<SessionEvent> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        published.add(batch.size());
+        for (Subscription subscription : subscriptions) {
+            subscription.offerAll(batch);
+        }
+    }
+
+    public long getPublishedCount() {
+        return published.sum();
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * Detiene a todos los suscriptores tras entregar lo que ya estaba en sus colas
+     */
+    public void close() {
+        for (Subscription subscription : subscriptions) {
+            subscription.close();
+        }
+    }
+
+    public final class Subscription {
+        private final String name;
+        private final EventRing ring;
+        private final SessionEventConsumer consumer;
+        private final LongAdder droppedEvents = new LongAdder();
+        private volatile boolean running = true;
+        private volatile boolean parked;
+        private Thread thread;
+
+        private Subscription(String name, EventRing ring, SessionEventConsumer consumer) {
+            this.name = name;
+            this.ring = ring;
+            this.consumer = consumer;
+        }
+
+        private void start() {
+            thread = scheduler.startWorker("playtime-events-" + name, this::run);
+        }
+
+        private void offer(SessionEvent event) {
+            if (!running || !ring.offer(event)) {
+                droppedEvents.increment();
+                dropped.increment();
+                return;
+            }
+            if (parked) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        private void offerAll(List<SessionEvent> batch) {
+            int rejected = 0;
+            boolean woken = false;
+            for (SessionEvent event : batch) {
+                if (!running || !ring.offer(event)) {
+                    rejected++;
+                } else if (!woken && parked) {
+                    // Despertar en cuanto hay algo: un lote mayor que la cola se va vaciando mientras se llena
+                    LockSupport.unpark(thread);
+                    woken = true;
+                }
+            }
+            if (rejected > 0) {
+                droppedEvents.add(rejected);
+                dropped.add(rejected);
+            }
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getDroppedCount() {
+            return droppedEvents.sum();
+        }
+
+        /**
+         * Deja de recibir eventos, entrega los pendientes y espera a que termine su hilo
+         */
+        public void close() {
+            subscriptions.remove(this);
+            running = false;
+            LockSupport.unpark(thread);
+            try {
+                thread.join(CLOSE_TIMEOUT_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void run() {
+            List<SessionEvent> batch = new ArrayList<>(MAX_BATCH);
+            while (true) {
+                batch.clear();
+                if (ring.drain(batch, MAX_BATCH) > 0) {
+                    deliver(batch);
+                    continue;
+                }
+                if (!running) {
+                    return;
+                }
+                // Publicar el estado antes de la última comprobación: un productor que no lo vea ya ha dejado el evento en la cola
+                parked = true;
+                if (ring.isEmpty() && running) {
+                    LockSupport.parkNanos(this, MAX_PARK_NANOS);
+                }
+                parked = false;
+            }
+        }
+
+        private void deliver(List<SessionEvent> batch) {
+            try {
+                consumer.accept(batch);
+            } catch (RuntimeException e) {
+                PlaytimeMetrics.recordError("events." + name);
+                logger.atWarning().log("Error en el suscriptor de eventos " + name + ": " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.zeni.playtime.hud;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rueda de tiempo (hashed timing wheel) que despierta cada HUD justo cuando su texto va a cambiar.
+ * Cada avance solo procesa la ranura actual, así el coste depende de los cambios reales de texto
+ * y no del número de HUDs abiertos.
+ * Reprogramar un HUD invalida su entrada anterior, que se descarta al llegar a su ranura.
+ */
+public class HudTimingWheel {
+    private static final int SLOT_COUNT = 512;
+    private static final int SLOT_MASK = SLOT_COUNT - 1;
+
+    private final long tickMillis;
+    private final List<List<Entry>> slots;
+    private final long startedAt;
+    private long currentTick;
+
+    private static final class Entry {
+        final PlaytimeHud hud;
+        final long generation;
+        long rounds;
+
+        Entry(PlaytimeHud hud, long generation, long rounds) {
+            this.hud = hud;
+            this.generation = generation;
+            this.rounds = rounds;
+        }
+    }
+
+    public HudTimingWheel(long tickMillis, long now) {
+        this.tickMillis = tickMillis;
+        this.slots = new ArrayList<>(SLOT_COUNT);
+        for (int i = 0; i < SLOT_COUNT; i++) {
+            slots.add(new ArrayList<>());
+        }
+        this.startedAt = now;
+    }
+
+    /**
+     * Programa el HUD para el instante dado, sustituyendo cualquier programación anterior.
+     * Un deadline ya pasado vence en el siguiente tick; Long.MAX_VALUE solo cancela
+     * (el texto no cambiará hasta una nueva sesión).
+     */
+    public synchronized void schedule(PlaytimeHud hud, long deadline) {
+        long generation = hud.nextScheduleGeneration();
+        if (deadline == Long.MAX_VALUE) {
+            return;
+        }
+
+        // Redondear hacia arriba para no despertar antes de que cambie el texto
+        long deadlineTick = deadline <= startedAt
+                ? currentTick + 1
+                : Math.max(currentTick + 1, (deadline - startedAt + tickMillis - 1) / tickMillis);
+        long ticksAway = deadlineTick - currentTick;
+        slots.get((int) (deadlineTick & SLOT_MASK)).add(new Entry(hud, generation, (ticksAway - 1) / SLOT_COUNT));
+    }
+
+    public synchronized void cancel(PlaytimeHud hud) {
+        hud.nextScheduleGeneration();
+    }
+
+    /**
+     * Avanza la rueda hasta el instante dado y devuelve los HUDs vencidos en el orden en que vencen.
+     */
+    public synchronized List<PlaytimeHud> advance(long now, List<PlaytimeHud> due) {
+        long targetTick = (now - startedAt) / tickMillis;
+        while (currentTick < targetTick) {
+            currentTick++;
+            List<Entry> slot = slots.get((int) (currentTick & SLOT_MASK));
+            int kept = 0;
+            for (int i = 0; i < slot.size(); i++) {
+                Entry entry = slot.get(i);
+                if (!entry.hud.isScheduleGeneration(entry.generation)) {
+                    continue;
+                }
+                if (entry.rounds > 0) {
+                    entry.rounds--;
+                    slot.set(kept++, entry);
+                } else {
+                    due.add(entry.hud);
+                }
+            }
+            slot.subList(kept, slot.size()).clear();
+        }
+        return due;
+    }
+}
@@ -0,0 +1,106 @@
+package com.zeni.playtime.hud;
+
+import com.hypixel.hytale.server.core.universe.world.World;
+import com.zeni.playtime.metrics.PlaytimeMetrics;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Agrupa los textos de HUD que cambian en un tick y los envía en bloque,
+ * un lote por mundo ejecutado en el hilo de ese mundo.
+ * submit/flush se llaman solo desde el hilo del scheduler de HUDs.
+ */
+public class HudUpdateDispatcher {
+    private final Map<World, List<PendingUpdate>> pendingByWorld;
+    private final List<PendingUpdate> pendingWithoutWorld;
+    private final LongAdder totalSent;
+    private final LongAdder totalSkipped;
+    private int tickSent;
+    private volatile int lastTickSent;
+    private volatile int lastTickSkipped;
+
+    private record PendingUpdate(PlaytimeHud hud, String text) {
+    }
+
+    public HudUpdateDispatcher() {
+        this.pendingByWorld = new HashMap<>();
+        this.pendingWithoutWorld = new ArrayList<>();
+        this.totalSent = new LongAdder();
+        this.totalSkipped = new LongAdder();
+    }
+
+    /**
+     * Añade al lote del tick el texto nuevo de un HUD
+     */
+    public void submit(PlaytimeHud hud, String text) {
+        PendingUpdate update = new PendingUpdate(hud, text);
+        World world = hud.getWorld();
+        if (world == null) {
+            pendingWithoutWorld.add(update);
+        } else {
+            pendingByWorld.computeIfAbsent(world, w -> new ArrayList<>()).add(update);
+        }
+        tickSent++;
+    }
+
+    /**
+     * Envía los lotes pendientes y cierra las estadísticas del tick.
+     *
+     * @param activeHuds HUDs abiertos; los que no han cambiado cuentan como omitidos
+     */
+    public void flush(int activeHuds) {
+        for (Map.Entry<World, List<PendingUpdate>> entry : pendingByWorld.entrySet()) {
+            List<PendingUpdate> batch = entry.getValue();
+            try {
+                entry.getKey().execute(() -> send(batch));
+            } catch (Exception e) {
+                // El mundo ya no acepta tareas (descargándose); enviar desde este hilo
+                PlaytimeMetrics.recordError("hud.dispatch");
+                send(batch);
+            }
+        }
+        pendingByWorld.clear();
+
+        if (!pendingWithoutWorld.isEmpty()) {
+            send(pendingWithoutWorld);
+            pendingWithoutWorld.clear();
+        }
+
+        int skipped = Math.max(0, activeHuds - tickSent);
+        lastTickSent = tickSent;
+        lastTickSkipped = skipped;
+        totalSent.add(tickSent);
+        totalSkipped.add(skipped);
+        tickSent = 0;
+    }
+
+    public int getLastTickSent() {
+        return lastTickSent;
+    }
+
+    public int getLastTickSkipped() {
+        return lastTickSkipped;
+    }
+
+    public long getTotalSent() {
+        return totalSent.sum();
+    }
+
+    public long getTotalSkipped() {
+        return totalSkipped.sum();
+    }
+
+    private static void send(List<PendingUpdate> batch) {
+        for (PendingUpdate update : batch) {
+            try {
+                update.hud().updateText(update.text());
+            } catch (Exception e) {
+                PlaytimeMetrics.recordError("hud.send");
+            }
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.zeni.playtime.hud;
+
+/**
+ * Formato del tiempo jugado en el HUD sin String.format ni objetos intermedios.
+ */
+public final class PlaytimeFormatter {
+    private static final long SECOND = 1000L;
+    private static final long MINUTE = 60 * SECOND;
+    private static final long DAY = 24 * 60 * MINUTE;
+
+    private PlaytimeFormatter() {
+    }
+
+    /**
+     * Escribe el tiempo en el buffer con el formato del HUD ("1d 2h 3m", "2h 3m 4s", "3m 4s", "4s")
+     */
+    public static void appendHud(StringBuilder out, long milliseconds) {
+        long seconds = milliseconds / 1000;
+        long minutes = seconds / 60;
+        long hours = minutes / 60;
+        long days = hours / 24;
+
+        if (days > 0) {
+            out.append(days).append("d ").append(hours % 24).append("h ").append(minutes % 60).append('m');
+        } else if (hours > 0) {
+            out.append(hours).append("h ").append(minutes % 60).append("m ").append(seconds % 60).append('s');
+        } else if (minutes > 0) {
+            out.append(minutes).append("m ").append(seconds % 60).append('s');
+        } else {
+            out.append(seconds).append('s');
+        }
+    }
+
+    /**
+     * Unidad mínima visible en el HUD para ese tiempo: minutos a partir de un día, segundos antes
+     */
+    public static long displayUnit(long milliseconds) {
+        return milliseconds >= DAY ? MINUTE : SECOND;
+    }
+
+    /**
+     * Primer tiempo jugado, posterior al dado, en el que el texto del HUD cambia
+     */
+    public static long nextChange(long milliseconds) {
+        if (milliseconds < 0) {
+            return 0L;
+        }
+        long unit = displayUnit(milliseconds);
+        return (milliseconds / unit + 1) * unit;
+    }
+}
@@ -4,8 +4,10 @@ import com.hypixel.hytale.server.core.Message;
 import com.hypixel.hytale.server.core.entity.entities.player.hud.CustomUIHud;
 import com.hypixel.hytale.server.core.ui.builder.UICommandBuilder;
 import com.hypixel.hytale.server.core.universe.PlayerRef;
+import com.hypixel.hytale.server.core.universe.world.World;
 import com.zeni.playtime.data.PlaytimeData;
 import com.zeni.playtime.data.PlaytimeManager;
+import com.zeni.playtime.metrics.PlaytimeMetrics;
 
 import javax.annotation.Nonnull;
 import java.util.UUID;
@@ -15,34 +17,110 @@ public class PlaytimeHud extends CustomUIHud {
     private final PlaytimeManager playtimeManager;
     private String currentPlaytimeText = "0h 0m 0s";
     private final UUID playerId;
+    private final StringBuilder textBuffer = new StringBuilder(16);
+
+    // Tiempo jugado en el instante 'now' (ms monótonos de SessionClock) = baseOffset + activeSessions * now
+    private long baseOffset;
+    private int activeSessions;
+    // Tiempo jugado a partir del cual el texto mostrado cambia
+    private long nextChangeAt;
+    // Generación de la programación vigente en la rueda de tiempo
+    private volatile long scheduleGeneration;
+    // Mundo en cuyo hilo se envían las actualizaciones agrupadas
+    private volatile World world;
 
     public PlaytimeHud(@Nonnull PlayerRef playerRef, @Nonnull PlaytimeManager playtimeManager) {
         super(playerRef);
         this.playerId = playerRef.getUuid();
         this.playtimeManager = playtimeManager;
-        this.currentPlaytimeText = formatPlaytime(this.playtimeManager.getPlayerData(this.playerId).getTotalPlaytime());
+        refreshSessionState();
+        this.currentPlaytimeText = formatPlaytime(playtimeAt(playtimeManager.getClock().monotonicMillis()));
+    }
+
+    /**
+     * Relee el total y las sesiones activas del jugador. Se llama cuando empieza o termina una sesión.
+     */
+    public synchronized void refreshSessionState() {
+        PlaytimeData.Snapshot snapshot = playtimeManager.peekPlayerData(playerId).snapshot();
+        activeSessions = snapshot.getActiveSessionCount();
+        baseOffset = snapshot.getTotalPlaytime() - snapshot.getActiveSessionStartSum();
+        nextChangeAt = Long.MIN_VALUE;
     }
 
     public void updatePlaytime() {
-        try {
-            PlaytimeData playerData = playtimeManager.getPlayerData(playerId);
+        tick(playtimeManager.getClock().monotonicMillis());
+    }
 
-            long totalPlaytime = playerData.getTotalPlaytime();
+    /**
+     * Actualiza el texto si la unidad visible ha cambiado. Sin cambio no formatea ni envía nada.
+     *
+     * @return true si se ha enviado un texto nuevo
+     */
+    public boolean tick(long now) {
+        String newText = pollText(now);
+        if (newText == null) {
+            return false;
+        }
 
-            for (UUID worldUuid : playerData.getWorldPlaytime().keySet()) {
-                if (playerData.hasActiveSession(worldUuid)) {
-                    totalPlaytime += playerData.getCurrentSessionTime(worldUuid);
-                }
-            }
+        try {
+            updateText(newText);
+            return true;
+        } catch (Exception e) {
+            PlaytimeMetrics.recordError("hud.send");
+            return false;
+        }
+    }
 
-            String newText = formatPlaytime(totalPlaytime);
+    /**
+     * Calcula el texto para el instante dado sin enviarlo.
+     *
+     * @return el texto nuevo, o null si el texto visible no ha cambiado
+     */
+    public synchronized String pollText(long now) {
+        long totalPlaytime = playtimeAt(now);
+        if (totalPlaytime < nextChangeAt) {
+            return null;
+        }
+        nextChangeAt = PlaytimeFormatter.nextChange(totalPlaytime);
 
-            if (!newText.equals(currentPlaytimeText)) {
-                currentPlaytimeText = newText;
-                updateText(newText);
-            }
-        } catch (Exception e) {
+        textBuffer.setLength(0);
+        PlaytimeFormatter.appendHud(textBuffer, totalPlaytime);
+        if (currentPlaytimeText.contentEquals(textBuffer)) {
+            return null;
         }
+        currentPlaytimeText = textBuffer.toString();
+        return currentPlaytimeText;
+    }
+
+    /**
+     * Instante (ms monótonos de SessionClock) en el que el texto visible cambiará, Long.MIN_VALUE
+     * si hay que recalcularlo ya, o Long.MAX_VALUE si no hay sesión activa y el texto no puede cambiar.
+     */
+    public synchronized long nextUpdateAt() {
+        if (nextChangeAt == Long.MIN_VALUE) {
+            return Long.MIN_VALUE;
+        }
+        if (activeSessions == 0) {
+            return Long.MAX_VALUE;
+        }
+        long remaining = nextChangeAt - baseOffset;
+        return (remaining + activeSessions - 1) / activeSessions;
+    }
+
+    public World getWorld() {
+        return world;
+    }
+
+    public void setWorld(World world) {
+        this.world = world;
+    }
+
+    long nextScheduleGeneration() {
+        return ++scheduleGeneration;
+    }
+
+    boolean isScheduleGeneration(long generation) {
+        return scheduleGeneration == generation;
     }
 
     public void updateText(String newText) {
@@ -57,20 +135,13 @@ public class PlaytimeHud extends CustomUIHud {
         ui.set("#MyLabel.TextSpans", Message.raw(currentPlaytimeText));
     }
 
+    private long playtimeAt(long now) {
+        return baseOffset + activeSessions * now;
+    }
+
     private String formatPlaytime(long milliseconds) {
-        long seconds = milliseconds / 1000;
-        long minutes = seconds / 60;
-        long hours = minutes / 60;
-        long days = hours / 24;
-
-        if (days > 0) {
-            return String.format("%dd %dh %dm", days, hours % 24, minutes % 60);
-        } else if (hours > 0) {
-            return String.format("%dh %dm %ds", hours, minutes % 60, seconds % 60);
-        } else if (minutes > 0) {
-            return String.format("%dm %ds", minutes, seconds % 60);
-        } else {
-            return String.format("%ds", seconds);
-        }
+        StringBuilder text = new StringBuilder(16);
+        PlaytimeFormatter.appendHud(text, milliseconds);
+        return text.toString();
     }
-}
\ No newline at end of file
+}
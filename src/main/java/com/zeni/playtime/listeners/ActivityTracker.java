@@ -0,0 +1,334 @@
+package com.zeni.playtime.listeners;
+
+import com.hypixel.hytale.math.vector.Transform;
+import com.hypixel.hytale.math.vector.Vector3d;
+import com.hypixel.hytale.math.vector.Vector3f;
+import com.hypixel.hytale.server.core.universe.PlayerRef;
+import com.hypixel.hytale.server.core.universe.world.World;
+import com.zeni.playtime.data.PlaytimeManager;
+import com.zeni.playtime.data.SessionClock;
+import com.zeni.playtime.metrics.PlaytimeMetrics;
+import com.zeni.playtime.scheduler.PlaytimeScheduler;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Mide el tiempo con actividad (sin AFK). Cada {@value #SAMPLE_INTERVAL_MILLIS} ms compara la posición
+ * y la orientación de la cámara de cada jugador con la muestra anterior; mientras haya cambiado alguna
+ * en los últimos {@code afkTimeout} ms, el intervalo cuenta como tiempo activo.
+ * <p>
+ * Las muestras se agrupan por mundo y se leen en una sola tarea en el hilo de cada mundo. Cada jugador
+ * guarda su última pose en un array primitivo y el muestreo no reserva memoria: el tiempo activo se
+ * acumula en la muestra y se entrega al gestor cada {@value #CREDIT_INTERVAL_MILLIS} ms o al salir del mundo.
+ */
+public class ActivityTracker {
+    static final long SAMPLE_INTERVAL_MILLIS = 5_000L;
+    private static final long CREDIT_INTERVAL_MILLIS = 30_000L;
+    // Un hilo de mundo atascado no acredita más de dos intervalos de golpe
+    private static final long MAX_SAMPLE_GAP_MILLIS = 2 * SAMPLE_INTERVAL_MILLIS;
+    // Espera máxima al crédito final en los hilos de los mundos
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 5_000L;
+    private static final double MOVE_EPSILON = 0.01;
+    private static final double LOOK_EPSILON = 0.001;
+    private static final int X = 0;
+    private static final int Y = 1;
+    private static final int Z = 2;
+    private static final int YAW = 3;
+    private static final int PITCH = 4;
+    private static final Sample[] NO_SAMPLES = new Sample[0];
+    private static final WorldSamples[] NO_WORLDS = new WorldSamples[0];
+
+    private final PlaytimeManager playtimeManager;
+    private final SessionClock clock;
+    private final long afkTimeoutMillis;
+    private final Map<UUID, Sample> samples; // jugador -> muestra en su mundo actual
+    private final Object lock = new Object();
+    private volatile WorldSamples[] worlds = NO_WORLDS; // copia al escribir, bajo lock
+    private final ScheduledFuture<?> sampleTick;
+
+    /**
+     * Última pose de un jugador. Solo la toca el hilo de su mundo.
+     */
+    private static final class Sample {
+        private final UUID playerId;
+        private final PlayerRef playerRef;
+        private final double[] pose = new double[5];
+        private boolean primed;
+        private long lastSampleAt;
+        private long lastActiveAt;
+        private long pendingActive;
+        private long pendingSince;
+
+        private Sample(UUID playerId, PlayerRef playerRef) {
+            this.playerId = playerId;
+            this.playerRef = playerRef;
+        }
+    }
+
+    /**
+     * Jugadores de un mundo; la propia instancia es la tarea que se encola en el hilo del mundo
+     */
+    private final class WorldSamples implements Runnable {
+        private final World world;
+        private final UUID worldUuid;
+        private final AtomicBoolean queued = new AtomicBoolean();
+        private volatile Sample[] samples = NO_SAMPLES; // copia al escribir, bajo lock
+
+        private WorldSamples(World world, UUID worldUuid) {
+            this.world = world;
+            this.worldUuid = worldUuid;
+        }
+
+        @Override
+        public void run() {
+            try {
+                sampleWorld(this);
+            } finally {
+                queued.set(false);
+            }
+        }
+    }
+
+    public ActivityTracker(PlaytimeManager playtimeManager, long afkTimeoutMillis, PlaytimeScheduler scheduler) {
+        this.playtimeManager = playtimeManager;
+        this.clock = playtimeManager.getClock();
+        this.afkTimeoutMillis = afkTimeoutMillis;
+        this.samples = new ConcurrentHashMap<>();
+        this.sampleTick = scheduler.scheduleTick("activity.sample", SAMPLE_INTERVAL_MILLIS, this::dispatchSamples);
+    }
+
+    /**
+     * Empieza a muestrear al jugador en el mundo dado; si estaba en otro, se acredita lo pendiente allí
+     */
+    public void track(UUID playerId, PlayerRef playerRef, World world, UUID worldUuid) {
+        synchronized (lock) {
+            WorldSamples target = findWorld(world);
+            Sample previous = samples.get(playerId);
+            if (previous != null) {
+                if (target != null && contains(target.samples, previous)) {
+                    return;
+                }
+                removeSample(previous);
+            }
+
+            Sample sample = new Sample(playerId, playerRef);
+            if (target == null) {
+                target = new WorldSamples(world, worldUuid);
+                WorldSamples[] grown = Arrays.copyOf(worlds, worlds.length + 1);
+                grown[grown.length - 1] = target;
+                worlds = grown;
+            }
+            Sample[] grown = Arrays.copyOf(target.samples, target.samples.length + 1);
+            grown[grown.length - 1] = sample;
+            target.samples = grown;
+            samples.put(playerId, sample);
+        }
+    }
+
+    /**
+     * Deja de muestrear al jugador y acredita lo acumulado
+     */
+    public void untrack(UUID playerId) {
+        synchronized (lock) {
+            Sample sample = samples.remove(playerId);
+            if (sample != null) {
+                removeSample(sample);
+            }
+        }
+    }
+
+    public int getTrackedCount() {
+        return samples.size();
+    }
+
+    /**
+     * Detiene el muestreo y acredita lo pendiente de todos los jugadores. Como en {@link #removeSample},
+     * el crédito final se hace en el hilo de cada mundo, detrás de cualquier muestreo ya encolado,
+     * y se espera a que terminen antes de volver.
+     */
+    public void shutdown() {
+        sampleTick.cancel(false);
+        WorldSamples[] groups;
+        Sample[][] pending;
+        synchronized (lock) {
+            groups = worlds;
+            pending = new Sample[groups.length][];
+            for (int i = 0; i < groups.length; i++) {
+                pending[i] = groups[i].samples;
+                // Un muestreo que aún no haya empezado ya no encontrará a nadie
+                groups[i].samples = NO_SAMPLES;
+            }
+            worlds = NO_WORLDS;
+            samples.clear();
+        }
+
+        CountDownLatch credited = new CountDownLatch(groups.length);
+        for (int i = 0; i < groups.length; i++) {
+            WorldSamples group = groups[i];
+            Sample[] groupSamples = pending[i];
+            Runnable finalCredit = () -> {
+                try {
+                    for (Sample sample : groupSamples) {
+                        credit(group.worldUuid, sample);
+                    }
+                } finally {
+                    credited.countDown();
+                }
+            };
+            try {
+                group.world.execute(finalCredit);
+            } catch (RuntimeException e) {
+                // Mundo ya descargado: ningún muestreo puede estar en marcha
+                finalCredit.run();
+            }
+        }
+
+        try {
+            if (!credited.await(SHUTDOWN_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                PlaytimeMetrics.recordError("activity.shutdown");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Tick del temporizador: una tarea por mundo. Si el mundo aún no ha procesado la anterior, no se encola otra.
+     */
+    private void dispatchSamples() {
+        for (WorldSamples group : worlds) {
+            if (group.samples.length == 0 || !group.queued.compareAndSet(false, true)) {
+                continue;
+            }
+            try {
+                group.world.execute(group);
+            } catch (RuntimeException e) {
+                group.queued.set(false);
+                PlaytimeMetrics.recordError("activity.dispatch");
+            }
+        }
+    }
+
+    /**
+     * Ejecutado en el hilo del mundo
+     */
+    private void sampleWorld(WorldSamples group) {
+        long start = System.nanoTime();
+        long now = clock.monotonicMillis();
+        for (Sample sample : group.samples) {
+            try {
+                sample(group.worldUuid, sample, now);
+            } catch (RuntimeException e) {
+                PlaytimeMetrics.recordError("activity.sample");
+            }
+        }
+        PlaytimeMetrics.ACTIVITY_SAMPLE.recordSince(start);
+    }
+
+    private void sample(UUID worldUuid, Sample sample, long now) {
+        Transform transform = sample.playerRef.getTransform();
+        Vector3d position = transform != null ? transform.getPosition() : null;
+        Vector3f rotation = transform != null ? transform.getRotation() : null;
+        if (position == null || rotation == null) {
+            return;
+        }
+
+        double[] pose = sample.pose;
+        boolean changed = Math.abs(pose[X] - position.getX()) > MOVE_EPSILON
+                || Math.abs(pose[Y] - position.getY()) > MOVE_EPSILON
+                || Math.abs(pose[Z] - position.getZ()) > MOVE_EPSILON
+                || Math.abs(pose[YAW] - rotation.getYaw()) > LOOK_EPSILON
+                || Math.abs(pose[PITCH] - rotation.getPitch()) > LOOK_EPSILON;
+        pose[X] = position.getX();
+        pose[Y] = position.getY();
+        pose[Z] = position.getZ();
+        pose[YAW] = rotation.getYaw();
+        pose[PITCH] = rotation.getPitch();
+
+        if (!sample.primed) {
+            // Entrar en el mundo cuenta como actividad; aún no hay intervalo que acreditar
+            sample.primed = true;
+            sample.lastSampleAt = now;
+            sample.lastActiveAt = now;
+            sample.pendingSince = now;
+            return;
+        }
+
+        if (changed) {
+            sample.lastActiveAt = now;
+        }
+        if (now - sample.lastActiveAt < afkTimeoutMillis) {
+            sample.pendingActive += Math.min(now - sample.lastSampleAt, MAX_SAMPLE_GAP_MILLIS);
+        }
+        sample.lastSampleAt = now;
+
+        if (now - sample.pendingSince >= CREDIT_INTERVAL_MILLIS) {
+            credit(worldUuid, sample);
+            sample.pendingSince = now;
+        }
+    }
+
+    private void credit(UUID worldUuid, Sample sample) {
+        long active = sample.pendingActive;
+        if (active > 0) {
+            sample.pendingActive = 0L;
+            playtimeManager.addActivePlaytime(sample.playerId, worldUuid, active);
+        }
+    }
+
+    /**
+     * Quita la muestra de su mundo. Lo pendiente se acredita en el hilo de ese mundo,
+     * después de cualquier muestreo que ya estuviera encolado. Bajo lock.
+     */
+    private void removeSample(Sample sample) {
+        for (WorldSamples group : worlds) {
+            int index = indexOf(group.samples, sample);
+            if (index < 0) {
+                continue;
+            }
+            Sample[] shrunk = new Sample[group.samples.length - 1];
+            System.arraycopy(group.samples, 0, shrunk, 0, index);
+            System.arraycopy(group.samples, index + 1, shrunk, index, shrunk.length - index);
+            group.samples = shrunk;
+            if (shrunk.length == 0) {
+                worlds = Arrays.stream(worlds).filter(other -> other != group).toArray(WorldSamples[]::new);
+            }
+            try {
+                group.world.execute(() -> credit(group.worldUuid, sample));
+            } catch (RuntimeException e) {
+                // Mundo ya descargado: ningún muestreo puede estar en marcha
+                credit(group.worldUuid, sample);
+            }
+            return;
+        }
+    }
+
+    private WorldSamples findWorld(World world) {
+        for (WorldSamples group : worlds) {
+            if (group.world == world) {
+                return group;
+            }
+        }
+        return null;
+    }
+
+    private static boolean contains(Sample[] samples, Sample sample) {
+        return indexOf(samples, sample) >= 0;
+    }
+
+    private static int indexOf(Sample[] samples, Sample sample) {
+        for (int i = 0; i < samples.length; i++) {
+            if (samples[i] == sample) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
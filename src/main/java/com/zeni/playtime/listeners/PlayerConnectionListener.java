@@ -1,60 +1,122 @@
 package com.zeni.playtime.listeners;
 
 import com.hypixel.hytale.component.Ref;
+import com.hypixel.hytale.server.core.Message;
 import com.hypixel.hytale.server.core.entity.entities.Player;
 import com.hypixel.hytale.server.core.entity.entities.player.hud.CustomUIHud;
+import com.hypixel.hytale.server.core.event.events.player.PlayerDisconnectEvent;
 import com.hypixel.hytale.server.core.event.events.player.PlayerReadyEvent;
 import com.hypixel.hytale.server.core.ui.builder.UICommandBuilder;
 import com.hypixel.hytale.server.core.universe.PlayerRef;
+import com.hypixel.hytale.server.core.universe.world.World;
 import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
 import com.zeni.playtime.data.HudPreferences;
 import com.zeni.playtime.data.PlaytimeManager;
+import com.zeni.playtime.events.SessionEvent;
+import com.zeni.playtime.events.SessionEventBus;
+import com.zeni.playtime.hud.HudTimingWheel;
+import com.zeni.playtime.hud.HudUpdateDispatcher;
 import com.zeni.playtime.hud.PlaytimeHud;
+import com.zeni.playtime.metrics.PlaytimeMetrics;
+import com.zeni.playtime.scheduler.PlaytimeScheduler;
 
 import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class PlayerConnectionListener {
+    private static final long HUD_TICK_MILLIS = 100L;
+    private static final int HUD_EVENT_CAPACITY = 4096;
     private static PlayerConnectionListener instance;
 
     private final PlaytimeManager playtimeManager;
     private final PlaytimeListener playtimeListener;
-    private final ScheduledExecutorService scheduler;
+    private final PlaytimeScheduler scheduler;
+    private final ActivityTracker activityTracker; // null si no se mide el tiempo activo
+    private ScheduledFuture<?> hudTick;
+    private final SessionEventBus.Subscription hudEvents;
     private final Set<UUID> trackedPlayers;
     private final Map<UUID, PlaytimeHud> activeHuds;
+    private final Map<UUID, Player> readyPlayers; // para avisar de los hitos en el hilo de su mundo
     private final HudPreferences hudPreferences;
+    private final HudTimingWheel hudWheel;
+    private final HudUpdateDispatcher hudDispatcher;
+    private final List<PlaytimeHud> dueHuds; // solo usado desde el hilo del temporizador
+    private final Map<UUID, UUID> pendingWorldChanges; // jugador -> mundo de destino, hasta el siguiente lote
+    private final AtomicBoolean worldChangesScheduled;
+
+    public PlayerConnectionListener(PlaytimeManager playtimeManager, PlaytimeListener playtimeListener, HudPreferences hudPreferences, PlaytimeScheduler scheduler) {
+        this(playtimeManager, playtimeListener, hudPreferences, scheduler, null);
+    }
 
-    public PlayerConnectionListener(PlaytimeManager playtimeManager, PlaytimeListener playtimeListener, HudPreferences hudPreferences) {
+    public PlayerConnectionListener(PlaytimeManager playtimeManager, PlaytimeListener playtimeListener, HudPreferences hudPreferences,
+                                    PlaytimeScheduler scheduler, ActivityTracker activityTracker) {
         this.playtimeManager = playtimeManager;
         this.playtimeListener = playtimeListener;
         this.hudPreferences = hudPreferences;
-        this.scheduler = Executors.newSingleThreadScheduledExecutor();
+        this.scheduler = scheduler;
+        this.activityTracker = activityTracker;
         this.trackedPlayers = ConcurrentHashMap.newKeySet();
         this.activeHuds = new ConcurrentHashMap<>();
+        this.readyPlayers = new ConcurrentHashMap<>();
+        this.hudWheel = new HudTimingWheel(HUD_TICK_MILLIS, playtimeManager.getClock().monotonicMillis());
+        this.dueHuds = new ArrayList<>();
+        this.pendingWorldChanges = new ConcurrentHashMap<>();
+        this.worldChangesScheduled = new AtomicBoolean();
+        this.hudDispatcher = new HudUpdateDispatcher();
         instance = this;
 
-        playtimeManager.setHudUpdateCallback(this::updatePlayerHud);
+        // Los eventos de sesión llegan por lotes y se aplican en el hilo del temporizador, junto con los ticks
+        this.hudEvents = playtimeManager.getEvents().subscribe("hud", HUD_EVENT_CAPACITY, batch -> {
+            Set<UUID> changed = new HashSet<>();
+            for (SessionEvent event : batch) {
+                if (event instanceof SessionEvent.MilestoneReached milestone) {
+                    announceMilestone(milestone);
+                } else {
+                    changed.add(event.playerId());
+                }
+            }
+            if (!changed.isEmpty()) {
+                scheduler.runOnTimer("hud.update", () -> changed.forEach(this::updatePlayerHud));
+            }
+        });
 
         startHudUpdates();
     }
 
 
+    /**
+     * Avanza la rueda de tiempo; solo se actualizan los HUDs cuyo texto cambia en este tick,
+     * y sus textos se envían agrupados por mundo. Un tick que llega mientras el anterior sigue en marcha se descarta.
+     */
     private void startHudUpdates() {
-        scheduler.scheduleAtFixedRate(() -> {
+        hudTick = scheduler.scheduleTick("hud.tick", HUD_TICK_MILLIS, () -> {
+            long start = System.nanoTime();
             try {
-                for (Map.Entry<UUID, PlaytimeHud> entry : activeHuds.entrySet()) {
-                    entry.getValue().updatePlaytime();
+                // Una sola lectura del reloj monótono por tick
+                long now = playtimeManager.getClock().monotonicMillis();
+                dueHuds.clear();
+                for (PlaytimeHud hud : hudWheel.advance(now, dueHuds)) {
+                    String text = hud.pollText(now);
+                    if (text != null) {
+                        hudDispatcher.submit(hud, text);
+                    }
+                    hudWheel.schedule(hud, hud.nextUpdateAt());
                 }
+                hudDispatcher.flush(activeHuds.size());
             } catch (Exception e) {
+                PlaytimeMetrics.recordError("hud.tick");
             }
-        }, 1, 1, TimeUnit.SECONDS);
+            PlaytimeMetrics.HUD_TICK.recordSince(start);
+        });
     }
 
     public static void onPlayerReadyEvent(PlayerReadyEvent event){
@@ -70,7 +132,23 @@ public class PlayerConnectionListener {
         UUID playerId = player.getUuid(); // don't touch
         UUID worldUuid = player.getWorld().getWorldConfig().getUuid();
 
-        instance.registerPlayer(playerId, worldUuid);
+        UUID currentWorld = instance.playtimeListener.getWorld(playerId);
+        if (currentWorld != null && !currentWorld.equals(worldUuid)) {
+            instance.queueWorldChange(playerId, worldUuid);
+        } else {
+            instance.registerPlayer(playerId, worldUuid);
+        }
+        instance.readyPlayers.put(playerId, player);
+        instance.playtimeManager.rememberName(playerId, player.getPlayerRef().getUsername());
+        if (instance.activityTracker != null) {
+            instance.activityTracker.track(playerId, player.getPlayerRef(), player.getWorld(), worldUuid);
+        }
+
+        // PlayerReadyEvent también llega al cambiar de mundo: las actualizaciones van al hilo del nuevo mundo
+        PlaytimeHud activeHud = instance.activeHuds.get(playerId);
+        if (activeHud != null) {
+            activeHud.setWorld(player.getWorld());
+        }
 
         // Intentar restaurar el HUD si el jugador tenía la preferencia guardada
         if (instance.hudPreferences.isHudEnabled(playerId)) {
@@ -79,21 +157,64 @@ public class PlayerConnectionListener {
                 instance.enableHudForPlayer(playerId, player.getPlayerRef(), player);
             } catch (Exception e) {
                 // Si falla, se restaurará cuando ejecute un comando
+                PlaytimeMetrics.recordError("hud.restore");
             }
         }
     }
 
+    /**
+     * PlayerDisconnectEvent: cierra las sesiones del jugador y retira su HUD
+     */
+    public static void onPlayerDisconnectEvent(PlayerDisconnectEvent event) {
+        if (instance == null || event.getPlayerRef() == null) {
+            return;
+        }
+        instance.unregisterPlayer(event.getPlayerRef().getUuid());
+    }
+
+    /**
+     * Se llama en cada PlayerReadyEvent y comando: si el mundo ha cambiado, la sesión pasa al nuevo
+     */
     public void registerPlayer(UUID playerId, UUID worldUuid) {
-        if (!trackedPlayers.contains(playerId)) {
-            trackedPlayers.add(playerId);
-            playtimeListener.registerPlayer(playerId, worldUuid);
+        trackedPlayers.add(playerId);
+        // El mundo actual manda sobre un cambio que siga en cola
+        pendingWorldChanges.remove(playerId);
+        playtimeListener.registerPlayer(playerId, worldUuid);
+    }
+
+    /**
+     * Cambio de mundo de un jugador ya registrado. Al recargar un mundo o reiniciar llegan muchos a la vez:
+     * se acumulan y el hilo del temporizador los aplica juntos con {@link PlaytimeListener#transitionAll}.
+     */
+    private void queueWorldChange(UUID playerId, UUID worldUuid) {
+        pendingWorldChanges.put(playerId, worldUuid);
+        if (worldChangesScheduled.compareAndSet(false, true)) {
+            scheduler.runOnTimer("session.world-changes", this::applyWorldChanges);
         }
     }
 
+    private void applyWorldChanges() {
+        // Antes de vaciar: un cambio que llegue durante el lote programa el siguiente
+        worldChangesScheduled.set(false);
+        Map<UUID, UUID> changes = new HashMap<>();
+        for (UUID playerId : pendingWorldChanges.keySet()) {
+            UUID worldUuid = pendingWorldChanges.remove(playerId);
+            if (worldUuid != null) {
+                changes.put(playerId, worldUuid);
+            }
+        }
+        playtimeListener.transitionAll(changes);
+    }
+
     public void unregisterPlayer(UUID playerId) {
+        pendingWorldChanges.remove(playerId);
         if (trackedPlayers.remove(playerId)) {
+            if (activityTracker != null) {
+                activityTracker.untrack(playerId);
+            }
             playtimeListener.unregisterPlayer(playerId);
-            activeHuds.remove(playerId);
+            unregisterHud(playerId);
+            readyPlayers.remove(playerId);
         }
     }
 
@@ -101,10 +222,12 @@ public class PlayerConnectionListener {
     public void enableHudForPlayer(UUID playerId, PlayerRef playerRef, Player player) {
         try {
             PlaytimeHud playtimeHud = new PlaytimeHud(playerRef, playtimeManager);
+            playtimeHud.setWorld(player.getWorld());
             player.getHudManager().setCustomHud(playerRef, playtimeHud);
             registerHud(playerId, playtimeHud);
             hudPreferences.setHudEnabled(playerId, true);
         } catch (Exception e) {
+            PlaytimeMetrics.recordError("hud.enable");
         }
     }
 
@@ -120,10 +243,34 @@ public class PlayerConnectionListener {
             });
             hudPreferences.setHudEnabled(playerId, false);
         } catch (Exception e) {
+            PlaytimeMetrics.recordError("hud.disable");
         }
     }
 
 
+    /**
+     * Estadísticas de envío de HUDs (enviados frente a omitidos por tick)
+     */
+    public HudUpdateDispatcher getHudDispatcher() {
+        return hudDispatcher;
+    }
+
+
+    public int getTrackedPlayerCount() {
+        return trackedPlayers.size();
+    }
+
+
+    public int getActiveHudCount() {
+        return activeHuds.size();
+    }
+
+
+    public int getActivityTrackedCount() {
+        return activityTracker != null ? activityTracker.getTrackedCount() : 0;
+    }
+
+
     public boolean isHudEnabled(UUID playerId) {
         return activeHuds.containsKey(playerId);
     }
@@ -142,35 +289,64 @@ public class PlayerConnectionListener {
 
 
     public void registerHud(UUID playerId, PlaytimeHud hud) {
-        activeHuds.put(playerId, hud);
+        PlaytimeHud previous = activeHuds.put(playerId, hud);
+        if (previous != null) {
+            hudWheel.cancel(previous);
+        }
+        hudWheel.schedule(hud, hud.nextUpdateAt());
     }
 
 
     public void unregisterHud(UUID playerId) {
-        activeHuds.remove(playerId);
+        PlaytimeHud hud = activeHuds.remove(playerId);
+        if (hud != null) {
+            hudWheel.cancel(hud);
+        }
     }
 
 
+    /**
+     * Evento de sesión del jugador: relee el estado del HUD y lo programa para el siguiente tick,
+     * que envía el texto por el dispatcher en el hilo de su mundo, agrupado con los demás
+     */
     private void updatePlayerHud(UUID playerId) {
         PlaytimeHud hud = activeHuds.get(playerId);
         if (hud != null) {
-            hud.updatePlaytime();
+            hud.refreshSessionState();
+            hudWheel.schedule(hud, Long.MIN_VALUE);
         }
     }
 
-    public void shutdown() {
-        for (UUID playerId : new HashSet<>(trackedPlayers)) {
-            unregisterPlayer(playerId);
+    /**
+     * Avisa al jugador de un hito alcanzado, si sigue conectado
+     */
+    private void announceMilestone(SessionEvent.MilestoneReached milestone) {
+        Player player = readyPlayers.get(milestone.playerId());
+        World world = player != null ? player.getWorld() : null;
+        if (world == null) {
+            return;
         }
+        String text = "Milestone reached: " + playtimeManager.formatTime(milestone.thresholdMillis()) + " of playtime!";
+        world.execute(() -> player.getPlayerRef().sendMessage(Message.raw(text)));
+    }
 
-        scheduler.shutdown();
-        try {
-            if (!scheduler.awaitTermination(5, TimeUnit.SECONDS)) {
-                scheduler.shutdownNow();
-            }
-        } catch (InterruptedException e) {
-            scheduler.shutdownNow();
+    public void shutdown() {
+        // Acreditar el tiempo activo pendiente antes de cerrar las sesiones
+        if (activityTracker != null) {
+            activityTracker.shutdown();
         }
+        // Todas las sesiones se cierran en un solo lote
+        Set<UUID> leaving = new HashSet<>(trackedPlayers);
+        trackedPlayers.removeAll(leaving);
+        for (UUID playerId : leaving) {
+            unregisterHud(playerId);
+            readyPlayers.remove(playerId);
+        }
+        playtimeListener.unregisterPlayers(leaving);
+
+        // El planificador es del plugin: solo se cancela el tick propio
+        hudEvents.close();
+        hudTick.cancel(false);
     }
 }
 
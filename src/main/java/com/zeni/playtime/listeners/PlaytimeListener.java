@@ -2,27 +2,38 @@ package com.zeni.playtime.listeners;
 
 import com.zeni.playtime.data.PlaytimeManager;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
 
 /**
  * Trackea el tiempo de juego de los jugadores.
  * Usa un sistema de registro manual de jugadores para evitar APIs deprecated.
+ * El guardado periódico lo hace el hilo escritor de {@link PlaytimeManager}.
+ * <p>
+ * Cada jugador está fuera o en un mundo. Cada transición (entrar, cambiar de mundo, salir) cambia el
+ * registro y abre o cierra sesiones bajo el lock de su franja, así dos eventos del mismo jugador nunca
+ * se intercalan: una sesión no se cierra dos veces ni queda abierta tras una desconexión. El lock es
+ * por franja y no el del mapa, porque cerrar sesiones carga datos, avisa a los callbacks y publica eventos.
  */
 public class PlaytimeListener {
+    private static final int LOCK_STRIPES = 64;
+
     private final PlaytimeManager playtimeManager;
-    private final ScheduledExecutorService scheduler;
     private final Map<UUID, UUID> activePlayerWorlds;
+    private final Object[] locks;
 
     public PlaytimeListener(PlaytimeManager playtimeManager) {
         this.playtimeManager = playtimeManager;
-        this.scheduler = Executors.newSingleThreadScheduledExecutor();
         this.activePlayerWorlds = new ConcurrentHashMap<>();
-        startTracking();
+        this.locks = new Object[LOCK_STRIPES];
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
     }
 
     /**
@@ -30,17 +41,14 @@ public class PlaytimeListener {
      * Este método debe ser llamado cuando un jugador ejecuta un comando o se detecta su actividad.
      */
     public void registerPlayer(UUID playerId, UUID worldUuid) {
-        UUID currentWorld = activePlayerWorlds.get(playerId);
-
-        // Si el jugador cambió de mundo, finalizar la sesión anterior
-        if (currentWorld != null && !currentWorld.equals(worldUuid)) {
-            playtimeManager.endSession(playerId, currentWorld);
-        }
-
-        // Actualizar el mundo actual y comenzar nueva sesión si es necesario
-        activePlayerWorlds.put(playerId, worldUuid);
-        if (!playtimeManager.getPlayerData(playerId).hasActiveSession(worldUuid)) {
-            playtimeManager.startSession(playerId, worldUuid);
+        synchronized (lockFor(playerId)) {
+            UUID currentWorld = activePlayerWorlds.put(playerId, worldUuid);
+            if (currentWorld != null && !currentWorld.equals(worldUuid)) {
+                playtimeManager.changeWorld(playerId, currentWorld, worldUuid);
+            } else if (!playtimeManager.hasActiveSession(playerId, worldUuid)) {
+                // Entrar, o reabrir la sesión si se cerró por otro camino
+                playtimeManager.startSession(playerId, worldUuid);
+            }
         }
     }
 
@@ -48,47 +56,100 @@ public class PlaytimeListener {
      * Desregistra un jugador cuando se desconecta.
      */
     public void unregisterPlayer(UUID playerId) {
-        UUID worldUuid = activePlayerWorlds.remove(playerId);
-        if (worldUuid != null) {
-            playtimeManager.endSession(playerId, worldUuid);
+        synchronized (lockFor(playerId)) {
+            // Se cierran todas, también una que se hubiera abierto fuera del registro
+            if (activePlayerWorlds.remove(playerId) != null) {
+                playtimeManager.endAllSessions(playerId);
+            }
         }
     }
 
     /**
-     * Obtiene los jugadores activos registrados.
+     * Desregistra a varios jugadores (cierre del servidor, desconexiones en masa), como {@link #transitionAll}
      */
-    public Map<UUID, UUID> getActivePlayers() {
-        return new ConcurrentHashMap<>(activePlayerWorlds);
+    public void unregisterPlayers(Collection<UUID> playerIds) {
+        Map<UUID, UUID> leaving = new HashMap<>();
+        for (UUID playerId : playerIds) {
+            leaving.put(playerId, null);
+        }
+        transitionAll(leaving);
     }
 
-    private void startTracking() {
-        // Guardar datos periódicamente para los jugadores registrados
-        scheduler.scheduleAtFixedRate(() -> {
-            try {
-                // Guardar datos de todos los jugadores activos
-                playtimeManager.saveData();
+    /**
+     * Aplica varias transiciones de una vez (recarga de mundos, reinicios). Se agrupan por franja y cada
+     * grupo se aplica sin soltar su lock, con los cambios de mundo y las salidas en un lote cada uno.
+     * Solo cambia de mundo a jugadores registrados: un cambio que llega tras la desconexión se descarta.
+     *
+     * @param targets mundo de destino de cada jugador, o null si se desconecta
+     */
+    public void transitionAll(Map<UUID, UUID> targets) {
+        List<List<Map.Entry<UUID, UUID>>> byStripe = new ArrayList<>(LOCK_STRIPES);
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            byStripe.add(new ArrayList<>());
+        }
+        for (Map.Entry<UUID, UUID> entry : targets.entrySet()) {
+            byStripe.get(stripeOf(entry.getKey())).add(entry);
+        }
 
-            } catch (Exception e) {
-                // Ignorar errores silenciosamente
+        List<PlaytimeManager.WorldChange> changes = new ArrayList<>();
+        List<UUID> removed = new ArrayList<>();
+        for (int stripe = 0; stripe < LOCK_STRIPES; stripe++) {
+            List<Map.Entry<UUID, UUID>> group = byStripe.get(stripe);
+            if (group.isEmpty()) {
+                continue;
+            }
+            synchronized (locks[stripe]) {
+                changes.clear();
+                removed.clear();
+                for (Map.Entry<UUID, UUID> entry : group) {
+                    UUID playerId = entry.getKey();
+                    UUID target = entry.getValue();
+                    if (target == null) {
+                        if (activePlayerWorlds.remove(playerId) != null) {
+                            removed.add(playerId);
+                        }
+                        continue;
+                    }
+                    UUID currentWorld = activePlayerWorlds.get(playerId);
+                    if (currentWorld != null && !currentWorld.equals(target)) {
+                        activePlayerWorlds.put(playerId, target);
+                        changes.add(new PlaytimeManager.WorldChange(playerId, currentWorld, target));
+                    }
+                }
+                if (!changes.isEmpty()) {
+                    playtimeManager.changeWorlds(changes);
+                }
+                if (!removed.isEmpty()) {
+                    playtimeManager.endAllSessions(removed);
+                }
             }
-        }, 1, 1, TimeUnit.MINUTES);
+        }
+    }
+
+    /**
+     * Mundo en el que está registrado el jugador, o null si no lo está
+     */
+    public UUID getWorld(UUID playerId) {
+        return activePlayerWorlds.get(playerId);
+    }
+
+    /**
+     * Obtiene los jugadores activos registrados.
+     */
+    public Map<UUID, UUID> getActivePlayers() {
+        return new ConcurrentHashMap<>(activePlayerWorlds);
     }
 
     public void shutdown() {
         // Finalizar todas las sesiones activas
-        for (Map.Entry<UUID, UUID> entry : activePlayerWorlds.entrySet()) {
-            playtimeManager.endSession(entry.getKey(), entry.getValue());
-        }
-        activePlayerWorlds.clear();
+        unregisterPlayers(new ArrayList<>(activePlayerWorlds.keySet()));
+    }
 
-        scheduler.shutdown();
-        try {
-            if (!scheduler.awaitTermination(5, TimeUnit.SECONDS)) {
-                scheduler.shutdownNow();
-            }
-        } catch (InterruptedException e) {
-            scheduler.shutdownNow();
-        }
+    private Object lockFor(UUID playerId) {
+        return locks[stripeOf(playerId)];
     }
-}
 
+    private static int stripeOf(UUID playerId) {
+        return (playerId.hashCode() & 0x7fffffff) % LOCK_STRIPES;
+    }
+}
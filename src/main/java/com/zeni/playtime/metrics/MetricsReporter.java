@@ -0,0 +1,39 @@
+package com.zeni.playtime.metrics;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+import com.zeni.playtime.data.AtomicFiles;
+import com.zeni.playtime.scheduler.PlaytimeScheduler;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Vuelca periódicamente las métricas a metrics.prom (formato de texto de Prometheus,
+ * apto para el textfile collector de node_exporter) y deja una línea de resumen en el log.
+ */
+public class MetricsReporter {
+    private final File outputFile;
+    private final HytaleLogger logger;
+    private final ScheduledFuture<?> task;
+
+    public MetricsReporter(File dataFolder, long intervalSeconds, PlaytimeScheduler scheduler, HytaleLogger logger) {
+        this.outputFile = new File(dataFolder, "metrics.prom");
+        this.logger = logger;
+        this.task = scheduler.scheduleIo("metrics.report", TimeUnit.SECONDS.toMillis(intervalSeconds), this::report);
+    }
+
+    public void report() {
+        try {
+            AtomicFiles.write(outputFile, PlaytimeMetrics::writePrometheus);
+        } catch (IOException e) {
+            PlaytimeMetrics.recordError("metrics.write");
+        }
+        logger.atInfo().log(PlaytimeMetrics.summaryLine());
+    }
+
+    public void shutdown() {
+        task.cancel(false);
+    }
+}
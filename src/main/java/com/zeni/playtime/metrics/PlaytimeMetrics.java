@@ -0,0 +1,159 @@
+package com.zeni.playtime.metrics;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Métricas del plugin: contadores, histogramas de latencia y valores leídos bajo demanda.
+ * Registrar una muestra no reserva memoria; el formateo solo ocurre al consultar
+ * (comando de estadísticas, log periódico o fichero en formato Prometheus).
+ */
+public final class PlaytimeMetrics {
+    public static final LatencyHistogram JOURNAL_SYNC = new LatencyHistogram("playtime_journal_sync");
+    public static final LatencyHistogram COMPACTION = new LatencyHistogram("playtime_compaction");
+    public static final LatencyHistogram PLAYER_LOAD = new LatencyHistogram("playtime_player_load");
+    public static final LatencyHistogram HISTORY_WRITE = new LatencyHistogram("playtime_history_write");
+    public static final LatencyHistogram HUD_TICK = new LatencyHistogram("playtime_hud_tick");
+    public static final LatencyHistogram HUD_PREFERENCES_FLUSH = new LatencyHistogram("playtime_hud_preferences_flush");
+    public static final LatencyHistogram SESSION_CHECKPOINT = new LatencyHistogram("playtime_session_checkpoint");
+    public static final LatencyHistogram ACTIVITY_SAMPLE = new LatencyHistogram("playtime_activity_sample");
+
+    public static final LongAdder BYTES_WRITTEN = new LongAdder();
+    public static final LongAdder BYTES_READ = new LongAdder();
+    public static final LongAdder JOURNAL_BYTES = new LongAdder();
+
+    private static final LatencyHistogram[] HISTOGRAMS = {
+            JOURNAL_SYNC, COMPACTION, PLAYER_LOAD, HISTORY_WRITE, HUD_TICK, HUD_PREFERENCES_FLUSH, SESSION_CHECKPOINT, ACTIVITY_SAMPLE
+    };
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+
+    private record Source(boolean counter, LongSupplier supplier) {
+    }
+
+    private static final Map<String, LongAdder> ERRORS = new ConcurrentSkipListMap<>();
+    private static final Map<String, Source> SOURCES = new ConcurrentSkipListMap<>();
+
+    static {
+        registerCounter("playtime_bytes_written_total", BYTES_WRITTEN::sum);
+        registerCounter("playtime_bytes_read_total", BYTES_READ::sum);
+        registerCounter("playtime_journal_bytes_total", JOURNAL_BYTES::sum);
+    }
+
+    private PlaytimeMetrics() {
+    }
+
+    /**
+     * Cuenta una excepción capturada y no propagada en el punto indicado
+     */
+    public static void recordError(String site) {
+        LongAdder counter = ERRORS.get(site);
+        if (counter == null) {
+            counter = ERRORS.computeIfAbsent(site, key -> new LongAdder());
+        }
+        counter.increment();
+    }
+
+    /**
+     * Valor instantáneo leído al consultar (jugadores conectados, sesiones activas...)
+     */
+    public static void registerGauge(String name, LongSupplier supplier) {
+        SOURCES.put(name, new Source(false, supplier));
+    }
+
+    /**
+     * Contador acumulado mantenido por otro componente
+     */
+    public static void registerCounter(String name, LongSupplier supplier) {
+        SOURCES.put(name, new Source(true, supplier));
+    }
+
+    public static long getErrorCount() {
+        long total = 0L;
+        for (LongAdder counter : ERRORS.values()) {
+            total += counter.sum();
+        }
+        return total;
+    }
+
+    /**
+     * Resumen legible, una línea por métrica
+     */
+    public static List<String> summaryLines() {
+        List<String> lines = new ArrayList<>();
+        for (Map.Entry<String, Source> entry : SOURCES.entrySet()) {
+            lines.add(entry.getKey() + ": " + read(entry.getValue()));
+        }
+        for (LatencyHistogram histogram : HISTOGRAMS) {
+            if (histogram.getCount() > 0) {
+                lines.add(String.format("%s: n=%d p50=%.2fms p99=%.2fms max=%.2fms", histogram.getName(), histogram.getCount(),
+                        millis(histogram.percentile(0.5)), millis(histogram.percentile(0.99)), millis(histogram.getMax())));
+            }
+        }
+        for (Map.Entry<String, LongAdder> entry : ERRORS.entrySet()) {
+            lines.add("errors[" + entry.getKey() + "]: " + entry.getValue().sum());
+        }
+        return lines;
+    }
+
+    /**
+     * Una sola línea compacta para el log periódico
+     */
+    public static String summaryLine() {
+        StringBuilder line = new StringBuilder("Playtime metrics:");
+        for (Map.Entry<String, Source> entry : SOURCES.entrySet()) {
+            line.append(' ').append(entry.getKey().replace("playtime_", "")).append('=').append(read(entry.getValue()));
+        }
+        for (LatencyHistogram histogram : HISTOGRAMS) {
+            if (histogram.getCount() > 0) {
+                line.append(' ').append(histogram.getName().replace("playtime_", "")).append("_p99=")
+                        .append(String.format("%.2fms", millis(histogram.percentile(0.99))));
+            }
+        }
+        line.append(" errors=").append(getErrorCount());
+        return line.toString();
+    }
+
+    /**
+     * Escribe todas las métricas en el formato de texto de Prometheus
+     */
+    public static void writePrometheus(Appendable out) throws IOException {
+        for (Map.Entry<String, Source> entry : SOURCES.entrySet()) {
+            out.append("# TYPE ").append(entry.getKey()).append(entry.getValue().counter() ? " counter\n" : " gauge\n");
+            out.append(entry.getKey()).append(' ').append(Long.toString(read(entry.getValue()))).append('\n');
+        }
+
+        for (LatencyHistogram histogram : HISTOGRAMS) {
+            String name = histogram.getName() + "_seconds";
+            out.append("# TYPE ").append(name).append(" summary\n");
+            for (double quantile : QUANTILES) {
+                out.append(name).append("{quantile=\"").append(Double.toString(quantile)).append("\"} ")
+                        .append(Double.toString(histogram.percentile(quantile) / 1e9)).append('\n');
+            }
+            out.append(name).append("_sum ").append(Double.toString(histogram.getSum() / 1e9)).append('\n');
+            out.append(name).append("_count ").append(Long.toString(histogram.getCount())).append('\n');
+        }
+
+        out.append("# TYPE playtime_errors_total counter\n");
+        for (Map.Entry<String, LongAdder> entry : ERRORS.entrySet()) {
+            out.append("playtime_errors_total{site=\"").append(entry.getKey()).append("\"} ")
+                    .append(Long.toString(entry.getValue().sum())).append('\n');
+        }
+    }
+
+    private static long read(Source source) {
+        try {
+            return source.supplier().getAsLong();
+        } catch (RuntimeException e) {
+            return -1L;
+        }
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+}
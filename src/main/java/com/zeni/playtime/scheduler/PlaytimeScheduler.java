@@ -0,0 +1,164 @@
+package com.zeni.playtime.scheduler;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+import com.zeni.playtime.metrics.PlaytimeMetrics;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Planificador único del plugin. Los ticks con plazo (HUD) corren en un solo hilo de temporizador;
+ * la E/S bloqueante (guardados, informes, cargas) va a hilos virtuales.
+ * <p>
+ * Si un tick o un trabajo periódico sigue en marcha cuando toca el siguiente, ese siguiente
+ * se descarta en vez de encolarse, de modo que un guardado lento no acumula trabajo atrasado.
+ * {@link #shutdown()} deja de lanzar ticks y espera a que termine la E/S pendiente.
+ */
+public class PlaytimeScheduler {
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10L;
+
+    private final HytaleLogger logger;
+    private final ScheduledThreadPoolExecutor timer;
+    private final ExecutorService io;
+    private final ThreadFactory ioThreads;
+    private final LongAdder droppedTicks = new LongAdder();
+
+    public PlaytimeScheduler(HytaleLogger logger) {
+        this.logger = logger;
+        this.timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "playtime-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.timer.setRemoveOnCancelPolicy(true);
+        this.timer.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        this.timer.setContinueExistingPeriodicTasksAfterShutdownPolicy(false);
+        this.ioThreads = Thread.ofVirtual().name("playtime-io-", 0).factory();
+        this.io = Executors.newThreadPerTaskExecutor(ioThreads);
+    }
+
+    /**
+     * Tick periódico en el hilo del temporizador. Las ejecuciones que llegan tarde porque
+     * la anterior se alargó se descartan en lugar de ejecutarse seguidas.
+     */
+    public ScheduledFuture<?> scheduleTick(String name, long periodMillis, Runnable task) {
+        long periodNanos = TimeUnit.MILLISECONDS.toNanos(periodMillis);
+        long[] lastStart = {System.nanoTime() - periodNanos};
+        return timer.scheduleAtFixedRate(() -> {
+            long now = System.nanoTime();
+            // Con un tick alargado, el temporizador lanza las ejecuciones atrasadas una tras otra
+            if (now - lastStart[0] < periodNanos / 2) {
+                droppedTicks.increment();
+                return;
+            }
+            lastStart[0] = now;
+            runGuarded(name, task);
+        }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Trabajo periódico de E/S: el temporizador solo lo lanza en un hilo virtual,
+     * y si la ejecución anterior no ha terminado se descarta
+     */
+    public ScheduledFuture<?> scheduleIo(String name, long periodMillis, Runnable task) {
+        AtomicBoolean running = new AtomicBoolean();
+        return timer.scheduleAtFixedRate(() -> {
+            if (!running.compareAndSet(false, true)) {
+                droppedTicks.increment();
+                return;
+            }
+            try {
+                io.execute(() -> {
+                    try {
+                        runGuarded(name, task);
+                    } finally {
+                        running.set(false);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                running.set(false);
+            }
+        }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Ejecuta una tarea en el hilo del temporizador, serializada con los ticks
+     */
+    public void runOnTimer(String name, Runnable task) {
+        try {
+            timer.execute(() -> runGuarded(name, task));
+        } catch (RejectedExecutionException e) {
+            // Cerrando: ya no hay ticks con los que serializar
+            runGuarded(name, task);
+        }
+    }
+
+    /**
+     * Lanza una tarea de E/S puntual en un hilo virtual
+     */
+    public void runIo(String name, Runnable task) {
+        try {
+            io.execute(() -> runGuarded(name, task));
+        } catch (RejectedExecutionException e) {
+            logger.atWarning().log("Tarea descartada durante el cierre: " + name);
+        }
+    }
+
+    /**
+     * Lanza una tarea de E/S puntual pasado un retraso. El temporizador solo la entrega al hilo virtual.
+     */
+    public ScheduledFuture<?> runIoAfter(String name, long delayMillis, Runnable task) {
+        return timer.schedule(() -> runIo(name, task), Math.max(0L, delayMillis), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Hilo virtual de larga duración (bucles de escritura). Su dueño se encarga de detenerlo.
+     */
+    public Thread startWorker(String name, Runnable loop) {
+        Thread thread = ioThreads.newThread(loop);
+        thread.setName(name);
+        thread.start();
+        return thread;
+    }
+
+    public long getDroppedTicks() {
+        return droppedTicks.sum();
+    }
+
+    /**
+     * Detiene los ticks y espera a que termine la E/S ya lanzada
+     */
+    public void shutdown() {
+        timer.shutdown();
+        io.shutdown();
+        try {
+            if (!timer.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                timer.shutdownNow();
+            }
+            if (!io.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                logger.atWarning().log("Tareas de E/S sin terminar tras " + SHUTDOWN_TIMEOUT_SECONDS + "s");
+                io.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            timer.shutdownNow();
+            io.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runGuarded(String name, Runnable task) {
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            PlaytimeMetrics.recordError(name);
+            logger.atWarning().log("Error en la tarea " + name + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.zeni.playtime.data;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Escritores (inicio, fin de sesión y tiempo añadido) contra lectores de snapshots sobre el mismo jugador.
+ * Cada snapshot leído debe ser coherente (total igual a la suma por mundo, contador de sesiones igual a las
+ * sesiones abiertas, totales que nunca bajan) y al final no puede faltar ni sobrar ningún milisegundo.
+ */
+class PlaytimeDataConcurrencyTest {
+    private static final int WRITERS = 4;
+    private static final int READERS = 2;
+    private static final int OPERATIONS = 50_000;
+    private static final UUID SHARED_WORLD = new UUID(0x5EED, 0);
+
+    @Test
+    void snapshotsStayConsistentAndNoUpdateIsLost() throws Exception {
+        ManualSessionClock clock = new ManualSessionClock(System.currentTimeMillis());
+        PlaytimeData data = new PlaytimeData(UUID.randomUUID(), clock);
+
+        long expected = runStress(clock, data::startSession, data::endSession, data::addPlaytime, data::snapshot);
+
+        PlaytimeData.Snapshot last = data.snapshot();
+        assertEquals(0, last.getActiveSessionCount());
+        assertEquals(expected, last.getTotalPlaytime());
+        assertEquals(expected, sumOfWorlds(last));
+    }
+
+    @Test
+    void managerKeepsTotalsThroughConcurrentSessionsAndAdjustments(@TempDir Path dataFolder) throws Exception {
+        ManualSessionClock clock = new ManualSessionClock(System.currentTimeMillis());
+        PlaytimeManager manager = new PlaytimeManager(dataFolder.toFile(), HytaleLogger.get("test"), clock,
+                new PlaytimeConfig(PlaytimeConfig.STORAGE_SHARDED, ""));
+        UUID playerId = UUID.randomUUID();
+        try {
+            long expected = runStress(clock,
+                    world -> manager.startSession(playerId, world),
+                    world -> {
+                        // El gestor no devuelve la duración: se mide en el total antes y después, bajo el lock del jugador
+                        PlaytimeData data = manager.getPlayerData(playerId);
+                        synchronized (data) {
+                            long before = data.getTotalPlaytime();
+                            manager.endSession(playerId, world);
+                            return data.getTotalPlaytime() - before;
+                        }
+                    },
+                    (world, milliseconds) -> manager.addPlaytime(playerId, world, milliseconds),
+                    () -> manager.getPlayerData(playerId).snapshot());
+
+            PlaytimeData.Snapshot last = manager.getPlayerData(playerId).snapshot();
+            assertEquals(expected, last.getTotalPlaytime());
+            assertEquals(expected, sumOfWorlds(last));
+            assertEquals(expected, manager.getLeaderboard().top(1).get(0).playtime());
+        } finally {
+            manager.close();
+        }
+    }
+
+    private interface SessionAction {
+        void accept(UUID worldUuid);
+    }
+
+    private interface EndAction {
+        long apply(UUID worldUuid);
+    }
+
+    private interface AddAction {
+        void accept(UUID worldUuid, long milliseconds);
+    }
+
+    private interface SnapshotSource {
+        PlaytimeData.Snapshot get();
+    }
+
+    /**
+     * Cada escritor abre y cierra sesiones en su propio mundo y suma tiempo a un mundo compartido,
+     * llevando la cuenta de lo que ha aportado. Devuelve la suma esperada.
+     */
+    private static long runStress(ManualSessionClock clock, SessionAction start, EndAction end, AddAction add,
+                                  SnapshotSource snapshots) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(WRITERS + READERS);
+        CyclicBarrier ready = new CyclicBarrier(WRITERS + READERS);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        try {
+            List<Future<Long>> writers = new ArrayList<>();
+            for (int i = 0; i < WRITERS; i++) {
+                UUID ownWorld = new UUID(0x5EED, i + 1);
+                writers.add(pool.submit(() -> {
+                    ready.await();
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    long contributed = 0L;
+                    boolean open = false;
+                    for (int op = 0; op < OPERATIONS; op++) {
+                        switch (random.nextInt(3)) {
+                            case 0 -> {
+                                if (!open) {
+                                    start.accept(ownWorld);
+                                    open = true;
+                                }
+                            }
+                            case 1 -> {
+                                if (open) {
+                                    contributed += end.apply(ownWorld);
+                                    open = false;
+                                }
+                            }
+                            default -> {
+                                long milliseconds = 1 + random.nextInt(1_000);
+                                add.accept(random.nextBoolean() ? SHARED_WORLD : ownWorld, milliseconds);
+                                contributed += milliseconds;
+                            }
+                        }
+                        clock.advanceMillis(random.nextInt(3));
+                    }
+                    if (open) {
+                        contributed += end.apply(ownWorld);
+                    }
+                    return contributed;
+                }));
+            }
+
+            List<Future<Long>> readers = new ArrayList<>();
+            for (int i = 0; i < READERS; i++) {
+                readers.add(pool.submit(() -> {
+                    ready.await();
+                    long reads = 0L;
+                    long previousTotal = 0L;
+                    while (writing.get() || reads == 0L) {
+                        PlaytimeData.Snapshot snapshot = snapshots.get();
+                        assertEquals(snapshot.getTotalPlaytime(), sumOfWorlds(snapshot), "total distinto de la suma por mundo");
+                        assertEquals(snapshot.getActiveSessionCount(), openSessions(snapshot), "contador de sesiones incoherente");
+                        assertTrue(snapshot.getTotalPlaytime() >= previousTotal, "el total ha bajado");
+                        previousTotal = snapshot.getTotalPlaytime();
+                        reads++;
+                    }
+                    return reads;
+                }));
+            }
+
+            long expected = 0L;
+            for (Future<Long> writer : writers) {
+                expected += writer.get(60, TimeUnit.SECONDS);
+            }
+            writing.set(false);
+            for (Future<Long> reader : readers) {
+                assertTrue(reader.get(60, TimeUnit.SECONDS) > 0L);
+            }
+            return expected;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static long sumOfWorlds(PlaytimeData.Snapshot snapshot) {
+        long sum = 0L;
+        for (int worldId = 0; worldId < WorldRegistry.size(); worldId++) {
+            sum += snapshot.getPlaytime(worldId);
+        }
+        return sum;
+    }
+
+    private static int openSessions(PlaytimeData.Snapshot snapshot) {
+        int open = 0;
+        for (int worldId = 0; worldId < WorldRegistry.size(); worldId++) {
+            if (snapshot.hasActiveSession(worldId)) {
+                open++;
+            }
+        }
+        return open;
+    }
+}